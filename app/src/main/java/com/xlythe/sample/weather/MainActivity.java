@@ -1,9 +1,6 @@
 package com.xlythe.sample.weather;
 
 import android.Manifest;
-import android.content.BroadcastReceiver;
-import android.content.Context;
-import android.content.Intent;
 import android.os.Bundle;
 import android.widget.TextView;
 
@@ -23,13 +20,6 @@ public class MainActivity extends AppCompatActivity {
     };
     private static final int REQUEST_CODE_PERMISSIONS = 1;
 
-    private final BroadcastReceiver mReceiver = new BroadcastReceiver() {
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            invalidate();
-        }
-    };
-
     private WeatherProvider mWeatherProvider;
 
     @SuppressWarnings("MissingPermission")
@@ -39,6 +29,7 @@ public class MainActivity extends AppCompatActivity {
         setContentView(R.layout.activity_main);
 
         mWeatherProvider = new OpenWeatherProvider(this, API_KEY);
+        mWeatherProvider.getWeatherLiveData().observe(this, snapshot -> invalidate());
 
         findViewById(R.id.sync).setOnClickListener(v -> {
             mWeatherProvider.runImmediately();
@@ -55,18 +46,6 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
-    @Override
-    protected void onStart() {
-        super.onStart();
-        mWeatherProvider.registerReceiver(mReceiver);
-    }
-
-    @Override
-    protected void onStop() {
-        unregisterReceiver(mReceiver);
-        super.onStop();
-    }
-
     private void invalidate() {
         TextView textView = findViewById(R.id.weather);
         textView.setText(mWeatherProvider.getWeather().toString());
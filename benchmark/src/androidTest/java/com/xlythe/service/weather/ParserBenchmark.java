@@ -0,0 +1,58 @@
+package com.xlythe.service.weather;
+
+import android.content.Context;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures parsing a recorded response from each provider.
+ */
+@RunWith(AndroidJUnit4.class)
+public class ParserBenchmark {
+    @Rule public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+
+    @Test
+    public void openWeather_fetch() {
+        Weather weather = new OpenWeather();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            weather.fetch(context, Payloads.OPEN_WEATHER);
+        }
+    }
+
+    @Test
+    public void pirateWeather_fetch() {
+        Weather weather = new PirateWeather();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            weather.fetch(context, Payloads.PIRATE_WEATHER);
+        }
+    }
+
+    @Test
+    public void weatherUnderground_fetchConditions() {
+        Weather weather = new WeatherUnderground();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            weather.fetch(context, Payloads.WUNDERGROUND_CONDITIONS);
+        }
+    }
+
+    @Test
+    public void weatherUnderground_fetchAstronomy() {
+        Weather weather = new WeatherUnderground();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            weather.fetch(context, Payloads.WUNDERGROUND_ASTRONOMY);
+        }
+    }
+}
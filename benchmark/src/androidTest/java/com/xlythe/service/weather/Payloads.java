@@ -0,0 +1,16 @@
+package com.xlythe.service.weather;
+
+/**
+ * Recorded provider responses, used as benchmark inputs.
+ */
+final class Payloads {
+    static final String OPEN_WEATHER = "{\"coord\":{\"lon\":-75.69,\"lat\":45.42},\"weather\":[{\"id\":600,\"main\":\"Snow\",\"description\":\"light snow\",\"icon\":\"13d\"}],\"base\":\"stations\",\"main\":{\"temp\":268.56,\"feels_like\":263.73,\"temp_min\":267.59,\"temp_max\":269.26,\"pressure\":1014,\"humidity\":88},\"visibility\":10000,\"wind\":{\"speed\":4.12,\"deg\":250},\"clouds\":{\"all\":75},\"dt\":1674318840,\"sys\":{\"type\":2,\"id\":2005537,\"country\":\"CA\",\"sunrise\":1674304502,\"sunset\":1674338008},\"timezone\":-18000,\"id\":6094817,\"name\":\"Ottawa\",\"cod\":200}\n";
+
+    static final String PIRATE_WEATHER = PirateWeather.EXAMPLE;
+
+    static final String WUNDERGROUND_CONDITIONS = "{\"response\":{\"version\":\"0.1\",\"features\":{\"geolookup\":1,\"conditions\":1}},\"location\":{\"type\":\"CITY\",\"country\":\"CA\",\"city\":\"Ottawa\",\"lat\":\"45.42\",\"lon\":\"-75.69\"},\"current_observation\":{\"display_location\":{\"full\":\"Ottawa, ON\",\"city\":\"Ottawa\",\"state\":\"ON\",\"country\":\"CA\"},\"observation_epoch\":\"1674318840\",\"weather\":\"Light Snow\",\"temperature_string\":\"23.7 F (-4.6 C)\",\"temp_f\":23.7,\"temp_c\":-4.6,\"relative_humidity\":\"88%\",\"wind_string\":\"From the WSW at 9.0 MPH\",\"wind_dir\":\"WSW\",\"wind_degrees\":255,\"wind_mph\":9.0,\"wind_kph\":14.5,\"pressure_mb\":\"1014\",\"dewpoint_c\":-6,\"feelslike_c\":\"-8\",\"visibility_km\":\"14.7\",\"icon\":\"snow\"}}\n";
+
+    static final String WUNDERGROUND_ASTRONOMY = "{\"response\":{\"version\":\"0.1\",\"features\":{\"astronomy\":1}},\"moon_phase\":{\"percentIlluminated\":\"1\",\"ageOfMoon\":\"29\",\"phaseofMoon\":\"New Moon\",\"hemisphere\":\"North\",\"current_time\":{\"hour\":\"11\",\"minute\":\"34\"},\"sunrise\":{\"hour\":\"7\",\"minute\":\"35\"},\"sunset\":{\"hour\":\"16\",\"minute\":\"53\"}},\"sun_phase\":{\"sunrise\":{\"hour\":\"7\",\"minute\":\"35\"},\"sunset\":{\"hour\":\"16\",\"minute\":\"53\"}}}\n";
+
+    private Payloads() {}
+}
@@ -0,0 +1,86 @@
+package com.xlythe.service.weather;
+
+import android.content.Context;
+
+import com.xlythe.service.weather.core.WeatherSnapshotCodec;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures marshalling weather state to and from the binary snapshot we persist, compared to the
+ * Base64 Parcel that older versions persisted.
+ */
+@RunWith(AndroidJUnit4.class)
+public class PersistenceBenchmark {
+    @Rule public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    private final Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+    private final Weather weather = new PirateWeather();
+
+    @Before
+    public void setUp() {
+        weather.fetch(context, Payloads.PIRATE_WEATHER);
+    }
+
+    @Test
+    public void toString_weather() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            ParcelableUtils.toString(weather);
+        }
+    }
+
+    @Test
+    public void fromString_weather() {
+        String data = ParcelableUtils.toString(weather);
+        Weather restored = new PirateWeather();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            ParcelableUtils.fromString(data, restored);
+        }
+    }
+
+    @Test
+    public void roundTrip_weather() {
+        Weather restored = new PirateWeather();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            ParcelableUtils.fromString(ParcelableUtils.toString(weather), restored);
+        }
+    }
+
+    @Test
+    public void encode_snapshot() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            WeatherSnapshotCodec.encode(weather.getSnapshot());
+        }
+    }
+
+    @Test
+    public void decode_snapshot() throws Exception {
+        byte[] data = WeatherSnapshotCodec.encode(weather.getSnapshot());
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            WeatherSnapshotCodec.decode(data);
+        }
+    }
+
+    @Test
+    public void saveAndRestore_weather() {
+        Weather restored = new PirateWeather();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            weather.save(context);
+            restored.restore(context);
+        }
+    }
+}
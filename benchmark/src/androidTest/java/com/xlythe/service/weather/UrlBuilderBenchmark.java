@@ -0,0 +1,30 @@
+package com.xlythe.service.weather;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures building a request url, the way {@link OpenWeatherService} does.
+ */
+@RunWith(AndroidJUnit4.class)
+public class UrlBuilderBenchmark {
+    @Rule public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    @Test
+    public void build() {
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            new LocationBasedService.Builder()
+                    .url("https://api.openweathermap.org/data/2.5/weather")
+                    .param("lat", Double.toString(45.4215))
+                    .param("lon", Double.toString(-75.6972))
+                    .param("appid", "0123456789abcdef0123456789abcdef")
+                    .build();
+        }
+    }
+}
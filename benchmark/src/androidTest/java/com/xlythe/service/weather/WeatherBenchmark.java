@@ -0,0 +1,79 @@
+package com.xlythe.service.weather;
+
+import com.xlythe.service.weather.core.OpenWeatherParser;
+import com.xlythe.service.weather.core.PirateWeatherParser;
+import com.xlythe.service.weather.core.WeatherUndergroundParser;
+
+import androidx.benchmark.BenchmarkState;
+import androidx.benchmark.junit4.BenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Measures the condition and moon phase mappers, and the time of day checks.
+ */
+@RunWith(AndroidJUnit4.class)
+public class WeatherBenchmark {
+    private static final String[] CONDITIONS = {
+            "Clear", "Partly Cloudy", "Light Snow", "Thunderstorm", "Overcast", "Fog", "Rain"
+    };
+
+    @Rule public final BenchmarkRule benchmarkRule = new BenchmarkRule();
+
+    @Test
+    public void openWeather_toCondition() {
+        int i = 0;
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            OpenWeatherParser.toCondition(CONDITIONS[i++ % CONDITIONS.length]);
+        }
+    }
+
+    @Test
+    public void pirateWeather_toCondition() {
+        int i = 0;
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            PirateWeatherParser.toCondition(CONDITIONS[i++ % CONDITIONS.length]);
+        }
+    }
+
+    @Test
+    public void pirateWeather_toMoonPhase() {
+        int i = 0;
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            PirateWeatherParser.toMoonPhase((i++ % 100) / 100.0);
+        }
+    }
+
+    @Test
+    public void weatherUnderground_toMoonPhase() {
+        int i = 0;
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            WeatherUndergroundParser.toMoonPhase(i++ % 30);
+        }
+    }
+
+    @Test
+    public void isDay() {
+        Weather weather = new PirateWeather();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            weather.isDay();
+        }
+    }
+
+    @Test
+    public void isNight() {
+        Weather weather = new PirateWeather();
+        BenchmarkState state = benchmarkRule.getState();
+        while (state.keepRunning()) {
+            weather.isNight();
+        }
+    }
+}
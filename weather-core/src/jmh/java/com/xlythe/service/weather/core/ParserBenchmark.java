@@ -0,0 +1,52 @@
+package com.xlythe.service.weather.core;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.TimeZone;
+
+/**
+ * Measures parsing a recorded response from each provider on the JVM.
+ */
+@State(Scope.Benchmark)
+public class ParserBenchmark {
+    private static final String OPEN_WEATHER = "{\"coord\":{\"lon\":-75.69,\"lat\":45.42},\"weather\":[{\"id\":600,\"main\":\"Snow\",\"description\":\"light snow\",\"icon\":\"13d\"}],\"base\":\"stations\",\"main\":{\"temp\":268.56,\"feels_like\":263.73,\"temp_min\":267.59,\"temp_max\":269.26,\"pressure\":1014,\"humidity\":88},\"visibility\":10000,\"wind\":{\"speed\":4.12,\"deg\":250},\"clouds\":{\"all\":75},\"dt\":1674318840,\"sys\":{\"type\":2,\"id\":2005537,\"country\":\"CA\",\"sunrise\":1674304502,\"sunset\":1674338008},\"timezone\":-18000,\"id\":6094817,\"name\":\"Ottawa\",\"cod\":200}\n";
+
+    private static final String PIRATE_WEATHER = "{\"latitude\":45.42,\"longitude\":-75.69,\"timezone\":\"America/Toronto\",\"offset\":-5,\"elevation\":69,\"currently\":{\"time\":1674318840,\"summary\":\"Clear\",\"icon\":\"clear-day\",\"nearestStormDistance\":0,\"nearestStormBearing\":0,\"precipIntensity\":0,\"precipProbability\":0,\"precipIntensityError\":0,\"precipType\":\"none\",\"temperature\":-4.59,\"apparentTemperature\":-7.82,\"dewPoint\":-6.21,\"humidity\":0.88,\"pressure\":1014.3,\"windSpeed\":7.204,\"windGust\":14.18,\"windBearing\":255.53,\"cloudCover\":0.14,\"uvIndex\":2.38,\"visibility\":14.7,\"ozone\":402.2},\"minutely\":{\"summary\":\"Clear\",\"icon\":\"clear\",\"data\":[{\"time\":1674318840,\"precipIntensity\":0,\"precipProbability\":0,\"precipIntensityError\":0,\"precipType\":\"none\"}]},\"hourly\":{\"summary\":\"Cloudy\",\"icon\":\"cloudy\",\"data\":[{\"time\":1674316800,\"icon\":\"partly-cloudy-day\",\"summary\":\"Partly Cloudy\",\"precipIntensity\":0.0033,\"precipProbability\":0,\"precipIntensityError\":0.0026,\"precipAccumulation\":0.0033,\"precipType\":\"snow\",\"temperature\":-5.4,\"apparentTemperature\":-8.63,\"dewPoint\":-7.02,\"humidity\":0.9,\"pressure\":1014.4,\"windSpeed\":6.88,\"windGust\":15.08,\"windBearing\":258.69,\"cloudCover\":0.49,\"uvIndex\":1.74,\"visibility\":14.8,\"ozone\":405.38}]},\"daily\":{\"summary\":\"Snow\",\"icon\":\"cloudy\",\"data\":[{\"time\":1674277200,\"icon\":\"cloudy\",\"summary\":\"Cloudy\",\"sunriseTime\":1674304502,\"sunsetTime\":1674338008,\"moonPhase\":0.9848795204636577,\"precipIntensity\":0.0179,\"precipIntensityMax\":0.0362,\"precipIntensityMaxTime\":1674356400,\"precipProbability\":0,\"precipAccumulation\":0.2861,\"precipType\":\"none\",\"temperatureHigh\":-2.59,\"temperatureHighTime\":1674331200,\"temperatureLow\":-5.4,\"temperatureLowTime\":1674316800,\"apparentTemperatureHigh\":-2.89,\"apparentTemperatureHighTime\":1674342000,\"apparentTemperatureLow\":-8.63,\"apparentTemperatureLowTime\":1674316800,\"dewPoint\":-5.6,\"humidity\":0.848,\"pressure\":1013.11,\"windSpeed\":5.92,\"windGust\":14.4,\"windGustTime\":1674320400,\"windBearing\":210.18,\"cloudCover\":0.768,\"uvIndex\":2.38,\"uvIndexTime\":1674320400,\"visibility\":15.1,\"temperatureMin\":-5.4,\"temperatureMinTime\":1674316800,\"temperatureMax\":-2.59,\"temperatureMaxTime\":1674331200,\"apparentTemperatureMin\":-8.63,\"apparentTemperatureMinTime\":1674316800,\"apparentTemperatureMax\":-2.89,\"apparentTemperatureMaxTime\":1674342000}],\"alerts\":[{\"title\":\"Wind Advisory issued January 24 at 9:25AM CST until January 24 at 6:00PM CST by NWS Corpus Christi TX\",\"regions\":[\"Live Oak\",\" Bee\",\" Goliad\",\" Victoria\",\" Jim Wells\",\" Inland Kleberg\",\" Inland Nueces\",\" Inland San Patricio\",\" Coastal Aransas\",\" Inland Refugio\",\" Inland Calhoun\",\" Coastal Kleberg\",\" Coastal Nueces\",\" Coastal San Patricio\",\" Aransas Islands\",\" Coastal Refugio\",\" Coastal Calhoun\",\" Kleberg Islands\",\" Nueces Islands\",\" Calhoun Islands\"],\"severity\":\"Moderate\",\"time\":1674573900,\"expires\":1674604800,\"description\":\"* WHAT...Southwest winds 25 to 30 mph with gusts up to 40 mph.  * WHERE...Portions of South Texas.  * WHEN...Until 6 PM CST this evening.  * IMPACTS...Gusty winds could blow around unsecured objects. Tree limbs could be blown down and a few power outages may result.\",\"uri\":\"https://api.weather.gov/alerts/urn:oid:2.49.0.1.840.0.492c55233ef16d7a98a3337298c828b0f358ea34.001.1\"}],\"flags\":{\"sources\":[\"ETOPO1\",\"gfs\",\"gefs\",\"hrrrsubh\",\"hrrr\"],\"sourceTimes\":{\"hrrr_0-18\":\"2023-01-21 14:00:00\",\"hrrr_subh\":\"2023-01-21 14:00:00\",\"hrrr_18-48\":\"2023-01-21 12:00:00\",\"gfs\":\"2023-01-21 06:00:00\",\"gefs\":\"2023-01-21 06:00:00\"},\"nearest-station\":0,\"units\":\"ca\",\"version\":\"V1.4.1\"}}}\n";
+
+    private static final String WUNDERGROUND_CONDITIONS = "{\"response\":{\"version\":\"0.1\",\"features\":{\"geolookup\":1,\"conditions\":1}},\"location\":{\"type\":\"CITY\",\"country\":\"CA\",\"city\":\"Ottawa\",\"lat\":\"45.42\",\"lon\":\"-75.69\"},\"current_observation\":{\"display_location\":{\"full\":\"Ottawa, ON\",\"city\":\"Ottawa\",\"state\":\"ON\",\"country\":\"CA\"},\"observation_epoch\":\"1674318840\",\"weather\":\"Light Snow\",\"temperature_string\":\"23.7 F (-4.6 C)\",\"temp_f\":23.7,\"temp_c\":-4.6,\"relative_humidity\":\"88%\",\"wind_string\":\"From the WSW at 9.0 MPH\",\"wind_dir\":\"WSW\",\"wind_degrees\":255,\"wind_mph\":9.0,\"wind_kph\":14.5,\"pressure_mb\":\"1014\",\"dewpoint_c\":-6,\"feelslike_c\":\"-8\",\"visibility_km\":\"14.7\",\"icon\":\"snow\"}}\n";
+
+    private static final String WUNDERGROUND_ASTRONOMY = "{\"response\":{\"version\":\"0.1\",\"features\":{\"astronomy\":1}},\"moon_phase\":{\"percentIlluminated\":\"1\",\"ageOfMoon\":\"29\",\"phaseofMoon\":\"New Moon\",\"hemisphere\":\"North\",\"current_time\":{\"hour\":\"11\",\"minute\":\"34\"},\"sunrise\":{\"hour\":\"7\",\"minute\":\"35\"},\"sunset\":{\"hour\":\"16\",\"minute\":\"53\"}},\"sun_phase\":{\"sunrise\":{\"hour\":\"7\",\"minute\":\"35\"},\"sunset\":{\"hour\":\"16\",\"minute\":\"53\"}}}\n";
+
+    private final WeatherParser openWeatherParser = new OpenWeatherParser(TimeZone.getTimeZone("UTC"));
+    private final WeatherParser pirateWeatherParser = new PirateWeatherParser(TimeZone.getTimeZone("UTC"));
+    private final WeatherParser weatherUndergroundParser = new WeatherUndergroundParser();
+
+    @Benchmark
+    public WeatherSnapshot openWeather() throws IOException {
+        return openWeatherParser.parse(new StringReader(OPEN_WEATHER), WeatherSnapshot.DEFAULT);
+    }
+
+    @Benchmark
+    public WeatherSnapshot pirateWeather() throws IOException {
+        return pirateWeatherParser.parse(new StringReader(PIRATE_WEATHER), WeatherSnapshot.DEFAULT);
+    }
+
+    @Benchmark
+    public WeatherSnapshot weatherUnderground_conditions() throws IOException {
+        return weatherUndergroundParser.parse(new StringReader(WUNDERGROUND_CONDITIONS), WeatherSnapshot.DEFAULT);
+    }
+
+    @Benchmark
+    public WeatherSnapshot weatherUnderground_astronomy() throws IOException {
+        return weatherUndergroundParser.parse(new StringReader(WUNDERGROUND_ASTRONOMY), WeatherSnapshot.DEFAULT);
+    }
+
+    @Benchmark
+    public boolean sunCycle_isDay() {
+        return SunCycle.isDay(SunCycle.toMinuteOfDay(System.currentTimeMillis(), TimeZone.getDefault()), 6 * 60, 18 * 60);
+    }
+}
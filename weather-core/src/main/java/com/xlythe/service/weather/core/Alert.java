@@ -0,0 +1,158 @@
+package com.xlythe.service.weather.core;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * An immutable severe weather alert, like a wind advisory or a tornado warning.
+ */
+public final class Alert {
+    private final String id;
+    private final String title;
+    private final String severity;
+    private final String description;
+    private final String[] regions;
+    private final long time;
+    private final long expires;
+
+    private Alert(Builder builder) {
+        this.title = builder.title;
+        this.severity = builder.severity;
+        this.description = builder.description;
+        this.regions = builder.regions;
+        this.time = builder.time;
+        this.expires = builder.expires;
+        // Alerts without a link are identified by what they say and when they were issued.
+        this.id = builder.id != null && !builder.id.isEmpty() ? builder.id : title + "@" + time;
+    }
+
+    /** Returns an id that stays the same as the alert is updated. Usually the alert's url. */
+    public String getId() {
+        return id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    /** Returns how severe the alert is, as reported by the provider (eg. "Moderate"). */
+    public String getSeverity() {
+        return severity;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public List<String> getRegions() {
+        return Collections.unmodifiableList(Arrays.asList(regions));
+    }
+
+    /** Returns when the alert was issued, in milliseconds since the epoch. */
+    public long getTime() {
+        return time;
+    }
+
+    /** Returns when the alert expires, in milliseconds since the epoch, or 0 if it doesn't. */
+    public long getExpires() {
+        return expires;
+    }
+
+    public boolean isExpired(long timeInMillis) {
+        return expires != 0 && expires <= timeInMillis;
+    }
+
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof Alert) {
+            Alert a = (Alert) o;
+            return id.equals(a.id)
+                    && title.equals(a.title)
+                    && severity.equals(a.severity)
+                    && description.equals(a.description)
+                    && Arrays.equals(regions, a.regions)
+                    && time == a.time
+                    && expires == a.expires;
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = id.hashCode();
+        hashCode = 31 * hashCode + title.hashCode();
+        hashCode = 31 * hashCode + (int) (expires ^ (expires >>> 32));
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return "Alert{id=" + id + ", title=" + title + ", severity=" + severity + ", expires=" + expires + "}";
+    }
+
+    public static class Builder {
+        private String id;
+        private String title = "";
+        private String severity = "";
+        private String description = "";
+        private String[] regions = new String[0];
+        private long time;
+        private long expires;
+
+        public Builder() {}
+
+        private Builder(Alert alert) {
+            this.id = alert.id;
+            this.title = alert.title;
+            this.severity = alert.severity;
+            this.description = alert.description;
+            this.regions = alert.regions;
+            this.time = alert.time;
+            this.expires = alert.expires;
+        }
+
+        public Builder id(String id) {
+            this.id = id;
+            return this;
+        }
+
+        public Builder title(String title) {
+            this.title = title;
+            return this;
+        }
+
+        public Builder severity(String severity) {
+            this.severity = severity;
+            return this;
+        }
+
+        public Builder description(String description) {
+            this.description = description;
+            return this;
+        }
+
+        public Builder regions(String... regions) {
+            this.regions = regions.clone();
+            return this;
+        }
+
+        public Builder time(long timeInMillis) {
+            this.time = timeInMillis;
+            return this;
+        }
+
+        public Builder expires(long timeInMillis) {
+            this.expires = timeInMillis;
+            return this;
+        }
+
+        public Alert build() {
+            return new Alert(this);
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.xlythe.service.weather.core;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * The alerts currently in effect, keyed by {@link Alert#getId()}.
+ * <p>
+ * Every refresh reports every alert that's in effect, whether or not it's new. Rather than
+ * treating each refresh as a fresh set of alerts, {@link #update(Collection, long)} compares it to
+ * what's stored and reports only what changed, so that anything acting on alerts (like a
+ * notification) only acts once per change.
+ */
+public final class AlertStore implements Persistable {
+    private static final int VERSION = 1;
+
+    private final LinkedHashMap<String, Alert> alerts = new LinkedHashMap<>();
+
+    /**
+     * Replaces the stored alerts with the ones that are in effect now. Alerts that have expired,
+     * or that are no longer reported, are removed.
+     */
+    public synchronized Diff update(Collection<Alert> current, long timeInMillis) {
+        List<Alert> added = new ArrayList<>();
+        List<Alert> updated = new ArrayList<>();
+        List<Alert> expired = new ArrayList<>();
+
+        Set<String> ids = new HashSet<>();
+        for (Alert alert : current) {
+            if (alert.isExpired(timeInMillis) || !ids.add(alert.getId())) {
+                continue;
+            }
+            Alert previous = alerts.put(alert.getId(), alert);
+            if (previous == null) {
+                added.add(alert);
+            } else if (!previous.equals(alert)) {
+                updated.add(alert);
+            }
+        }
+
+        Iterator<Alert> iterator = alerts.values().iterator();
+        while (iterator.hasNext()) {
+            Alert alert = iterator.next();
+            if (!ids.contains(alert.getId())) {
+                iterator.remove();
+                expired.add(alert);
+            }
+        }
+
+        return new Diff(added, updated, expired);
+    }
+
+    /**
+     * Removes alerts that have expired, without waiting for the next refresh.
+     */
+    public synchronized Diff evictExpired(long timeInMillis) {
+        List<Alert> expired = new ArrayList<>();
+        Iterator<Alert> iterator = alerts.values().iterator();
+        while (iterator.hasNext()) {
+            Alert alert = iterator.next();
+            if (alert.isExpired(timeInMillis)) {
+                iterator.remove();
+                expired.add(alert);
+            }
+        }
+        return new Diff(Collections.emptyList(), Collections.emptyList(), expired);
+    }
+
+    /**
+     * Returns the alerts that haven't expired as of the given time, in the order they were first
+     * reported.
+     */
+    public synchronized List<Alert> getAlerts(long timeInMillis) {
+        List<Alert> active = new ArrayList<>(alerts.size());
+        for (Alert alert : alerts.values()) {
+            if (!alert.isExpired(timeInMillis)) {
+                active.add(alert);
+            }
+        }
+        return active;
+    }
+
+    public synchronized int size() {
+        return alerts.size();
+    }
+
+    public synchronized void clear() {
+        alerts.clear();
+    }
+
+    @Override
+    public synchronized byte[] encode() {
+        return VersionedCodec.encode(VERSION, out -> {
+            out.writeInt(alerts.size());
+            for (Alert alert : alerts.values()) {
+                out.writeUTF(alert.getId());
+                out.writeUTF(alert.getTitle());
+                out.writeUTF(alert.getSeverity());
+                // Descriptions can be longer than writeUTF allows.
+                VersionedCodec.writeLongString(out, alert.getDescription());
+                List<String> regions = alert.getRegions();
+                out.writeShort(regions.size());
+                for (String region : regions) {
+                    out.writeUTF(region);
+                }
+                out.writeLong(alert.getTime());
+                out.writeLong(alert.getExpires());
+            }
+        });
+    }
+
+    /**
+     * Replaces the stored alerts with ones previously written by {@link #encode()}.
+     */
+    @Override
+    public synchronized void decode(byte[] bytes) throws IOException {
+        LinkedHashMap<String, Alert> decoded = new LinkedHashMap<>();
+        VersionedCodec.decode(bytes, VERSION, "alert", (in, version) -> {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                Alert.Builder builder = new Alert.Builder()
+                        .id(in.readUTF())
+                        .title(in.readUTF())
+                        .severity(in.readUTF())
+                        .description(VersionedCodec.readLongString(in));
+                String[] regions = new String[in.readUnsignedShort()];
+                for (int j = 0; j < regions.length; j++) {
+                    regions[j] = in.readUTF();
+                }
+                Alert alert = builder.regions(regions)
+                        .time(in.readLong())
+                        .expires(in.readLong())
+                        .build();
+                decoded.put(alert.getId(), alert);
+            }
+        });
+        alerts.clear();
+        alerts.putAll(decoded);
+    }
+
+    /**
+     * What changed between one set of alerts and the next.
+     */
+    public static final class Diff {
+        private final List<Alert> added;
+        private final List<Alert> updated;
+        private final List<Alert> expired;
+
+        Diff(List<Alert> added, List<Alert> updated, List<Alert> expired) {
+            this.added = Collections.unmodifiableList(added);
+            this.updated = Collections.unmodifiableList(updated);
+            this.expired = Collections.unmodifiableList(expired);
+        }
+
+        /** Returns alerts that weren't in effect before. */
+        public List<Alert> getAdded() {
+            return added;
+        }
+
+        /** Returns alerts that were already in effect, but have since changed. */
+        public List<Alert> getUpdated() {
+            return updated;
+        }
+
+        /** Returns alerts that expired, or were withdrawn. */
+        public List<Alert> getExpired() {
+            return expired;
+        }
+
+        public boolean isEmpty() {
+            return added.isEmpty() && updated.isEmpty() && expired.isEmpty();
+        }
+
+        @Override
+        public String toString() {
+            return "Diff{added=" + added.size() + ", updated=" + updated.size() + ", expired=" + expired.size() + "}";
+        }
+    }
+}
@@ -0,0 +1,5 @@
+package com.xlythe.service.weather.core;
+
+public enum Condition {
+    SNOW, RAIN, CLOUDY, SUNNY;
+}
@@ -0,0 +1,245 @@
+package com.xlythe.service.weather.core;
+
+import java.util.Arrays;
+
+/**
+ * An immutable series of forecasted points (hourly or daily), in chronological order.
+ * <p>
+ * Points are stored in columns of primitives rather than as an object per point, so a week of
+ * hourly data is a handful of arrays. Reading a point, or taking a {@link #slice(int, int)} of the
+ * series, never boxes or copies anything.
+ */
+public final class Forecast {
+    /** A forecast with no points. */
+    public static final Forecast EMPTY = new Builder().build();
+
+    private static final Condition[] CONDITIONS = Condition.values();
+
+    private final long[] times;
+    private final float[] celsius;
+    private final float[] minCelsius;
+    private final byte[] conditions;
+    private final float[] precipProbabilities;
+    private final int offset;
+    private final int size;
+
+    private Forecast(long[] times, float[] celsius, float[] minCelsius, byte[] conditions, float[] precipProbabilities, int offset, int size) {
+        this.times = times;
+        this.celsius = celsius;
+        this.minCelsius = minCelsius;
+        this.conditions = conditions;
+        this.precipProbabilities = precipProbabilities;
+        this.offset = offset;
+        this.size = size;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /** Returns the start of the point, in milliseconds since the epoch. */
+    public long getTime(int index) {
+        return times[offset + checkIndex(index)];
+    }
+
+    /** Returns the temperature. For daily forecasts, this is the high. */
+    public float getCelsius(int index) {
+        return celsius[offset + checkIndex(index)];
+    }
+
+    /** Returns the lowest temperature. For hourly forecasts, this is the same as the temperature. */
+    public float getMinCelsius(int index) {
+        return minCelsius[offset + checkIndex(index)];
+    }
+
+    public Condition getCondition(int index) {
+        return CONDITIONS[getConditionOrdinal(index)];
+    }
+
+    /** Returns the ordinal of the {@link Condition}, for callers scanning many points at once. */
+    public int getConditionOrdinal(int index) {
+        return conditions[offset + checkIndex(index)];
+    }
+
+    /** Returns the chance of precipitation, between 0 and 1. */
+    public float getPrecipProbability(int index) {
+        return precipProbabilities[offset + checkIndex(index)];
+    }
+
+    /**
+     * Returns the index of the point that covers the given time, or -1 if the time is before the
+     * first point. Times after the last point return the last point.
+     */
+    public int indexOf(long timeInMillis) {
+        int low = offset;
+        int high = offset + size - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (times[mid] <= timeInMillis) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return high - offset;
+    }
+
+    /**
+     * Returns the points from {@code fromIndex} (inclusive) to {@code toIndex} (exclusive). The
+     * slice shares its storage with this forecast.
+     */
+    public Forecast slice(int fromIndex, int toIndex) {
+        if (fromIndex < 0 || toIndex > size || fromIndex > toIndex) {
+            throw new IndexOutOfBoundsException("Cannot slice [" + fromIndex + ", " + toIndex + ") from " + size + " points");
+        }
+        return new Forecast(times, celsius, minCelsius, conditions, precipProbabilities, offset + fromIndex, toIndex - fromIndex);
+    }
+
+    private int checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("Index " + index + " out of " + size + " points");
+        }
+        return index;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof Forecast)) {
+            return false;
+        }
+        Forecast a = (Forecast) o;
+        if (size != a.size) {
+            return false;
+        }
+        for (int i = 0; i < size; i++) {
+            int j = offset + i;
+            int k = a.offset + i;
+            if (times[j] != a.times[k]
+                    || Float.compare(celsius[j], a.celsius[k]) != 0
+                    || Float.compare(minCelsius[j], a.minCelsius[k]) != 0
+                    || conditions[j] != a.conditions[k]
+                    || Float.compare(precipProbabilities[j], a.precipProbabilities[k]) != 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = size;
+        for (int i = offset; i < offset + size; i++) {
+            hashCode = 31 * hashCode + (int) (times[i] ^ (times[i] >>> 32));
+            hashCode = 31 * hashCode + Float.floatToIntBits(celsius[i]);
+            hashCode = 31 * hashCode + conditions[i];
+        }
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return "Forecast{size=" + size + "}";
+    }
+
+    /**
+     * Builds a forecast point by point. Values can be set in any order, since that's the order
+     * they're found in while streaming a response. Any value that's never set keeps its default.
+     */
+    public static class Builder {
+        private static final int DEFAULT_CAPACITY = 48;
+
+        private long[] times;
+        private float[] celsius;
+        private float[] minCelsius;
+        private byte[] conditions;
+        private float[] precipProbabilities;
+        private boolean hasMinCelsius;
+        private int size;
+
+        public Builder() {
+            this(DEFAULT_CAPACITY);
+        }
+
+        public Builder(int capacity) {
+            times = new long[capacity];
+            celsius = new float[capacity];
+            minCelsius = new float[capacity];
+            conditions = new byte[capacity];
+            precipProbabilities = new float[capacity];
+            Arrays.fill(conditions, (byte) Condition.SUNNY.ordinal());
+        }
+
+        public Builder time(int index, long timeInMillis) {
+            ensureSize(index);
+            times[index] = timeInMillis;
+            return this;
+        }
+
+        public Builder celsius(int index, float celsius) {
+            ensureSize(index);
+            this.celsius[index] = celsius;
+            return this;
+        }
+
+        public Builder minCelsius(int index, float minCelsius) {
+            ensureSize(index);
+            this.minCelsius[index] = minCelsius;
+            hasMinCelsius = true;
+            return this;
+        }
+
+        public Builder condition(int index, Condition condition) {
+            if (condition == null) {
+                throw new NullPointerException("condition == null");
+            }
+            ensureSize(index);
+            conditions[index] = (byte) condition.ordinal();
+            return this;
+        }
+
+        public Builder precipProbability(int index, float precipProbability) {
+            ensureSize(index);
+            precipProbabilities[index] = precipProbability;
+            return this;
+        }
+
+        private void ensureSize(int index) {
+            if (index < 0) {
+                throw new IndexOutOfBoundsException("Index " + index + " is negative");
+            }
+            if (index >= times.length) {
+                int capacity = Math.max(index + 1, times.length * 2);
+                int oldCapacity = times.length;
+                times = Arrays.copyOf(times, capacity);
+                celsius = Arrays.copyOf(celsius, capacity);
+                minCelsius = Arrays.copyOf(minCelsius, capacity);
+                conditions = Arrays.copyOf(conditions, capacity);
+                precipProbabilities = Arrays.copyOf(precipProbabilities, capacity);
+                Arrays.fill(conditions, oldCapacity, capacity, (byte) Condition.SUNNY.ordinal());
+            }
+            size = Math.max(size, index + 1);
+        }
+
+        public Forecast build() {
+            long[] times = Arrays.copyOf(this.times, size);
+            float[] celsius = Arrays.copyOf(this.celsius, size);
+            // Without a separate low, the low is the temperature itself. Share the column.
+            float[] minCelsius = hasMinCelsius ? Arrays.copyOf(this.minCelsius, size) : celsius;
+            return new Forecast(
+                    times,
+                    celsius,
+                    minCelsius,
+                    Arrays.copyOf(conditions, size),
+                    Arrays.copyOf(precipProbabilities, size),
+                    0,
+                    size);
+        }
+    }
+}
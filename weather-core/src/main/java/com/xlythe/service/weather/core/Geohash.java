@@ -0,0 +1,62 @@
+package com.xlythe.service.weather.core;
+
+/**
+ * Encodes coordinates as a geohash: a short string that names a cell on a grid over the earth.
+ * Each character narrows the cell down by a factor of 32, so coordinates that share a prefix are
+ * close together. At a precision of 5 characters, a cell is roughly 5km across. At 6, roughly 1km.
+ */
+public final class Geohash {
+    public static final int MAX_PRECISION = 12;
+
+    private static final char[] BASE_32 = "0123456789bcdefghjkmnpqrstuvwxyz".toCharArray();
+
+    private Geohash() {}
+
+    /**
+     * Returns the geohash of the cell, with the given number of characters, that contains the
+     * coordinates.
+     */
+    public static String encode(double latitude, double longitude, int precision) {
+        if (precision < 1 || precision > MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision must be between 1 and " + MAX_PRECISION);
+        }
+
+        double minLatitude = -90, maxLatitude = 90;
+        double minLongitude = -180, maxLongitude = 180;
+        char[] hash = new char[precision];
+        boolean even = true;
+        int bits = 0;
+        int value = 0;
+        int i = 0;
+        while (i < precision) {
+            // Bits alternate between longitude and latitude, starting with longitude.
+            if (even) {
+                double mid = (minLongitude + maxLongitude) / 2;
+                if (longitude >= mid) {
+                    value = (value << 1) | 1;
+                    minLongitude = mid;
+                } else {
+                    value <<= 1;
+                    maxLongitude = mid;
+                }
+            } else {
+                double mid = (minLatitude + maxLatitude) / 2;
+                if (latitude >= mid) {
+                    value = (value << 1) | 1;
+                    minLatitude = mid;
+                } else {
+                    value <<= 1;
+                    maxLatitude = mid;
+                }
+            }
+            even = !even;
+
+            if (++bits == 5) {
+                hash[i++] = BASE_32[value];
+                bits = 0;
+                value = 0;
+            }
+        }
+        return new String(hash);
+    }
+}
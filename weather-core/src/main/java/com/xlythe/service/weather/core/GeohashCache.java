@@ -0,0 +1,145 @@
+package com.xlythe.service.weather.core;
+
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Caches weather by location. Coordinates are rounded to a geohash cell (see {@link Geohash}),
+ * so nearby coordinates share an entry. Entries expire once their weather is older than the max
+ * age, and once the cache is full, the least recently used entry is evicted.
+ */
+public final class GeohashCache implements Persistable {
+    private static final int VERSION = 1;
+
+    private final LinkedHashMap<String, WeatherSnapshot> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private int precision;
+    private long maxAgeInMillis;
+    private int maxEntries;
+
+    /**
+     * @param precision The number of geohash characters that coordinates are rounded to.
+     * @param maxAgeInMillis How old weather can be, based on its last update, before it's ignored.
+     * @param maxEntries How many cells to remember.
+     */
+    public GeohashCache(int precision, long maxAgeInMillis, int maxEntries) {
+        setPrecision(precision);
+        setMaxAge(maxAgeInMillis);
+        setMaxEntries(maxEntries);
+    }
+
+    /**
+     * Changes the size of the cells. Entries cached at a different precision are no longer found,
+     * and age out of the cache over time.
+     */
+    public synchronized void setPrecision(int precision) {
+        if (precision < 1 || precision > Geohash.MAX_PRECISION) {
+            throw new IllegalArgumentException("Precision must be between 1 and " + Geohash.MAX_PRECISION);
+        }
+        this.precision = precision;
+    }
+
+    public synchronized int getPrecision() {
+        return precision;
+    }
+
+    public synchronized void setMaxAge(long maxAgeInMillis) {
+        this.maxAgeInMillis = maxAgeInMillis;
+    }
+
+    public synchronized void setMaxEntries(int maxEntries) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("A cache must hold at least one entry");
+        }
+        this.maxEntries = maxEntries;
+        trim();
+    }
+
+    /**
+     * Returns the geohash of the cell that the coordinates fall in.
+     */
+    public synchronized String getKey(double latitude, double longitude) {
+        return Geohash.encode(latitude, longitude, precision);
+    }
+
+    /**
+     * Returns the cached weather for the cell that the coordinates fall in, or null if there isn't
+     * any or it's expired.
+     */
+    public synchronized WeatherSnapshot get(double latitude, double longitude) {
+        String key = getKey(latitude, longitude);
+        WeatherSnapshot snapshot = entries.get(key);
+        if (snapshot == null) {
+            return null;
+        }
+        if (isExpired(snapshot)) {
+            entries.remove(key);
+            return null;
+        }
+        return snapshot;
+    }
+
+    public synchronized void put(double latitude, double longitude, WeatherSnapshot snapshot) {
+        entries.put(getKey(latitude, longitude), snapshot);
+        trim();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    private boolean isExpired(WeatherSnapshot snapshot) {
+        return System.currentTimeMillis() - snapshot.getLastUpdate() > maxAgeInMillis;
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<String, WeatherSnapshot>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, WeatherSnapshot> entry = iterator.next();
+            if (entries.size() > maxEntries || isExpired(entry.getValue())) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * Writes out every entry that hasn't expired, from least to most recently used.
+     */
+    @Override
+    public synchronized byte[] encode() {
+        trim();
+        return VersionedCodec.encode(VERSION, out -> {
+            out.writeInt(entries.size());
+            for (Map.Entry<String, WeatherSnapshot> entry : entries.entrySet()) {
+                byte[] snapshot = WeatherSnapshotCodec.encode(entry.getValue());
+                out.writeUTF(entry.getKey());
+                out.writeShort(snapshot.length);
+                out.write(snapshot);
+            }
+        });
+    }
+
+    /**
+     * Replaces the contents of the cache with entries previously written by {@link #encode()}.
+     */
+    @Override
+    public synchronized void decode(byte[] bytes) throws IOException {
+        entries.clear();
+        VersionedCodec.decode(bytes, VERSION, "cache", (in, version) -> {
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                String key = in.readUTF();
+                byte[] snapshot = new byte[in.readUnsignedShort()];
+                in.readFully(snapshot);
+                entries.put(key, WeatherSnapshotCodec.decode(snapshot));
+            }
+        });
+        trim();
+    }
+}
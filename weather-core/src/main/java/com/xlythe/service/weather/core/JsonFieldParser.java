@@ -0,0 +1,162 @@
+package com.xlythe.service.weather.core;
+
+import com.google.gson.stream.JsonReader;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Pulls a handful of fields out of a JSON document without building a tree for it.
+ * <p>
+ * Fields are registered by their dotted path (eg. "daily.data.0.sunriseTime", where numbers index
+ * into arrays). While parsing, any subtree that can't contain a registered path is skipped
+ * without allocating anything for it, and parsing stops as soon as every registered field has
+ * been found. The rest of the input (up to 64KB of it) is still read, but not parsed, so that
+ * the connection it came from can be reused.
+ * <p>
+ * Every element of an array can be read with {@link #each(String, IndexedFieldHandler)}, using a
+ * '*' in place of the index (eg. "hourly.data.*.temperature"). Since there's no telling how many
+ * elements there are, registering one means the whole document is read.
+ */
+public class JsonFieldParser {
+    public interface FieldHandler {
+        void onField(JsonReader reader) throws IOException;
+    }
+
+    public interface IndexedFieldHandler {
+        /**
+         * @param index The index of the element in the innermost array.
+         */
+        void onField(JsonReader reader, int index) throws IOException;
+    }
+
+    private final Map<String, FieldHandler> handlers = new HashMap<>();
+    private final Set<String> prefixes = new HashSet<>();
+    private final Map<String, IndexedFieldHandler> indexedHandlers = new HashMap<>();
+    private final Set<String> indexedPrefixes = new HashSet<>();
+    // Past this many chars, it's cheaper to drop the connection than to read the rest of it.
+    private static final int MAX_DRAIN_CHARS = 64 * 1024;
+
+    private int remaining;
+
+    public JsonFieldParser() {
+        prefixes.add("");
+    }
+
+    /**
+     * Registers a handler for the value at the given path. The handler must consume exactly one
+     * value from the reader.
+     */
+    public JsonFieldParser field(String path, FieldHandler handler) {
+        handlers.put(path, handler);
+        for (int i = path.indexOf('.'); i != -1; i = path.indexOf('.', i + 1)) {
+            prefixes.add(path.substring(0, i));
+        }
+        return this;
+    }
+
+    /**
+     * Registers a handler for the value at the given path in every element of an array, where
+     * array indices in the path are replaced by '*'. The handler must consume exactly one value
+     * from the reader.
+     */
+    public JsonFieldParser each(String path, IndexedFieldHandler handler) {
+        indexedHandlers.put(path, handler);
+        for (int i = path.indexOf('.'); i != -1; i = path.indexOf('.', i + 1)) {
+            indexedPrefixes.add(path.substring(0, i));
+        }
+        return this;
+    }
+
+    /**
+     * Parses the document, calling the handlers of any registered fields it finds. Returns the
+     * number of fields registered with {@link #field(String, FieldHandler)} that were found.
+     *
+     * @throws IOException if the document is malformed, or a field isn't of the type its handler
+     * expected.
+     */
+    public int parse(Reader in) throws IOException {
+        remaining = handlers.size();
+        try (JsonReader reader = new JsonReader(in)) {
+            if (parseValue(reader, "", "", -1)) {
+                drain(in);
+            }
+        } catch (IllegalStateException | NumberFormatException e) {
+            throw new IOException(e);
+        }
+        return handlers.size() - remaining;
+    }
+
+    /**
+     * Reads what's left of the input without parsing it.
+     */
+    private static void drain(Reader in) throws IOException {
+        char[] buffer = new char[1024];
+        int drained = 0;
+        int read;
+        while (drained < MAX_DRAIN_CHARS && (read = in.read(buffer)) != -1) {
+            drained += read;
+        }
+    }
+
+    /**
+     * Returns true once every registered field has been found, and parsing should stop.
+     *
+     * @param path The path, with array indices.
+     * @param wildPath The same path, but with '*' in place of array indices.
+     * @param index The index of the element in the innermost array, or -1 if not in one.
+     */
+    private boolean parseValue(JsonReader reader, String path, String wildPath, int index) throws IOException {
+        FieldHandler handler = handlers.get(path);
+        if (handler != null) {
+            handler.onField(reader);
+            return --remaining == 0 && indexedHandlers.isEmpty();
+        }
+
+        IndexedFieldHandler indexedHandler = indexedHandlers.get(wildPath);
+        if (indexedHandler != null) {
+            indexedHandler.onField(reader, index);
+            return false;
+        }
+
+        if (!prefixes.contains(path) && !indexedPrefixes.contains(wildPath)) {
+            reader.skipValue();
+            return false;
+        }
+
+        switch (reader.peek()) {
+            case BEGIN_OBJECT:
+                reader.beginObject();
+                while (reader.hasNext()) {
+                    String name = reader.nextName();
+                    if (parseValue(reader,
+                            path.isEmpty() ? name : path + '.' + name,
+                            wildPath.isEmpty() ? name : wildPath + '.' + name,
+                            index)) {
+                        return true;
+                    }
+                }
+                reader.endObject();
+                return false;
+            case BEGIN_ARRAY:
+                reader.beginArray();
+                for (int i = 0; reader.hasNext(); i++) {
+                    if (parseValue(reader,
+                            path.isEmpty() ? Integer.toString(i) : path + '.' + i,
+                            wildPath.isEmpty() ? "*" : wildPath + ".*",
+                            i)) {
+                        return true;
+                    }
+                }
+                reader.endArray();
+                return false;
+            default:
+                reader.skipValue();
+                return false;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.xlythe.service.weather.core;
+
+import java.util.Locale;
+
+/**
+ * A small, fixed size histogram of latencies, in milliseconds.
+ * <p>
+ * Buckets grow exponentially (by 25% each), so percentiles are accurate to within a quarter of
+ * their value from 1ms all the way up to a couple of minutes. Once enough samples have been
+ * recorded, every count is halved, so that the histogram follows recent behaviour instead of
+ * averaging over the whole lifetime of the process.
+ */
+public final class LatencyHistogram {
+    private static final double GROWTH = 1.25;
+    private static final int BUCKET_COUNT = 56;
+    private static final long[] UPPER_BOUNDS = new long[BUCKET_COUNT];
+    private static final int DEFAULT_DECAY_THRESHOLD = 256;
+
+    static {
+        double bound = 1;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            UPPER_BOUNDS[i] = (long) Math.ceil(bound);
+            bound *= GROWTH;
+        }
+    }
+
+    private final long[] counts = new long[BUCKET_COUNT];
+    private final int decayThreshold;
+    private long count;
+
+    public LatencyHistogram() {
+        this(DEFAULT_DECAY_THRESHOLD);
+    }
+
+    /**
+     * @param decayThreshold Once this many samples have been recorded, older samples start to
+     *                       carry half the weight of newer ones.
+     */
+    public LatencyHistogram(int decayThreshold) {
+        this.decayThreshold = decayThreshold;
+    }
+
+    public synchronized void record(long latencyInMillis) {
+        counts[indexOf(latencyInMillis)]++;
+        count++;
+
+        if (count >= decayThreshold) {
+            count = 0;
+            for (int i = 0; i < BUCKET_COUNT; i++) {
+                counts[i] /= 2;
+                count += counts[i];
+            }
+        }
+    }
+
+    /**
+     * Returns the number of samples currently weighing in on the percentiles.
+     */
+    public synchronized long getCount() {
+        return count;
+    }
+
+    /**
+     * Returns an upper bound for the given percentile (between 0 and 1), or -1 if nothing has
+     * been recorded.
+     */
+    public synchronized long getPercentile(double percentile) {
+        if (count == 0) {
+            return -1;
+        }
+
+        long rank = (long) Math.ceil(percentile * count);
+        long seen = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            seen += counts[i];
+            if (seen >= rank && seen > 0) {
+                return UPPER_BOUNDS[i];
+            }
+        }
+        return UPPER_BOUNDS[BUCKET_COUNT - 1];
+    }
+
+    private static int indexOf(long latencyInMillis) {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (latencyInMillis <= UPPER_BOUNDS[i]) {
+                return i;
+            }
+        }
+        return BUCKET_COUNT - 1;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format(Locale.US, "LatencyHistogram{count=%d, p50=%dms, p95=%dms, p99=%dms}",
+                count, getPercentile(0.5), getPercentile(0.95), getPercentile(0.99));
+    }
+}
@@ -0,0 +1,25 @@
+package com.xlythe.service.weather.core;
+
+import java.util.concurrent.TimeUnit;
+
+public enum MoonPhase {
+    NEW_MOON, WAXING_CRESCENT, FIRST_QUARTER, WAXING_GIBBOUS,
+    FULL_MOON, WANING_GIBBOUS, THIRD_QUARTER, WANING_CRESCENT;
+
+    // A new moon, 2000-01-06 18:14 UTC, and the average time between new moons.
+    private static final long NEW_MOON_IN_MILLIS = 947182440000L;
+    private static final double SYNODIC_MONTH_IN_MILLIS = 29.530588853 * TimeUnit.DAYS.toMillis(1);
+
+    /**
+     * Works out the moon phase at the given time. It's the same everywhere on Earth, so it can be
+     * used for providers that don't report it.
+     */
+    public static MoonPhase at(long timeInMillis) {
+        double age = (timeInMillis - NEW_MOON_IN_MILLIS) % SYNODIC_MONTH_IN_MILLIS;
+        if (age < 0) {
+            age += SYNODIC_MONTH_IN_MILLIS;
+        }
+        MoonPhase[] phases = values();
+        return phases[(int) Math.round(age / SYNODIC_MONTH_IN_MILLIS * phases.length) % phases.length];
+    }
+}
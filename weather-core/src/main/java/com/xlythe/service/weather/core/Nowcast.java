@@ -0,0 +1,98 @@
+package com.xlythe.service.weather.core;
+
+import java.util.Locale;
+
+/**
+ * An immutable summary of the precipitation expected over the next hour or so, minute by minute.
+ */
+public final class Nowcast {
+    /** Reported when there's no minute by minute data for the current time. */
+    public static final Nowcast UNKNOWN = new Nowcast(0, false, 0, 0, -1, -1);
+
+    private final long time;
+    private final boolean precipitating;
+    private final float precipIntensity;
+    private final float precipProbability;
+    private final int startsInMinutes;
+    private final int stopsInMinutes;
+
+    Nowcast(long time, boolean precipitating, float precipIntensity, float precipProbability, int startsInMinutes, int stopsInMinutes) {
+        this.time = time;
+        this.precipitating = precipitating;
+        this.precipIntensity = precipIntensity;
+        this.precipProbability = precipProbability;
+        this.startsInMinutes = startsInMinutes;
+        this.stopsInMinutes = stopsInMinutes;
+    }
+
+    /** Returns the minute this nowcast is for, in milliseconds since the epoch, or 0 if unknown. */
+    public long getTime() {
+        return time;
+    }
+
+    public boolean isKnown() {
+        return time != 0;
+    }
+
+    /** Returns true if it's raining (or snowing) right now. */
+    public boolean isPrecipitating() {
+        return precipitating;
+    }
+
+    /** Returns the current intensity, in millimeters per hour. */
+    public float getPrecipIntensity() {
+        return precipIntensity;
+    }
+
+    /** Returns the current chance of precipitation, between 0 and 1. */
+    public float getPrecipProbability() {
+        return precipProbability;
+    }
+
+    /**
+     * Returns how many minutes until precipitation starts, 0 if it already has, or -1 if it isn't
+     * expected to start within the data we have.
+     */
+    public int getStartsInMinutes() {
+        return startsInMinutes;
+    }
+
+    /**
+     * Returns how many minutes until the current (or next) precipitation stops, or -1 if it isn't
+     * expected to stop within the data we have, or isn't expected at all.
+     */
+    public int getStopsInMinutes() {
+        return stopsInMinutes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (o instanceof Nowcast) {
+            Nowcast a = (Nowcast) o;
+            return time == a.time
+                    && precipitating == a.precipitating
+                    && Float.compare(precipIntensity, a.precipIntensity) == 0
+                    && Float.compare(precipProbability, a.precipProbability) == 0
+                    && startsInMinutes == a.startsInMinutes
+                    && stopsInMinutes == a.stopsInMinutes;
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = (int) (time ^ (time >>> 32));
+        hashCode = 31 * hashCode + (precipitating ? 1 : 0);
+        hashCode = 31 * hashCode + Float.floatToIntBits(precipIntensity);
+        hashCode = 31 * hashCode + Float.floatToIntBits(precipProbability);
+        hashCode = 31 * hashCode + startsInMinutes;
+        hashCode = 31 * hashCode + stopsInMinutes;
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "Nowcast{precipitating=%s, precipIntensity=%s, precipProbability=%s, startsInMinutes=%d, stopsInMinutes=%d}",
+                precipitating, precipIntensity, precipProbability, startsInMinutes, stopsInMinutes);
+    }
+}
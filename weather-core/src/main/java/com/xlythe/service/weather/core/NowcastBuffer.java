@@ -0,0 +1,252 @@
+package com.xlythe.service.weather.core;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A ring buffer of minute by minute precipitation, from now until as far ahead as we have data,
+ * for a single place.
+ * <p>
+ * New data is merged in as it arrives, overwriting the minutes it covers, and minutes that have
+ * passed fall off the front. The minutes at which precipitation starts or stops are kept up to
+ * date as the data changes, rescanning only from the first minute that changed, so that
+ * {@link #getNowcast(long)} only needs a short search and never has to look at the data itself.
+ */
+public final class NowcastBuffer implements Persistable {
+    private static final int VERSION = 2;
+    private static final int DEFAULT_CAPACITY = 120;
+    private static final long MINUTE_IN_MILLIS = TimeUnit.MINUTES.toMillis(1);
+
+    // Lighter than this (in mm/h), or less likely than this, and it's not worth mentioning.
+    private static final float DEFAULT_MIN_INTENSITY = 0.1f;
+    private static final float DEFAULT_MIN_PROBABILITY = 0.5f;
+
+    private final float[] intensities;
+    private final float[] probabilities;
+    private final float minIntensity;
+    private final float minProbability;
+
+    // Where the data is for (like a geohash), or null if it hasn't been said.
+    private String location;
+
+    // The minute (since the epoch) stored at head, and how many minutes follow it.
+    private long headMinute;
+    private int head;
+    private int count;
+
+    // The minutes (since the epoch) at which precipitation starts or stops, in order. The first
+    // is always a start. If there's an odd number, precipitation continues past the end of the data.
+    private final long[] transitions;
+    private int transitionCount;
+
+    private Nowcast cached;
+
+    public NowcastBuffer() {
+        this(DEFAULT_CAPACITY, DEFAULT_MIN_INTENSITY, DEFAULT_MIN_PROBABILITY);
+    }
+
+    /**
+     * @param capacity How many minutes to hold.
+     * @param minIntensity How heavy precipitation must be, in mm/h, to count.
+     * @param minProbability How likely precipitation must be, between 0 and 1, to count.
+     */
+    public NowcastBuffer(int capacity, float minIntensity, float minProbability) {
+        intensities = new float[capacity];
+        probabilities = new float[capacity];
+        transitions = new long[capacity + 1];
+        this.minIntensity = minIntensity;
+        this.minProbability = minProbability;
+    }
+
+    /**
+     * Returns where the data is for, as last given to {@link #setLocation(String)}, or null.
+     */
+    public synchronized String getLocation() {
+        return location;
+    }
+
+    /**
+     * Says where the data that follows is for. If that's somewhere else than before, the data we
+     * have is no use anymore, and is dropped.
+     */
+    public synchronized void setLocation(String location) {
+        if (location.equals(this.location)) {
+            return;
+        }
+        this.location = location;
+        clear();
+    }
+
+    /**
+     * Merges in new minute by minute data, starting at the given time. Minutes before the oldest
+     * one we hold are ignored.
+     */
+    public synchronized void update(long startTimeInMillis, float[] intensities, float[] probabilities, int length) {
+        long startMinute = startTimeInMillis / MINUTE_IN_MILLIS;
+        if (count == 0 || startMinute > headMinute + count) {
+            // There'd be a gap between what we have and the new data. Start over instead.
+            reset(startMinute);
+        }
+        long firstChanged = Long.MAX_VALUE;
+        for (int i = 0; i < length; i++) {
+            long minute = startMinute + i;
+            if (minute < headMinute) {
+                continue;
+            }
+            // Make room by dropping the oldest minutes.
+            long offset = minute - headMinute;
+            if (offset >= this.intensities.length) {
+                drop((int) Math.min(count, offset - this.intensities.length + 1));
+                if (count == 0) {
+                    reset(minute);
+                }
+                offset = minute - headMinute;
+            }
+            int slot = (int) ((head + offset) % this.intensities.length);
+            this.intensities[slot] = intensities[i];
+            this.probabilities[slot] = probabilities[i];
+            count = (int) Math.max(count, offset + 1);
+            firstChanged = Math.min(firstChanged, minute);
+        }
+        if (firstChanged != Long.MAX_VALUE) {
+            onChanged(Math.max(firstChanged, headMinute));
+        }
+    }
+
+    /**
+     * Returns the nowcast for the given time. This is cheap enough to call every time a widget
+     * draws.
+     */
+    public synchronized Nowcast getNowcast(long timeInMillis) {
+        long minute = timeInMillis / MINUTE_IN_MILLIS;
+        if (cached != null && cached.getTime() == minute * MINUTE_IN_MILLIS) {
+            return cached;
+        }
+        if (count == 0 || minute < headMinute || minute >= headMinute + count) {
+            return Nowcast.UNKNOWN;
+        }
+
+        int slot = (int) ((head + (minute - headMinute)) % intensities.length);
+        boolean precipitating = isPrecipitating(slot);
+
+        // The first transition after now.
+        int next = firstTransitionAfter(minute);
+        int startsIn;
+        int stopsIn;
+        if (precipitating) {
+            startsIn = 0;
+            stopsIn = next < transitionCount ? (int) (transitions[next] - minute) : -1;
+        } else {
+            startsIn = next < transitionCount ? (int) (transitions[next] - minute) : -1;
+            stopsIn = next + 1 < transitionCount ? (int) (transitions[next + 1] - minute) : -1;
+        }
+
+        cached = new Nowcast(minute * MINUTE_IN_MILLIS, precipitating, intensities[slot], probabilities[slot], startsIn, stopsIn);
+        return cached;
+    }
+
+    public synchronized void clear() {
+        reset(0);
+    }
+
+    private void reset(long minute) {
+        headMinute = minute;
+        head = 0;
+        count = 0;
+        transitionCount = 0;
+        cached = null;
+    }
+
+    /**
+     * Drops the oldest minutes. Transitions that have passed go with them, except that if it's
+     * still precipitating at the new head, that's where precipitation now starts.
+     */
+    private void drop(int minutes) {
+        head = (head + minutes) % intensities.length;
+        headMinute += minutes;
+        count -= minutes;
+        cached = null;
+
+        int passed = firstTransitionAfter(headMinute);
+        if (passed % 2 == 1) {
+            passed--;
+            transitions[passed] = headMinute;
+        }
+        if (passed > 0) {
+            System.arraycopy(transitions, passed, transitions, 0, transitionCount - passed);
+            transitionCount -= passed;
+        }
+    }
+
+    private boolean isPrecipitating(int slot) {
+        return intensities[slot] >= minIntensity && probabilities[slot] >= minProbability;
+    }
+
+    /**
+     * Works out the transitions again, from the given minute onwards. Those before it can't have
+     * changed.
+     */
+    private void onChanged(long fromMinute) {
+        cached = null;
+        transitionCount = firstTransitionAfter(fromMinute - 1);
+        boolean precipitating = transitionCount % 2 == 1;
+        for (long minute = fromMinute; minute < headMinute + count; minute++) {
+            boolean next = isPrecipitating((int) ((head + (minute - headMinute)) % intensities.length));
+            if (next != precipitating) {
+                transitions[transitionCount++] = minute;
+                precipitating = next;
+            }
+        }
+    }
+
+    /** Returns the index of the first transition strictly after the given minute. */
+    private int firstTransitionAfter(long minute) {
+        int low = 0;
+        int high = transitionCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (transitions[mid] <= minute) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    @Override
+    public synchronized byte[] encode() {
+        return VersionedCodec.encode(VERSION, out -> {
+            out.writeUTF(location == null ? "" : location);
+            out.writeLong(headMinute);
+            out.writeShort(count);
+            for (int i = 0; i < count; i++) {
+                int slot = (head + i) % intensities.length;
+                out.writeFloat(intensities[slot]);
+                out.writeFloat(probabilities[slot]);
+            }
+        });
+    }
+
+    /**
+     * Replaces the contents of the buffer with data previously written by {@link #encode()}.
+     */
+    @Override
+    public synchronized void decode(byte[] bytes) throws IOException {
+        VersionedCodec.decode(bytes, VERSION, "nowcast", (in, version) -> {
+            // Version 1 didn't say where the data was for.
+            String location = version >= 2 ? in.readUTF() : "";
+            long startMinute = in.readLong();
+            int length = in.readUnsignedShort();
+            float[] intensities = new float[length];
+            float[] probabilities = new float[length];
+            for (int i = 0; i < length; i++) {
+                intensities[i] = in.readFloat();
+                probabilities[i] = in.readFloat();
+            }
+            this.location = location.isEmpty() ? null : location;
+            clear();
+            update(startMinute * MINUTE_IN_MILLIS, intensities, probabilities, length);
+        });
+    }
+}
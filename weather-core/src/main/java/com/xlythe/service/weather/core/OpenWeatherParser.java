@@ -0,0 +1,67 @@
+package com.xlythe.service.weather.core;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.TimeZone;
+
+/**
+ * Parses OpenWeather's current weather response.
+ * <p>
+ * Supports condition, temperature, wind speed, sunrise and sunset.
+ */
+public class OpenWeatherParser implements WeatherParser {
+    // Condition, temperature, wind speed, sunrise and sunset.
+    private static final int REQUIRED_FIELDS = 5;
+
+    private final TimeZone timeZone;
+
+    public OpenWeatherParser() {
+        this(TimeZone.getDefault());
+    }
+
+    /**
+     * @param timeZone The time zone that sunrise and sunset are reported in.
+     */
+    public OpenWeatherParser(TimeZone timeZone) {
+        this.timeZone = timeZone;
+    }
+
+    @Override
+    public WeatherSnapshot parse(Reader in, WeatherSnapshot previous) throws IOException {
+        WeatherSnapshot.Builder builder = previous.toBuilder();
+        int found = new JsonFieldParser()
+                .field("weather.0.main", reader -> builder.condition(toCondition(reader.nextString())))
+                .field("main.temp", reader -> builder.celsius(toCelsius(reader.nextDouble())))
+                .field("wind.speed", reader -> builder.windKph(toKilometers(reader.nextDouble())))
+                .field("sys.sunrise", reader -> builder.sunrise(SunCycle.toMinuteOfDay(1000 * reader.nextLong(), timeZone)))
+                .field("sys.sunset", reader -> builder.sunset(SunCycle.toMinuteOfDay(1000 * reader.nextLong(), timeZone)))
+                .parse(in);
+
+        if (found < REQUIRED_FIELDS) {
+            throw new IOException("OpenWeather json was missing " + (REQUIRED_FIELDS - found) + " fields");
+        }
+        return builder.build();
+    }
+
+    public static Condition toCondition(String condition) {
+        condition = condition.toLowerCase();
+        if (condition.contains("snow")) {
+            return Condition.SNOW;
+        }
+        if (condition.contains("rain") || condition.contains("storm")) {
+            return Condition.RAIN;
+        }
+        if (condition.contains("cloud")) {
+            return Condition.CLOUDY;
+        }
+        return Condition.SUNNY;
+    }
+
+    private static float toCelsius(double kelvin) {
+        return (float) (kelvin - 273);
+    }
+
+    private static int toKilometers(double kilometers) {
+        return (int) kilometers;
+    }
+}
@@ -0,0 +1,18 @@
+package com.xlythe.service.weather.core;
+
+import java.io.IOException;
+
+/**
+ * Something that can be written out as bytes and read back later, like a cache that should
+ * survive the process being killed. See {@link VersionedCodec} for the format most of these use.
+ */
+public interface Persistable {
+    byte[] encode();
+
+    /**
+     * Replaces the current contents with data previously written by {@link #encode()}.
+     *
+     * @throws IOException if the data is corrupt, or was written by a newer version.
+     */
+    void decode(byte[] bytes) throws IOException;
+}
@@ -0,0 +1,50 @@
+package com.xlythe.service.weather.core;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Parses the minutely block of Pirate Weather's forecast response into a {@link NowcastBuffer}.
+ * Everything else in the response is skipped, so it's cheapest when the request excludes the
+ * other blocks.
+ */
+public class PirateNowcastParser {
+    // Pirate Weather returns an hour of minutes, starting with the current one.
+    private static final int MINUTELY_CAPACITY = 61;
+
+    private long[] times = new long[MINUTELY_CAPACITY];
+    private float[] intensities = new float[MINUTELY_CAPACITY];
+    private float[] probabilities = new float[MINUTELY_CAPACITY];
+    private int size;
+
+    /**
+     * Merges the minutes in the response into the buffer. Returns the number of minutes found.
+     */
+    public int parse(Reader in, NowcastBuffer buffer) throws IOException {
+        size = 0;
+        Arrays.fill(intensities, 0);
+        Arrays.fill(probabilities, 0);
+        new JsonFieldParser()
+                .each("minutely.data.*.time", (reader, i) -> times[ensureSize(i)] = 1000 * reader.nextLong())
+                .each("minutely.data.*.precipIntensity", (reader, i) -> intensities[ensureSize(i)] = (float) reader.nextDouble())
+                .each("minutely.data.*.precipProbability", (reader, i) -> probabilities[ensureSize(i)] = (float) reader.nextDouble())
+                .parse(in);
+        if (size > 0) {
+            // Minutes are consecutive, so only the first one's time matters.
+            buffer.update(times[0], intensities, probabilities, size);
+        }
+        return size;
+    }
+
+    private int ensureSize(int index) {
+        if (index >= times.length) {
+            int capacity = Math.max(index + 1, times.length * 2);
+            times = Arrays.copyOf(times, capacity);
+            intensities = Arrays.copyOf(intensities, capacity);
+            probabilities = Arrays.copyOf(probabilities, capacity);
+        }
+        size = Math.max(size, index + 1);
+        return index;
+    }
+}
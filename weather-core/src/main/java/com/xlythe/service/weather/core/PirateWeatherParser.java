@@ -0,0 +1,202 @@
+package com.xlythe.service.weather.core;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+/**
+ * Parses Pirate Weather's forecast response. The current conditions and today's forecast are
+ * read, along with the hourly and daily forecasts if the response includes them. The rest of the
+ * response is skipped.
+ * <p>
+ * Supports condition, temperature, sunrise, sunset, moon phase and the hourly and daily forecasts.
+ * Alerts aren't part of the snapshot, but can be collected with an {@link AlertHandler}.
+ */
+public class PirateWeatherParser implements WeatherParser {
+    private static final Map<Double, MoonPhase> MOON_PHASES = new HashMap<>();
+
+    static {
+        // Moon phase is between 0.0 and 1.0
+        MOON_PHASES.put(0.0, MoonPhase.NEW_MOON);
+        MOON_PHASES.put(0.125, MoonPhase.WAXING_CRESCENT);
+        MOON_PHASES.put(0.25, MoonPhase.FIRST_QUARTER);
+        MOON_PHASES.put(0.375, MoonPhase.WAXING_GIBBOUS);
+        MOON_PHASES.put(0.5, MoonPhase.FULL_MOON);
+        MOON_PHASES.put(0.625, MoonPhase.WANING_GIBBOUS);
+        MOON_PHASES.put(0.75, MoonPhase.THIRD_QUARTER);
+        MOON_PHASES.put(0.875, MoonPhase.WANING_CRESCENT);
+        MOON_PHASES.put(1.0, MoonPhase.NEW_MOON);
+    }
+
+    // Pirate Weather returns 48 hours and 8 days, unless extended.
+    private static final int HOURLY_CAPACITY = 48;
+    private static final int DAILY_CAPACITY = 8;
+
+    public interface AlertHandler {
+        /**
+         * Called with the alerts in the response. Not called if the response didn't include
+         * alerts. An empty list means there are no alerts in effect.
+         */
+        void onAlerts(List<Alert> alerts);
+    }
+
+    private final TimeZone timeZone;
+    private final AlertHandler alertHandler;
+
+    public PirateWeatherParser() {
+        this(TimeZone.getDefault());
+    }
+
+    /**
+     * @param timeZone The time zone that sunrise and sunset are reported in.
+     */
+    public PirateWeatherParser(TimeZone timeZone) {
+        this(timeZone, null);
+    }
+
+    /**
+     * @param timeZone The time zone that sunrise and sunset are reported in.
+     * @param alertHandler Called with the alerts in each response, or null to skip them.
+     */
+    public PirateWeatherParser(TimeZone timeZone, AlertHandler alertHandler) {
+        this.timeZone = timeZone;
+        this.alertHandler = alertHandler;
+    }
+
+    @Override
+    public WeatherSnapshot parse(Reader in, WeatherSnapshot previous) throws IOException {
+        WeatherSnapshot.Builder builder = previous.toBuilder();
+        Forecast.Builder hourly = new Forecast.Builder(HOURLY_CAPACITY);
+        Forecast.Builder daily = new Forecast.Builder(DAILY_CAPACITY);
+        boolean[] forecasts = new boolean[2];
+        List<Alert> alerts = new ArrayList<>();
+        boolean[] hasAlerts = new boolean[1];
+        JsonFieldParser fields = new JsonFieldParser()
+                .field("currently.summary", reader -> builder.condition(toCondition(reader.nextString())))
+                .field("currently.temperature", reader -> builder.celsius((float) reader.nextDouble()))
+                .field("daily.data.0.moonPhase", reader -> builder.moonPhase(toMoonPhase(reader.nextDouble())))
+                .field("daily.data.0.sunriseTime", reader -> builder.sunrise(SunCycle.toMinuteOfDay(1000 * reader.nextLong(), timeZone)))
+                .field("daily.data.0.sunsetTime", reader -> builder.sunset(SunCycle.toMinuteOfDay(1000 * reader.nextLong(), timeZone)))
+                .each("hourly.data.*.time", (reader, i) -> {
+                    hourly.time(i, 1000 * reader.nextLong());
+                    forecasts[0] = true;
+                })
+                .each("hourly.data.*.temperature", (reader, i) -> hourly.celsius(i, (float) reader.nextDouble()))
+                .each("hourly.data.*.summary", (reader, i) -> hourly.condition(i, toCondition(reader.nextString())))
+                .each("hourly.data.*.precipProbability", (reader, i) -> hourly.precipProbability(i, (float) reader.nextDouble()))
+                .each("daily.data.*.time", (reader, i) -> {
+                    daily.time(i, 1000 * reader.nextLong());
+                    forecasts[1] = true;
+                })
+                .each("daily.data.*.temperatureHigh", (reader, i) -> daily.celsius(i, (float) reader.nextDouble()))
+                .each("daily.data.*.temperatureLow", (reader, i) -> daily.minCelsius(i, (float) reader.nextDouble()))
+                .each("daily.data.*.summary", (reader, i) -> daily.condition(i, toCondition(reader.nextString())))
+                .each("daily.data.*.precipProbability", (reader, i) -> daily.precipProbability(i, (float) reader.nextDouble()));
+        if (alertHandler != null) {
+            fields.field("alerts", reader -> {
+                readAlerts(reader, alerts);
+                hasAlerts[0] = true;
+            });
+        }
+        int found = fields.parse(in);
+
+        if (found == 0 && !forecasts[0] && !forecasts[1]) {
+            throw new IOException("Unknown Pirate Weather json");
+        }
+
+        // If a forecast wasn't in the response, keep the one we had.
+        if (forecasts[0]) builder.hourly(hourly.build());
+        if (forecasts[1]) builder.daily(daily.build());
+        WeatherSnapshot snapshot = builder.build();
+
+        // Only hand over the alerts once we know the response was good.
+        if (hasAlerts[0]) {
+            alertHandler.onAlerts(alerts);
+        }
+        return snapshot;
+    }
+
+    private static void readAlerts(JsonReader reader, List<Alert> alerts) throws IOException {
+        reader.beginArray();
+        while (reader.hasNext()) {
+            Alert.Builder builder = new Alert.Builder();
+            reader.beginObject();
+            while (reader.hasNext()) {
+                String name = reader.nextName();
+                if (reader.peek() == JsonToken.NULL) {
+                    reader.skipValue();
+                    continue;
+                }
+                switch (name) {
+                    case "uri":
+                        builder.id(reader.nextString());
+                        break;
+                    case "title":
+                        builder.title(reader.nextString());
+                        break;
+                    case "severity":
+                        builder.severity(reader.nextString());
+                        break;
+                    case "description":
+                        builder.description(reader.nextString());
+                        break;
+                    case "regions":
+                        List<String> regions = new ArrayList<>();
+                        reader.beginArray();
+                        while (reader.hasNext()) {
+                            regions.add(reader.nextString().trim());
+                        }
+                        reader.endArray();
+                        builder.regions(regions.toArray(new String[0]));
+                        break;
+                    case "time":
+                        builder.time(1000 * reader.nextLong());
+                        break;
+                    case "expires":
+                        builder.expires(1000 * reader.nextLong());
+                        break;
+                    default:
+                        reader.skipValue();
+                        break;
+                }
+            }
+            reader.endObject();
+            alerts.add(builder.build());
+        }
+        reader.endArray();
+    }
+
+    public static Condition toCondition(String condition) {
+        condition = condition.toLowerCase();
+        if (condition.contains("snow")) {
+            return Condition.SNOW;
+        }
+        if (condition.contains("rain") || condition.contains("storm") || condition.contains("thunder")) {
+            return Condition.RAIN;
+        }
+        if (condition.contains("cloud") || condition.contains("overcast") || condition.contains("fog")) {
+            return Condition.CLOUDY;
+        }
+        return Condition.SUNNY;
+    }
+
+    public static MoonPhase toMoonPhase(double moonPhase) {
+        double minDistance = Double.MAX_VALUE;
+        MoonPhase closestPhase = MoonPhase.NEW_MOON;
+        for (Map.Entry<Double, MoonPhase> entry : MOON_PHASES.entrySet()) {
+            double distanceToPhase = Math.abs(entry.getKey() - moonPhase);
+            if (distanceToPhase < minDistance) {
+                minDistance = distanceToPhase;
+                closestPhase = entry.getValue();
+            }
+        }
+        return closestPhase;
+    }
+}
@@ -0,0 +1,58 @@
+package com.xlythe.service.weather.core;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Time of day math. All times are expressed in minutes since midnight.
+ * <p>
+ * Sunrise and sunset are treated as lasting from an hour before until an hour after the given
+ * time. Day is everything in between, and night is everything else. Times wrap around midnight,
+ * so a sunrise at 00:30 has already started at 23:45.
+ */
+public final class SunCycle {
+    public static final int MINUTES_PER_HOUR = 60;
+    public static final int MINUTES_PER_DAY = 24 * MINUTES_PER_HOUR;
+
+    private SunCycle() {}
+
+    public static int toMinuteOfDay(int hour, int minute) {
+        return hour * MINUTES_PER_HOUR + minute;
+    }
+
+    public static int toMinuteOfDay(long timeInMillis, TimeZone timeZone) {
+        Calendar calendar = Calendar.getInstance(timeZone);
+        calendar.setTimeInMillis(timeInMillis);
+        return toMinuteOfDay(calendar.get(Calendar.HOUR_OF_DAY), calendar.get(Calendar.MINUTE));
+    }
+
+    public static boolean isSunrise(int now, int sunrise) {
+        return distance(now, sunrise) < MINUTES_PER_HOUR;
+    }
+
+    public static boolean isDay(int now, int sunrise, int sunset) {
+        // Day runs from the end of sunrise until the start of sunset. If those overlap, there's
+        // no day at all.
+        int length = minutesBetween(sunrise, sunset) - 2 * MINUTES_PER_HOUR;
+        return length >= 0 && minutesBetween(sunrise + MINUTES_PER_HOUR, now) <= length;
+    }
+
+    public static boolean isSunset(int now, int sunset) {
+        return distance(now, sunset) < MINUTES_PER_HOUR;
+    }
+
+    public static boolean isNight(int now, int sunrise, int sunset) {
+        return !isSunrise(now, sunrise) && !isDay(now, sunrise, sunset) && !isSunset(now, sunset);
+    }
+
+    /** Returns how many minutes it is from one time until the next time the clock reads the other. */
+    private static int minutesBetween(int from, int to) {
+        return Math.floorMod(to - from, MINUTES_PER_DAY);
+    }
+
+    /** Returns how many minutes apart two times are, whichever comes first. */
+    private static int distance(int a, int b) {
+        int between = minutesBetween(a, b);
+        return Math.min(between, MINUTES_PER_DAY - between);
+    }
+}
@@ -0,0 +1,72 @@
+package com.xlythe.service.weather.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+/**
+ * The binary format shared by the {@link Persistable} classes in this module: a 1 byte version,
+ * followed by whatever the owner writes with a {@link DataOutputStream}. Data written by a newer
+ * version is rejected rather than misread.
+ */
+public final class VersionedCodec {
+    public interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    public interface Reader {
+        /**
+         * @param version The version the data was written with. Never newer than the reader's.
+         */
+        void read(DataInputStream in, int version) throws IOException;
+    }
+
+    private VersionedCodec() {}
+
+    public static byte[] encode(int version, Writer writer) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(version);
+            writer.write(out);
+        } catch (IOException e) {
+            // Writing to memory doesn't throw.
+            throw new IllegalStateException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * @param maxVersion The newest version the reader understands.
+     * @param name What's being decoded, for error messages.
+     */
+    public static void decode(byte[] bytes, int maxVersion, String name, Reader reader) throws IOException {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(bytes))) {
+            int version = in.readUnsignedByte();
+            if (version > maxVersion) {
+                throw new IOException("Unsupported " + name + " version " + version);
+            }
+            reader.read(in, version);
+        }
+    }
+
+    /**
+     * Writes a string that may be longer than {@link DataOutputStream#writeUTF(String)} allows.
+     */
+    public static void writeLongString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes("UTF-8");
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    public static String readLongString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0 || length > in.available()) {
+            throw new IOException("Invalid string length " + length);
+        }
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
@@ -0,0 +1,73 @@
+package com.xlythe.service.weather.core;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * The groups of values in a {@link WeatherSnapshot} that can be taken from different sources when
+ * merging snapshots together, or compared to see what a refresh changed.
+ */
+public enum WeatherField {
+    TEMPERATURE, CONDITION, WIND, SUN, MOON_PHASE, FORECAST;
+
+    /**
+     * Copies this field from the given snapshot into the builder.
+     */
+    public void copy(WeatherSnapshot from, WeatherSnapshot.Builder to) {
+        switch (this) {
+            case TEMPERATURE:
+                to.celsius(from.getCelsius());
+                break;
+            case CONDITION:
+                to.condition(from.getCondition());
+                break;
+            case WIND:
+                to.windKph(from.getWindKph());
+                break;
+            case SUN:
+                to.sunrise(from.getSunrise()).sunset(from.getSunset());
+                break;
+            case MOON_PHASE:
+                to.moonPhase(from.getMoonPhase());
+                break;
+            case FORECAST:
+                to.hourly(from.getHourly()).daily(from.getDaily());
+                break;
+        }
+    }
+
+    /**
+     * Returns true if this field has the same value in both snapshots.
+     */
+    public boolean isSame(WeatherSnapshot a, WeatherSnapshot b) {
+        switch (this) {
+            case TEMPERATURE:
+                return Float.compare(a.getCelsius(), b.getCelsius()) == 0;
+            case CONDITION:
+                return a.getCondition() == b.getCondition();
+            case WIND:
+                return a.getWindKph() == b.getWindKph();
+            case SUN:
+                return a.getSunrise() == b.getSunrise() && a.getSunset() == b.getSunset();
+            case MOON_PHASE:
+                return a.getMoonPhase() == b.getMoonPhase();
+            case FORECAST:
+                return a.getHourly().equals(b.getHourly()) && a.getDaily().equals(b.getDaily());
+        }
+        return false;
+    }
+
+    /**
+     * Returns the fields that differ between the two snapshots. When each snapshot was saved isn't
+     * a field, so two snapshots of the same weather fetched at different times have no differences.
+     */
+    public static Set<WeatherField> diff(WeatherSnapshot a, WeatherSnapshot b) {
+        Set<WeatherField> changed = EnumSet.noneOf(WeatherField.class);
+        for (WeatherField field : values()) {
+            if (!field.isSame(a, b)) {
+                changed.add(field);
+            }
+        }
+        return changed;
+    }
+}
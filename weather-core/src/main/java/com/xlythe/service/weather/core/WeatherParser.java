@@ -0,0 +1,17 @@
+package com.xlythe.service.weather.core;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Turns a provider's response into a {@link WeatherSnapshot}.
+ */
+public interface WeatherParser {
+    /**
+     * Parses the response on top of the previous snapshot. Any values that the response doesn't
+     * contain are carried over from the previous snapshot.
+     *
+     * @throws IOException if the response is malformed, or is missing required fields.
+     */
+    WeatherSnapshot parse(Reader in, WeatherSnapshot previous) throws IOException;
+}
@@ -0,0 +1,280 @@
+package com.xlythe.service.weather.core;
+
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+
+/**
+ * An immutable observation of the weather at a point in time.
+ * <p>
+ * Every value is held as a primitive: times of day as a short count of minutes since midnight,
+ * and enums as their ordinals. Reading, comparing and hashing a snapshot never allocates, and
+ * the hash is only computed once.
+ */
+public final class WeatherSnapshot {
+    private static final Condition[] CONDITIONS = Condition.values();
+    private static final MoonPhase[] MOON_PHASES = MoonPhase.values();
+
+    /** The values reported before any weather has been fetched. */
+    public static final WeatherSnapshot DEFAULT = new Builder().build();
+
+    private final float tempC;
+    private final byte condition;
+    private final byte moonPhase;
+    private final short sunrise;
+    private final short sunset;
+    private final int windKph;
+    private final long lastUpdate;
+    private final Forecast hourly;
+    private final Forecast daily;
+
+    // Lazily computed. Snapshots are immutable, so a racing thread at worst computes it twice.
+    private int hashCode;
+
+    private WeatherSnapshot(Builder builder) {
+        this.tempC = builder.tempC;
+        this.condition = (byte) builder.condition.ordinal();
+        this.moonPhase = (byte) builder.moonPhase.ordinal();
+        this.sunrise = builder.sunrise;
+        this.sunset = builder.sunset;
+        this.windKph = builder.windKph;
+        this.lastUpdate = builder.lastUpdate;
+        this.hourly = builder.hourly;
+        this.daily = builder.daily;
+    }
+
+    public float getCelsius() {
+        return tempC;
+    }
+
+    public float getFahrenheit() {
+        return (int) (9f / 5f * tempC + 32);
+    }
+
+    public Condition getCondition() {
+        return CONDITIONS[condition];
+    }
+
+    public MoonPhase getMoonPhase() {
+        return MOON_PHASES[moonPhase];
+    }
+
+    /** Returns the time of sunrise, in minutes since midnight. */
+    public int getSunrise() {
+        return sunrise;
+    }
+
+    /** Returns the time of sunset, in minutes since midnight. */
+    public int getSunset() {
+        return sunset;
+    }
+
+    public int getWindKph() {
+        return windKph;
+    }
+
+    public int getWindMph() {
+        return (int) (windKph * 0.6214f);
+    }
+
+    /** Returns when this snapshot was saved, in milliseconds since epoch, or 0 if never. */
+    public long getLastUpdate() {
+        return lastUpdate;
+    }
+
+    /** Returns the forecast for the coming hours, or an empty forecast if there isn't one. */
+    public Forecast getHourly() {
+        return hourly;
+    }
+
+    /** Returns the forecast for the coming days, or an empty forecast if there isn't one. */
+    public Forecast getDaily() {
+        return daily;
+    }
+
+    public boolean isSunrise(int minuteOfDay) {
+        return SunCycle.isSunrise(minuteOfDay, sunrise);
+    }
+
+    public boolean isDay(int minuteOfDay) {
+        return SunCycle.isDay(minuteOfDay, sunrise, sunset);
+    }
+
+    public boolean isSunset(int minuteOfDay) {
+        return SunCycle.isSunset(minuteOfDay, sunset);
+    }
+
+    public boolean isNight(int minuteOfDay) {
+        return SunCycle.isNight(minuteOfDay, sunrise, sunset);
+    }
+
+    public Builder toBuilder() {
+        return new Builder(this);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o instanceof WeatherSnapshot) {
+            WeatherSnapshot a = (WeatherSnapshot) o;
+            if (hashCode != 0 && a.hashCode != 0 && hashCode != a.hashCode) {
+                return false;
+            }
+            return Float.compare(tempC, a.tempC) == 0
+                    && condition == a.condition
+                    && moonPhase == a.moonPhase
+                    && sunrise == a.sunrise
+                    && sunset == a.sunset
+                    && windKph == a.windKph
+                    && lastUpdate == a.lastUpdate
+                    && hourly.equals(a.hourly)
+                    && daily.equals(a.daily);
+        }
+        return false;
+    }
+
+    @Override
+    public int hashCode() {
+        int hashCode = this.hashCode;
+        if (hashCode != 0) {
+            return hashCode;
+        }
+        hashCode = Float.floatToIntBits(tempC);
+        hashCode = 31 * hashCode + condition;
+        hashCode = 31 * hashCode + moonPhase;
+        hashCode = 31 * hashCode + sunrise;
+        hashCode = 31 * hashCode + sunset;
+        hashCode = 31 * hashCode + windKph;
+        hashCode = 31 * hashCode + (int) (lastUpdate ^ (lastUpdate >>> 32));
+        hashCode = 31 * hashCode + hourly.hashCode();
+        hashCode = 31 * hashCode + daily.hashCode();
+        this.hashCode = hashCode;
+        return hashCode;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US, "WeatherSnapshot{tempC=%s, condition=%s, moonPhase=%s, sunrise=%02d:%02d, sunset=%02d:%02d, windKph=%s, lastUpdate=%s, hourly=%s, daily=%s}",
+                tempC, getCondition(), getMoonPhase(),
+                sunrise / SunCycle.MINUTES_PER_HOUR, sunrise % SunCycle.MINUTES_PER_HOUR,
+                sunset / SunCycle.MINUTES_PER_HOUR, sunset % SunCycle.MINUTES_PER_HOUR,
+                windKph, SimpleDateFormat.getDateTimeInstance().format(new Date(lastUpdate)),
+                hourly.size(), daily.size());
+    }
+
+    public static class Builder {
+        private float tempC = 20;
+        private Condition condition = Condition.SUNNY;
+        private MoonPhase moonPhase = MoonPhase.FULL_MOON;
+        private short sunrise = (short) SunCycle.toMinuteOfDay(6, 0);
+        private short sunset = (short) SunCycle.toMinuteOfDay(18, 0);
+        private int windKph = 0;
+        private long lastUpdate;
+        private Forecast hourly = Forecast.EMPTY;
+        private Forecast daily = Forecast.EMPTY;
+
+        public Builder() {}
+
+        private Builder(WeatherSnapshot snapshot) {
+            this.tempC = snapshot.tempC;
+            this.condition = snapshot.getCondition();
+            this.moonPhase = snapshot.getMoonPhase();
+            this.sunrise = snapshot.sunrise;
+            this.sunset = snapshot.sunset;
+            this.windKph = snapshot.windKph;
+            this.lastUpdate = snapshot.lastUpdate;
+            this.hourly = snapshot.hourly;
+            this.daily = snapshot.daily;
+        }
+
+        public Builder celsius(float tempC) {
+            this.tempC = tempC;
+            return this;
+        }
+
+        public Builder condition(Condition condition) {
+            if (condition == null) {
+                throw new NullPointerException("condition == null");
+            }
+            this.condition = condition;
+            return this;
+        }
+
+        public Builder moonPhase(MoonPhase moonPhase) {
+            if (moonPhase == null) {
+                throw new NullPointerException("moonPhase == null");
+            }
+            this.moonPhase = moonPhase;
+            return this;
+        }
+
+        /** Sets the time of sunrise, in minutes since midnight. */
+        public Builder sunrise(int minuteOfDay) {
+            this.sunrise = (short) minuteOfDay;
+            return this;
+        }
+
+        public Builder sunrise(int hour, int minute) {
+            return sunrise(SunCycle.toMinuteOfDay(hour, minute));
+        }
+
+        /** Sets the time of sunset, in minutes since midnight. */
+        public Builder sunset(int minuteOfDay) {
+            this.sunset = (short) minuteOfDay;
+            return this;
+        }
+
+        public Builder sunset(int hour, int minute) {
+            return sunset(SunCycle.toMinuteOfDay(hour, minute));
+        }
+
+        public Builder windKph(int windKph) {
+            this.windKph = windKph;
+            return this;
+        }
+
+        public Builder lastUpdate(long lastUpdate) {
+            this.lastUpdate = lastUpdate;
+            return this;
+        }
+
+        public Builder hourly(Forecast hourly) {
+            if (hourly == null) {
+                throw new NullPointerException("hourly == null");
+            }
+            this.hourly = hourly;
+            return this;
+        }
+
+        public Builder daily(Forecast daily) {
+            if (daily == null) {
+                throw new NullPointerException("daily == null");
+            }
+            this.daily = daily;
+            return this;
+        }
+
+        public WeatherSnapshot build() {
+            // Weather that's never been fetched is common (every provider starts there), so share
+            // one instance of it.
+            if (DEFAULT != null && isDefault()) {
+                return DEFAULT;
+            }
+            return new WeatherSnapshot(this);
+        }
+
+        private boolean isDefault() {
+            return Float.compare(tempC, DEFAULT.tempC) == 0
+                    && condition.ordinal() == DEFAULT.condition
+                    && moonPhase.ordinal() == DEFAULT.moonPhase
+                    && sunrise == DEFAULT.sunrise
+                    && sunset == DEFAULT.sunset
+                    && windKph == DEFAULT.windKph
+                    && lastUpdate == DEFAULT.lastUpdate
+                    && hourly.equals(DEFAULT.hourly)
+                    && daily.equals(DEFAULT.daily);
+        }
+    }
+}
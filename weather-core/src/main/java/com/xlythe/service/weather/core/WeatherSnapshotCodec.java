@@ -0,0 +1,195 @@
+package com.xlythe.service.weather.core;
+
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Converts a {@link WeatherSnapshot} to and from a compact, versioned binary form.
+ * <p>
+ * The format is a 2 byte magic number and a 1 byte version, followed by a list of fields. Each
+ * field is a 1 byte tag, a 1 byte length and then the value itself (big endian). Fields that a
+ * reader doesn't recognize are skipped, and fields that are missing keep their default value, so
+ * fields can be added and removed without bumping the version. The version only needs to change
+ * if the meaning of an existing tag changes.
+ * <p>
+ * Tags are never reused, and enums are stored by ordinal, so new enum values must be appended.
+ * <p>
+ * Since version 2, a length of 255 means the real length follows as a 4 byte int. This is only
+ * used by the forecasts, which are stored column by column.
+ */
+public final class WeatherSnapshotCodec {
+    private static final byte MAGIC_0 = 'W';
+    private static final byte MAGIC_1 = 'S';
+    private static final int VERSION = 2;
+
+    private static final int HEADER_SIZE = 3;
+    private static final int FIELD_HEADER_SIZE = 2;
+    private static final int EXTENDED_FIELD_HEADER_SIZE = FIELD_HEADER_SIZE + 4;
+    private static final int EXTENDED_LENGTH = 0xFF;
+
+    private static final byte TAG_CELSIUS = 1;
+    private static final byte TAG_CONDITION = 2;
+    private static final byte TAG_MOON_PHASE = 3;
+    private static final byte TAG_SUNRISE = 4;
+    private static final byte TAG_SUNSET = 5;
+    private static final byte TAG_WIND_KPH = 6;
+    private static final byte TAG_LAST_UPDATE = 7;
+    private static final byte TAG_HOURLY = 8;
+    private static final byte TAG_DAILY = 9;
+
+    // Time, temperature, low, condition and chance of precipitation.
+    private static final int FORECAST_POINT_SIZE = 8 + 4 + 4 + 1 + 4;
+
+    private static final int CURRENT_SIZE = HEADER_SIZE
+            + FIELD_HEADER_SIZE + 4  // celsius
+            + FIELD_HEADER_SIZE + 1  // condition
+            + FIELD_HEADER_SIZE + 1  // moon phase
+            + FIELD_HEADER_SIZE + 2  // sunrise
+            + FIELD_HEADER_SIZE + 2  // sunset
+            + FIELD_HEADER_SIZE + 4  // wind
+            + FIELD_HEADER_SIZE + 8; // last update
+
+    private static final Condition[] CONDITIONS = Condition.values();
+    private static final MoonPhase[] MOON_PHASES = MoonPhase.values();
+
+    private WeatherSnapshotCodec() {}
+
+    public static byte[] encode(WeatherSnapshot snapshot) {
+        Forecast hourly = snapshot.getHourly();
+        Forecast daily = snapshot.getDaily();
+        int size = CURRENT_SIZE;
+        if (!hourly.isEmpty()) size += EXTENDED_FIELD_HEADER_SIZE + getEncodedSize(hourly);
+        if (!daily.isEmpty()) size += EXTENDED_FIELD_HEADER_SIZE + getEncodedSize(daily);
+
+        ByteBuffer out = ByteBuffer.allocate(size);
+        out.put(MAGIC_0).put(MAGIC_1).put((byte) VERSION);
+        out.put(TAG_CELSIUS).put((byte) 4).putFloat(snapshot.getCelsius());
+        out.put(TAG_CONDITION).put((byte) 1).put((byte) snapshot.getCondition().ordinal());
+        out.put(TAG_MOON_PHASE).put((byte) 1).put((byte) snapshot.getMoonPhase().ordinal());
+        out.put(TAG_SUNRISE).put((byte) 2).putShort((short) snapshot.getSunrise());
+        out.put(TAG_SUNSET).put((byte) 2).putShort((short) snapshot.getSunset());
+        out.put(TAG_WIND_KPH).put((byte) 4).putInt(snapshot.getWindKph());
+        out.put(TAG_LAST_UPDATE).put((byte) 8).putLong(snapshot.getLastUpdate());
+        if (!hourly.isEmpty()) writeForecast(out, TAG_HOURLY, hourly);
+        if (!daily.isEmpty()) writeForecast(out, TAG_DAILY, daily);
+        return out.array();
+    }
+
+    private static int getEncodedSize(Forecast forecast) {
+        return 4 + forecast.size() * FORECAST_POINT_SIZE;
+    }
+
+    private static void writeForecast(ByteBuffer out, byte tag, Forecast forecast) {
+        int size = forecast.size();
+        out.put(tag).put((byte) EXTENDED_LENGTH).putInt(getEncodedSize(forecast));
+        out.putInt(size);
+        for (int i = 0; i < size; i++) out.putLong(forecast.getTime(i));
+        for (int i = 0; i < size; i++) out.putFloat(forecast.getCelsius(i));
+        for (int i = 0; i < size; i++) out.putFloat(forecast.getMinCelsius(i));
+        for (int i = 0; i < size; i++) out.put((byte) forecast.getConditionOrdinal(i));
+        for (int i = 0; i < size; i++) out.putFloat(forecast.getPrecipProbability(i));
+    }
+
+    private static Forecast readForecast(ByteBuffer in, int length) {
+        int size = in.getInt();
+        if (size < 0 || length != 4 + size * FORECAST_POINT_SIZE) {
+            // Not something we know how to read.
+            return null;
+        }
+        Forecast.Builder builder = new Forecast.Builder(size);
+        for (int i = 0; i < size; i++) builder.time(i, in.getLong());
+        for (int i = 0; i < size; i++) builder.celsius(i, in.getFloat());
+        for (int i = 0; i < size; i++) builder.minCelsius(i, in.getFloat());
+        for (int i = 0; i < size; i++) {
+            int ordinal = in.get() & 0xFF;
+            if (ordinal < CONDITIONS.length) builder.condition(i, CONDITIONS[ordinal]);
+        }
+        for (int i = 0; i < size; i++) builder.precipProbability(i, in.getFloat());
+        return builder.build();
+    }
+
+    public static WeatherSnapshot decode(byte[] bytes) throws IOException {
+        return decode(bytes, 0, bytes.length);
+    }
+
+    public static WeatherSnapshot decode(byte[] bytes, int offset, int length) throws IOException {
+        ByteBuffer in = ByteBuffer.wrap(bytes, offset, length);
+        try {
+            if (in.get() != MAGIC_0 || in.get() != MAGIC_1) {
+                throw new IOException("Not a weather snapshot");
+            }
+            int version = in.get() & 0xFF;
+            if (version > VERSION) {
+                throw new IOException("Unsupported snapshot version " + version);
+            }
+
+            WeatherSnapshot.Builder builder = new WeatherSnapshot.Builder();
+            while (in.hasRemaining()) {
+                byte tag = in.get();
+                int fieldLength = in.get() & 0xFF;
+                if (fieldLength == EXTENDED_LENGTH && version >= 2) {
+                    fieldLength = in.getInt();
+                    if (fieldLength < 0) {
+                        throw new IOException("Corrupt snapshot");
+                    }
+                }
+                if (fieldLength > in.remaining()) {
+                    throw new IOException("Truncated snapshot");
+                }
+                int end = in.position() + fieldLength;
+                readField(in, tag, fieldLength, builder);
+                in.position(end);
+            }
+            return builder.build();
+        } catch (BufferUnderflowException e) {
+            throw new IOException("Truncated snapshot", e);
+        }
+    }
+
+    private static void readField(ByteBuffer in, byte tag, int length, WeatherSnapshot.Builder builder) {
+        switch (tag) {
+            case TAG_CELSIUS:
+                if (length == 4) builder.celsius(in.getFloat());
+                break;
+            case TAG_CONDITION:
+                if (length == 1) {
+                    int ordinal = in.get() & 0xFF;
+                    // A condition we don't know about was written by a newer version. Keep the default.
+                    if (ordinal < CONDITIONS.length) builder.condition(CONDITIONS[ordinal]);
+                }
+                break;
+            case TAG_MOON_PHASE:
+                if (length == 1) {
+                    int ordinal = in.get() & 0xFF;
+                    if (ordinal < MOON_PHASES.length) builder.moonPhase(MOON_PHASES[ordinal]);
+                }
+                break;
+            case TAG_SUNRISE:
+                if (length == 2) builder.sunrise(in.getShort());
+                break;
+            case TAG_SUNSET:
+                if (length == 2) builder.sunset(in.getShort());
+                break;
+            case TAG_WIND_KPH:
+                if (length == 4) builder.windKph(in.getInt());
+                break;
+            case TAG_LAST_UPDATE:
+                if (length == 8) builder.lastUpdate(in.getLong());
+                break;
+            case TAG_HOURLY: {
+                Forecast hourly = readForecast(in, length);
+                if (hourly != null) builder.hourly(hourly);
+                break;
+            }
+            case TAG_DAILY: {
+                Forecast daily = readForecast(in, length);
+                if (daily != null) builder.daily(daily);
+                break;
+            }
+            default:
+                // Written by a newer version. Skip it.
+                break;
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.xlythe.service.weather.core;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Parses wunderground's conditions and astronomy responses.
+ * <p>
+ * Supports condition, temperature, sunrise, sunset and moon phase.
+ */
+public class WeatherUndergroundParser implements WeatherParser {
+    private static final Map<Integer, MoonPhase> MOON_PHASES = new HashMap<>();
+
+    static {
+        // Age of moon is between 0 and 29
+        MOON_PHASES.put(0, MoonPhase.NEW_MOON);
+        MOON_PHASES.put(4, MoonPhase.WAXING_CRESCENT);
+        MOON_PHASES.put(7, MoonPhase.FIRST_QUARTER);
+        MOON_PHASES.put(11, MoonPhase.WAXING_GIBBOUS);
+        MOON_PHASES.put(15, MoonPhase.FULL_MOON);
+        MOON_PHASES.put(18, MoonPhase.WANING_GIBBOUS);
+        MOON_PHASES.put(22, MoonPhase.THIRD_QUARTER);
+        MOON_PHASES.put(25, MoonPhase.WANING_CRESCENT);
+        MOON_PHASES.put(29, MoonPhase.NEW_MOON);
+    }
+
+    @Override
+    public WeatherSnapshot parse(Reader in, WeatherSnapshot previous) throws IOException {
+        WeatherSnapshot.Builder builder = previous.toBuilder();
+
+        // Hour and minute are separate fields, so they're collected before being set.
+        int[] sunrise = {previous.getSunrise() / SunCycle.MINUTES_PER_HOUR, previous.getSunrise() % SunCycle.MINUTES_PER_HOUR};
+        int[] sunset = {previous.getSunset() / SunCycle.MINUTES_PER_HOUR, previous.getSunset() % SunCycle.MINUTES_PER_HOUR};
+
+        int found = new JsonFieldParser()
+                .field("current_observation.weather", reader -> builder.condition(toCondition(reader.nextString())))
+                .field("current_observation.temp_c", reader -> builder.celsius((float) reader.nextDouble()))
+                .field("moon_phase.ageOfMoon", reader -> builder.moonPhase(toMoonPhase(reader.nextInt())))
+                .field("moon_phase.sunrise.hour", reader -> sunrise[0] = reader.nextInt())
+                .field("moon_phase.sunrise.minute", reader -> sunrise[1] = reader.nextInt())
+                .field("moon_phase.sunset.hour", reader -> sunset[0] = reader.nextInt())
+                .field("moon_phase.sunset.minute", reader -> sunset[1] = reader.nextInt())
+                .parse(in);
+
+        if (found == 0) {
+            throw new IOException("Unknown wunderground json");
+        }
+
+        return builder
+                .sunrise(sunrise[0], sunrise[1])
+                .sunset(sunset[0], sunset[1])
+                .build();
+    }
+
+    public static Condition toCondition(String condition) {
+        condition = condition.toLowerCase();
+        if (condition.contains("snow")) {
+            return Condition.SNOW;
+        }
+        if (condition.contains("rain") || condition.contains("storm") || condition.contains("thunder")) {
+            return Condition.RAIN;
+        }
+        if (condition.contains("cloud") || condition.contains("overcast") || condition.contains("fog")) {
+            return Condition.CLOUDY;
+        }
+        return Condition.SUNNY;
+    }
+
+    public static MoonPhase toMoonPhase(int ageOfMoon) {
+        int minDistance = Integer.MAX_VALUE;
+        MoonPhase closestPhase = MoonPhase.NEW_MOON;
+        for (Map.Entry<Integer, MoonPhase> entry : MOON_PHASES.entrySet()) {
+            int distanceToPhase = Math.abs(entry.getKey() - ageOfMoon);
+            if (distanceToPhase < minDistance) {
+                minDistance = distanceToPhase;
+                closestPhase = entry.getValue();
+            }
+        }
+        return closestPhase;
+    }
+}
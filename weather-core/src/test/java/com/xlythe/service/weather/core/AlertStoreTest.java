@@ -0,0 +1,101 @@
+package com.xlythe.service.weather.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class AlertStoreTest {
+    private static final long NOW = 1674573900000L;
+
+    private static Alert alert(String id, String title, long expires) {
+        return new Alert.Builder()
+                .id(id)
+                .title(title)
+                .severity("Moderate")
+                .regions("Live Oak", "Bee")
+                .time(NOW)
+                .expires(expires)
+                .build();
+    }
+
+    @Test
+    public void update_reportsWhatChanged() {
+        AlertStore store = new AlertStore();
+        Alert wind = alert("wind", "Wind Advisory", NOW + 1000);
+        Alert flood = alert("flood", "Flood Watch", 0);
+
+        AlertStore.Diff diff = store.update(Arrays.asList(wind, flood), NOW);
+        assertEquals(Arrays.asList(wind, flood), diff.getAdded());
+
+        assertTrue(store.update(Arrays.asList(wind, flood), NOW).isEmpty());
+
+        Alert windUpdated = alert("wind", "Wind Warning", NOW + 1000);
+        diff = store.update(Collections.singletonList(windUpdated), NOW);
+        assertEquals(Collections.emptyList(), diff.getAdded());
+        assertEquals(Collections.singletonList(windUpdated), diff.getUpdated());
+        assertEquals(Collections.singletonList(flood), diff.getExpired());
+        assertEquals(Collections.singletonList(windUpdated), store.getAlerts(NOW));
+    }
+
+    @Test
+    public void update_ignoresExpiredAndDuplicateAlerts() {
+        AlertStore store = new AlertStore();
+        Alert wind = alert("wind", "Wind Advisory", NOW + 1000);
+
+        AlertStore.Diff diff = store.update(Arrays.asList(alert("old", "Old", NOW), wind, wind), NOW);
+        assertEquals(Collections.singletonList(wind), diff.getAdded());
+        assertEquals(1, store.size());
+    }
+
+    @Test
+    public void evictExpired() {
+        AlertStore store = new AlertStore();
+        Alert wind = alert("wind", "Wind Advisory", NOW + 1000);
+        Alert flood = alert("flood", "Flood Watch", 0);
+        store.update(Arrays.asList(wind, flood), NOW);
+
+        assertTrue(store.evictExpired(NOW + 999).isEmpty());
+        assertEquals(Collections.singletonList(wind), store.evictExpired(NOW + 1000).getExpired());
+        assertEquals(Collections.singletonList(flood), store.getAlerts(NOW + 1000));
+        assertTrue(store.evictExpired(NOW + 1000).isEmpty());
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        AlertStore store = new AlertStore();
+        StringBuilder description = new StringBuilder();
+        while (description.length() < 70000) {
+            description.append("Gusty winds could blow around unsecured objects. ");
+        }
+        Alert wind = alert("wind", "Wind Advisory", NOW + 1000).toBuilder()
+                .description(description.toString())
+                .build();
+        Alert flood = alert("flood", "Flood Watch", 0);
+        store.update(Arrays.asList(wind, flood), NOW);
+
+        AlertStore restored = new AlertStore();
+        restored.decode(store.encode());
+        assertEquals(Arrays.asList(wind, flood), restored.getAlerts(NOW));
+        assertTrue(restored.update(Arrays.asList(wind, flood), NOW).isEmpty());
+    }
+
+    @Test
+    public void decode_keepsAlertsOnCorruptData() {
+        AlertStore store = new AlertStore();
+        Alert wind = alert("wind", "Wind Advisory", 0);
+        store.update(Collections.singletonList(wind), NOW);
+        byte[] bytes = store.encode();
+
+        try {
+            store.decode(Arrays.copyOf(bytes, bytes.length - 1));
+        } catch (IOException e) {
+            // Expected.
+        }
+        assertEquals(Collections.singletonList(wind), store.getAlerts(NOW));
+    }
+}
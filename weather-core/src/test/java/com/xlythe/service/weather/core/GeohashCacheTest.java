@@ -0,0 +1,92 @@
+package com.xlythe.service.weather.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class GeohashCacheTest {
+    private static final long MAX_AGE = TimeUnit.HOURS.toMillis(1);
+
+    private static WeatherSnapshot snapshot(float celsius, long ageInMillis) {
+        return new WeatherSnapshot.Builder()
+                .celsius(celsius)
+                .lastUpdate(System.currentTimeMillis() - ageInMillis)
+                .build();
+    }
+
+    @Test
+    public void get_sharesEntriesWithinACell() {
+        GeohashCache cache = new GeohashCache(5, MAX_AGE, 10);
+        WeatherSnapshot snapshot = snapshot(1, 0);
+        cache.put(45.4201, -75.6901, snapshot);
+
+        assertEquals(snapshot, cache.get(45.4202, -75.6902));
+        assertNull(cache.get(43.65, -79.38));
+    }
+
+    @Test
+    public void get_ignoresExpiredEntries() {
+        GeohashCache cache = new GeohashCache(5, MAX_AGE, 10);
+        cache.put(45.42, -75.69, snapshot(1, MAX_AGE + TimeUnit.MINUTES.toMillis(1)));
+
+        assertNull(cache.get(45.42, -75.69));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void put_evictsTheLeastRecentlyUsedEntry() {
+        GeohashCache cache = new GeohashCache(5, MAX_AGE, 2);
+        cache.put(45.42, -75.69, snapshot(1, 0));
+        cache.put(43.65, -79.38, snapshot(2, 0));
+        cache.get(45.42, -75.69);
+        cache.put(49.28, -123.12, snapshot(3, 0));
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.get(45.42, -75.69).getCelsius(), 0);
+        assertNull(cache.get(43.65, -79.38));
+        assertEquals(3, cache.get(49.28, -123.12).getCelsius(), 0);
+    }
+
+    @Test
+    public void setMaxEntries_trims() {
+        GeohashCache cache = new GeohashCache(5, MAX_AGE, 3);
+        cache.put(45.42, -75.69, snapshot(1, 0));
+        cache.put(43.65, -79.38, snapshot(2, 0));
+        cache.put(49.28, -123.12, snapshot(3, 0));
+        cache.setMaxEntries(1);
+
+        assertEquals(1, cache.size());
+        assertEquals(3, cache.get(49.28, -123.12).getCelsius(), 0);
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        GeohashCache cache = new GeohashCache(5, MAX_AGE, 10);
+        cache.put(45.42, -75.69, snapshot(1, 0));
+        cache.put(43.65, -79.38, snapshot(2, 0));
+
+        GeohashCache restored = new GeohashCache(5, MAX_AGE, 10);
+        restored.decode(cache.encode());
+        assertEquals(2, restored.size());
+        assertEquals(cache.get(45.42, -75.69), restored.get(45.42, -75.69));
+    }
+
+    @Test
+    public void decode_dropsExpiredEntries() throws IOException {
+        GeohashCache cache = new GeohashCache(5, MAX_AGE, 10);
+        cache.put(45.42, -75.69, snapshot(1, TimeUnit.MINUTES.toMillis(30)));
+
+        GeohashCache restored = new GeohashCache(5, TimeUnit.MINUTES.toMillis(10), 10);
+        restored.decode(cache.encode());
+        assertEquals(0, restored.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsAnEmptyCache() {
+        new GeohashCache(5, MAX_AGE, 0);
+    }
+}
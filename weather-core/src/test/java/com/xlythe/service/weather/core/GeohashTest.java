@@ -0,0 +1,45 @@
+package com.xlythe.service.weather.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class GeohashTest {
+    @Test
+    public void encode() {
+        assertEquals("ezs42", Geohash.encode(42.605, -5.603, 5));
+        assertEquals("u4pruydqqvj", Geohash.encode(57.64911, 10.40744, 11));
+    }
+
+    @Test
+    public void encode_isAPrefixOfMorePreciseHashes() {
+        String precise = Geohash.encode(45.42, -75.69, Geohash.MAX_PRECISION);
+        for (int precision = 1; precision < Geohash.MAX_PRECISION; precision++) {
+            assertTrue(precise.startsWith(Geohash.encode(45.42, -75.69, precision)));
+        }
+    }
+
+    @Test
+    public void encode_sharesCellsWithNearbyCoordinates() {
+        assertEquals(Geohash.encode(45.4201, -75.6901, 5), Geohash.encode(45.4202, -75.6902, 5));
+        assertNotEquals(Geohash.encode(45.42, -75.69, 5), Geohash.encode(43.65, -79.38, 5));
+    }
+
+    @Test
+    public void encode_extremes() {
+        assertEquals("00000", Geohash.encode(-90, -180, 5));
+        assertEquals("zzzzz", Geohash.encode(90, 180, 5));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void encode_rejectsZeroPrecision() {
+        Geohash.encode(0, 0, 0);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void encode_rejectsTooMuchPrecision() {
+        Geohash.encode(0, 0, Geohash.MAX_PRECISION + 1);
+    }
+}
@@ -0,0 +1,108 @@
+package com.xlythe.service.weather.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class JsonFieldParserTest {
+    @Test
+    public void parse_findsNestedFields() throws IOException {
+        List<String> found = new ArrayList<>();
+        int count = new JsonFieldParser()
+                .field("a.b", reader -> found.add("b=" + reader.nextInt()))
+                .field("c", reader -> found.add("c=" + reader.nextString()))
+                .parse(new StringReader("{\"x\":[1,2],\"a\":{\"y\":{},\"b\":5},\"c\":\"d\"}"));
+
+        assertEquals(2, count);
+        assertEquals("[b=5, c=d]", found.toString());
+    }
+
+    @Test
+    public void parse_countsOnlyFieldsThatWereFound() throws IOException {
+        int count = new JsonFieldParser()
+                .field("a", reader -> reader.skipValue())
+                .field("missing", reader -> reader.skipValue())
+                .parse(new StringReader("{\"a\":1}"));
+
+        assertEquals(1, count);
+    }
+
+    @Test
+    public void parse_stopsOnceEveryFieldIsFound() throws IOException {
+        // Everything after "a" is malformed. If the parser kept going, it would throw.
+        int count = new JsonFieldParser()
+                .field("a", reader -> reader.skipValue())
+                .parse(new StringReader("{\"a\":1,\"b\":"));
+
+        assertEquals(1, count);
+    }
+
+    @Test
+    public void parse_drainsTheRestOfTheInputAfterStopping() throws IOException {
+        CountingReader in = new CountingReader("{\"a\":1,\"b\":[1,2,3,4,5,6,7,8,9]}");
+        new JsonFieldParser()
+                .field("a", reader -> reader.skipValue())
+                .parse(in);
+
+        assertTrue(in.finished);
+    }
+
+    @Test
+    public void each_visitsEveryElement() throws IOException {
+        List<String> found = new ArrayList<>();
+        new JsonFieldParser()
+                .each("data.*.t", (reader, index) -> found.add(index + "=" + reader.nextInt()))
+                .parse(new StringReader("{\"data\":[{\"t\":1},{\"u\":0},{\"t\":3}]}"));
+
+        assertEquals("[0=1, 2=3]", found.toString());
+    }
+
+    @Test
+    public void each_readsTheWholeDocument() throws IOException {
+        List<Integer> found = new ArrayList<>();
+        int count = new JsonFieldParser()
+                .field("a", reader -> reader.skipValue())
+                .each("data.*", (reader, index) -> found.add(reader.nextInt()))
+                .parse(new StringReader("{\"a\":1,\"data\":[4,5]}"));
+
+        assertEquals(1, count);
+        assertEquals(2, found.size());
+    }
+
+    @Test(expected = IOException.class)
+    public void parse_throwsOnTheWrongType() throws IOException {
+        new JsonFieldParser()
+                .field("a", reader -> reader.nextInt())
+                .parse(new StringReader("{\"a\":\"b\"}"));
+    }
+
+    private static final class CountingReader extends Reader {
+        private final Reader in;
+        private boolean finished;
+
+        CountingReader(String value) {
+            in = new StringReader(value);
+        }
+
+        @Override
+        public int read(char[] buffer, int offset, int length) throws IOException {
+            int read = in.read(buffer, offset, length);
+            if (read == -1) {
+                finished = true;
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package com.xlythe.service.weather.core;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyHistogramTest {
+    @Test
+    public void getPercentile_empty() {
+        assertEquals(-1, new LatencyHistogram().getPercentile(0.5));
+    }
+
+    @Test
+    public void getPercentile_isAnUpperBoundWithinAQuarter() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 100; i++) {
+            histogram.record(i * 10);
+        }
+
+        long p50 = histogram.getPercentile(0.5);
+        long p95 = histogram.getPercentile(0.95);
+        assertTrue("p50 was " + p50, p50 >= 500 && p50 <= 500 * 1.25);
+        assertTrue("p95 was " + p95, p95 >= 950 && p95 <= 950 * 1.25);
+        assertTrue(histogram.getPercentile(1) >= 1000);
+    }
+
+    @Test
+    public void record_clampsOutliers() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        histogram.record(0);
+        histogram.record(Long.MAX_VALUE);
+
+        assertEquals(1, histogram.getPercentile(0.5));
+        assertTrue(histogram.getPercentile(1) > 0);
+    }
+
+    @Test
+    public void record_decaysOldSamples() {
+        LatencyHistogram histogram = new LatencyHistogram(8);
+        for (int i = 0; i < 7; i++) {
+            histogram.record(10);
+        }
+        assertEquals(7, histogram.getCount());
+
+        histogram.record(10);
+        assertEquals(4, histogram.getCount());
+
+        // Recent samples soon outweigh the old ones.
+        for (int i = 0; i < 5; i++) {
+            histogram.record(1000);
+        }
+        assertTrue(histogram.getPercentile(0.5) >= 1000);
+    }
+}
@@ -0,0 +1,30 @@
+package com.xlythe.service.weather.core;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+
+public class MoonPhaseTest {
+    private static long utc(int year, int month, int day, int hour) {
+        Calendar calendar = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        calendar.clear();
+        calendar.set(year, month, day, hour, 0);
+        return calendar.getTimeInMillis();
+    }
+
+    @Test
+    public void at() {
+        assertEquals(MoonPhase.NEW_MOON, MoonPhase.at(utc(2024, Calendar.JANUARY, 11, 12)));
+        assertEquals(MoonPhase.FIRST_QUARTER, MoonPhase.at(utc(2024, Calendar.JANUARY, 18, 3)));
+        assertEquals(MoonPhase.FULL_MOON, MoonPhase.at(utc(2024, Calendar.JANUARY, 25, 18)));
+        assertEquals(MoonPhase.THIRD_QUARTER, MoonPhase.at(utc(2024, Calendar.FEBRUARY, 2, 23)));
+    }
+
+    @Test
+    public void at_beforeTheReferenceNewMoon() {
+        assertEquals(MoonPhase.FULL_MOON, MoonPhase.at(utc(1999, Calendar.DECEMBER, 22, 18)));
+    }
+}
@@ -0,0 +1,152 @@
+package com.xlythe.service.weather.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class NowcastBufferTest {
+    private static final long MINUTE = TimeUnit.MINUTES.toMillis(1);
+    private static final long START = 27905314 * MINUTE;
+
+    /** Returns minute by minute intensities, where '#' is precipitation and anything else isn't. */
+    private static float[] intensities(String minutes) {
+        float[] intensities = new float[minutes.length()];
+        for (int i = 0; i < intensities.length; i++) {
+            intensities[i] = minutes.charAt(i) == '#' ? 1 : 0;
+        }
+        return intensities;
+    }
+
+    private static float[] certain(int length) {
+        float[] probabilities = new float[length];
+        Arrays.fill(probabilities, 1);
+        return probabilities;
+    }
+
+    private static void update(NowcastBuffer buffer, long startTimeInMillis, String minutes) {
+        buffer.update(startTimeInMillis, intensities(minutes), certain(minutes.length()), minutes.length());
+    }
+
+    private static void assertNowcast(Nowcast nowcast, boolean precipitating, int startsIn, int stopsIn) {
+        assertTrue(nowcast.isKnown());
+        assertEquals(precipitating, nowcast.isPrecipitating());
+        assertEquals(startsIn, nowcast.getStartsInMinutes());
+        assertEquals(stopsIn, nowcast.getStopsInMinutes());
+    }
+
+    @Test
+    public void getNowcast_unknownWithoutData() {
+        assertSame(Nowcast.UNKNOWN, new NowcastBuffer().getNowcast(START));
+    }
+
+    @Test
+    public void getNowcast_findsTransitions() {
+        NowcastBuffer buffer = new NowcastBuffer();
+        update(buffer, START, "...###...#");
+
+        assertNowcast(buffer.getNowcast(START), false, 3, 6);
+        assertNowcast(buffer.getNowcast(START + 4 * MINUTE), true, 0, 2);
+        assertNowcast(buffer.getNowcast(START + 7 * MINUTE), false, 2, -1);
+        assertNowcast(buffer.getNowcast(START + 9 * MINUTE), true, 0, -1);
+        assertSame(Nowcast.UNKNOWN, buffer.getNowcast(START + 10 * MINUTE));
+        assertSame(Nowcast.UNKNOWN, buffer.getNowcast(START - MINUTE));
+    }
+
+    @Test
+    public void getNowcast_ignoresUnlikelyOrLightPrecipitation() {
+        NowcastBuffer buffer = new NowcastBuffer(10, 0.5f, 0.5f);
+        buffer.update(START, new float[] { 1, 0.1f, 1 }, new float[] { 0.1f, 1, 1 }, 3);
+
+        assertNowcast(buffer.getNowcast(START), false, 2, -1);
+    }
+
+    @Test
+    public void update_overwritesOverlappingMinutes() {
+        NowcastBuffer buffer = new NowcastBuffer();
+        update(buffer, START, "..........");
+        update(buffer, START + 5 * MINUTE, "##.");
+
+        assertNowcast(buffer.getNowcast(START), false, 5, 7);
+        assertNowcast(buffer.getNowcast(START + 9 * MINUTE), false, -1, -1);
+    }
+
+    @Test
+    public void update_startsOverAfterAGap() {
+        NowcastBuffer buffer = new NowcastBuffer();
+        update(buffer, START, "###");
+        update(buffer, START + 10 * MINUTE, "..#");
+
+        assertSame(Nowcast.UNKNOWN, buffer.getNowcast(START));
+        assertNowcast(buffer.getNowcast(START + 10 * MINUTE), false, 2, -1);
+    }
+
+    @Test
+    public void update_wrapsAroundTheBuffer() {
+        NowcastBuffer buffer = new NowcastBuffer(5, 0.5f, 0.5f);
+        update(buffer, START, "..###");
+        update(buffer, START + 5 * MINUTE, "#..");
+
+        // The first 3 minutes have fallen off the front.
+        assertSame(Nowcast.UNKNOWN, buffer.getNowcast(START + 2 * MINUTE));
+        // Precipitation that was already underway now starts at the front.
+        assertNowcast(buffer.getNowcast(START + 3 * MINUTE), true, 0, 3);
+        assertNowcast(buffer.getNowcast(START + 6 * MINUTE), false, -1, -1);
+    }
+
+    @Test
+    public void update_replacesEverythingWhenNewDataIsLongerThanTheBuffer() {
+        NowcastBuffer buffer = new NowcastBuffer(4, 0.5f, 0.5f);
+        update(buffer, START, "####");
+        update(buffer, START + 2 * MINUTE, "...#....#");
+
+        assertSame(Nowcast.UNKNOWN, buffer.getNowcast(START + 6 * MINUTE));
+        assertNowcast(buffer.getNowcast(START + 7 * MINUTE), false, 3, -1);
+    }
+
+    @Test
+    public void setLocation_clearsDataForSomewhereElse() {
+        NowcastBuffer buffer = new NowcastBuffer();
+        buffer.setLocation("f244m");
+        update(buffer, START, "###");
+
+        buffer.setLocation("f244m");
+        assertTrue(buffer.getNowcast(START).isKnown());
+
+        buffer.setLocation("dpz83");
+        assertEquals("dpz83", buffer.getLocation());
+        assertSame(Nowcast.UNKNOWN, buffer.getNowcast(START));
+    }
+
+    @Test
+    public void roundTrip() throws IOException {
+        NowcastBuffer buffer = new NowcastBuffer(5, 0.5f, 0.5f);
+        buffer.setLocation("f244m");
+        update(buffer, START, "..###");
+        update(buffer, START + 5 * MINUTE, "#..");
+
+        NowcastBuffer restored = new NowcastBuffer(5, 0.5f, 0.5f);
+        restored.decode(buffer.encode());
+        assertEquals("f244m", restored.getLocation());
+        for (long time = START; time < START + 10 * MINUTE; time += MINUTE) {
+            assertEquals(buffer.getNowcast(time), restored.getNowcast(time));
+        }
+    }
+
+    @Test
+    public void decode_withoutALocation() throws IOException {
+        NowcastBuffer buffer = new NowcastBuffer();
+        update(buffer, START, "#");
+
+        NowcastBuffer restored = new NowcastBuffer();
+        restored.decode(buffer.encode());
+        assertNull(restored.getLocation());
+        assertNowcast(restored.getNowcast(START), true, 0, -1);
+    }
+}
@@ -0,0 +1,79 @@
+package com.xlythe.service.weather.core;
+
+import org.junit.Test;
+
+import java.util.TimeZone;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SunCycleTest {
+    private static final int SUNRISE = SunCycle.toMinuteOfDay(6, 0);
+    private static final int SUNSET = SunCycle.toMinuteOfDay(18, 0);
+
+    @Test
+    public void toMinuteOfDay() {
+        assertEquals(0, SunCycle.toMinuteOfDay(0, 0));
+        assertEquals(23 * 60 + 59, SunCycle.toMinuteOfDay(23, 59));
+        assertEquals(14 * 60, SunCycle.toMinuteOfDay(1674309600000L, TimeZone.getTimeZone("UTC")));
+        assertEquals(9 * 60, SunCycle.toMinuteOfDay(1674309600000L, TimeZone.getTimeZone("America/Toronto")));
+    }
+
+    @Test
+    public void exactlyOneStateAtEveryMinute() {
+        for (int now = 0; now < SunCycle.MINUTES_PER_DAY; now++) {
+            int states = 0;
+            if (SunCycle.isSunrise(now, SUNRISE)) states++;
+            if (SunCycle.isDay(now, SUNRISE, SUNSET)) states++;
+            if (SunCycle.isSunset(now, SUNSET)) states++;
+            if (SunCycle.isNight(now, SUNRISE, SUNSET)) states++;
+            assertEquals("At minute " + now, 1, states);
+        }
+    }
+
+    @Test
+    public void boundaries() {
+        assertTrue(SunCycle.isNight(SUNRISE - 60, SUNRISE, SUNSET));
+        assertTrue(SunCycle.isSunrise(SUNRISE - 59, SUNRISE));
+        assertTrue(SunCycle.isSunrise(SUNRISE + 59, SUNRISE));
+        assertTrue(SunCycle.isDay(SUNRISE + 60, SUNRISE, SUNSET));
+        assertTrue(SunCycle.isDay(SUNSET - 60, SUNRISE, SUNSET));
+        assertTrue(SunCycle.isSunset(SUNSET + 59, SUNSET));
+        assertTrue(SunCycle.isNight(SUNSET + 60, SUNRISE, SUNSET));
+    }
+
+    @Test
+    public void sunriseWrapsAroundMidnight() {
+        int sunrise = SunCycle.toMinuteOfDay(0, 30);
+        int sunset = SunCycle.toMinuteOfDay(15, 0);
+
+        assertTrue(SunCycle.isSunrise(SunCycle.toMinuteOfDay(23, 45), sunrise));
+        assertFalse(SunCycle.isNight(SunCycle.toMinuteOfDay(23, 45), sunrise, sunset));
+        assertTrue(SunCycle.isNight(SunCycle.toMinuteOfDay(23, 0), sunrise, sunset));
+        assertTrue(SunCycle.isDay(SunCycle.toMinuteOfDay(1, 30), sunrise, sunset));
+    }
+
+    @Test
+    public void dayWrapsAroundMidnight() {
+        // Somewhere far enough west of its time zone's meridian that the sun sets after midnight.
+        int sunrise = SunCycle.toMinuteOfDay(10, 0);
+        int sunset = SunCycle.toMinuteOfDay(1, 0);
+
+        assertTrue(SunCycle.isDay(SunCycle.toMinuteOfDay(23, 0), sunrise, sunset));
+        assertTrue(SunCycle.isDay(0, sunrise, sunset));
+        assertTrue(SunCycle.isSunset(SunCycle.toMinuteOfDay(1, 30), sunset));
+        assertTrue(SunCycle.isNight(SunCycle.toMinuteOfDay(5, 0), sunrise, sunset));
+        assertFalse(SunCycle.isDay(SunCycle.toMinuteOfDay(5, 0), sunrise, sunset));
+    }
+
+    @Test
+    public void noDay_whenSunriseAndSunsetOverlap() {
+        int sunrise = SunCycle.toMinuteOfDay(11, 30);
+        int sunset = SunCycle.toMinuteOfDay(12, 30);
+
+        for (int now = 0; now < SunCycle.MINUTES_PER_DAY; now++) {
+            assertFalse(SunCycle.isDay(now, sunrise, sunset));
+        }
+    }
+}
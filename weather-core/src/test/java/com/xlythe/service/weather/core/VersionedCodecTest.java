@@ -0,0 +1,41 @@
+package com.xlythe.service.weather.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+
+public class VersionedCodecTest {
+    @Test
+    public void roundTrip() throws IOException {
+        byte[] bytes = VersionedCodec.encode(3, out -> {
+            out.writeInt(42);
+            VersionedCodec.writeLongString(out, "hello");
+        });
+
+        StringBuilder read = new StringBuilder();
+        VersionedCodec.decode(bytes, 3, "test", (in, version) -> {
+            read.append(version).append(':').append(in.readInt()).append(':').append(VersionedCodec.readLongString(in));
+        });
+        assertEquals("3:42:hello", read.toString());
+    }
+
+    @Test
+    public void decode_acceptsOlderVersions() throws IOException {
+        int[] read = new int[1];
+        VersionedCodec.decode(VersionedCodec.encode(1, out -> {}), 2, "test", (in, version) -> read[0] = version);
+        assertEquals(1, read[0]);
+    }
+
+    @Test(expected = IOException.class)
+    public void decode_rejectsNewerVersions() throws IOException {
+        VersionedCodec.decode(VersionedCodec.encode(3, out -> {}), 2, "test", (in, version) -> {});
+    }
+
+    @Test(expected = IOException.class)
+    public void readLongString_rejectsLengthsPastTheEnd() throws IOException {
+        byte[] bytes = VersionedCodec.encode(1, out -> out.writeInt(100));
+        VersionedCodec.decode(bytes, 1, "test", (in, version) -> VersionedCodec.readLongString(in));
+    }
+}
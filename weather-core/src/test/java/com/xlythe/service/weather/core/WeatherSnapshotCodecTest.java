@@ -0,0 +1,81 @@
+package com.xlythe.service.weather.core;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.Arrays;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class WeatherSnapshotCodecTest {
+    @Test
+    public void roundTrip() throws IOException {
+        WeatherSnapshot snapshot = new WeatherSnapshot.Builder()
+                .celsius(-4.5f)
+                .condition(Condition.SNOW)
+                .moonPhase(MoonPhase.WANING_CRESCENT)
+                .sunrise(7, 35)
+                .sunset(16, 53)
+                .windKph(14)
+                .lastUpdate(1674318840000L)
+                .build();
+
+        assertEquals(snapshot, WeatherSnapshotCodec.decode(WeatherSnapshotCodec.encode(snapshot)));
+    }
+
+    @Test
+    public void roundTrip_withForecasts() throws IOException {
+        Forecast hourly = new Forecast.Builder()
+                .time(0, 1000).celsius(0, 1).condition(0, Condition.RAIN).precipProbability(0, 0.5f)
+                .time(1, 2000).celsius(1, 2).condition(1, Condition.CLOUDY).precipProbability(1, 0.25f)
+                .build();
+        Forecast daily = new Forecast.Builder()
+                .time(0, 1000).celsius(0, 10).minCelsius(0, -10).condition(0, Condition.SUNNY)
+                .build();
+        WeatherSnapshot snapshot = new WeatherSnapshot.Builder()
+                .celsius(20)
+                .hourly(hourly)
+                .daily(daily)
+                .build();
+
+        WeatherSnapshot decoded = WeatherSnapshotCodec.decode(WeatherSnapshotCodec.encode(snapshot));
+        assertEquals(snapshot, decoded);
+        assertEquals(hourly, decoded.getHourly());
+        assertEquals(daily, decoded.getDaily());
+    }
+
+    @Test
+    public void decode_default_isShared() throws IOException {
+        assertSame(WeatherSnapshot.DEFAULT, WeatherSnapshotCodec.decode(WeatherSnapshotCodec.encode(WeatherSnapshot.DEFAULT)));
+    }
+
+    @Test
+    public void decode_skipsUnknownTags() throws IOException {
+        WeatherSnapshot snapshot = new WeatherSnapshot.Builder().celsius(12).build();
+        byte[] bytes = WeatherSnapshotCodec.encode(snapshot);
+        byte[] extended = Arrays.copyOf(bytes, bytes.length + 4);
+        extended[bytes.length] = 100;
+        extended[bytes.length + 1] = 2;
+
+        assertEquals(snapshot, WeatherSnapshotCodec.decode(extended));
+    }
+
+    @Test(expected = IOException.class)
+    public void decode_rejectsNewerVersions() throws IOException {
+        byte[] bytes = WeatherSnapshotCodec.encode(WeatherSnapshot.DEFAULT);
+        bytes[2] = 100;
+        WeatherSnapshotCodec.decode(bytes);
+    }
+
+    @Test(expected = IOException.class)
+    public void decode_rejectsTruncatedData() throws IOException {
+        byte[] bytes = WeatherSnapshotCodec.encode(WeatherSnapshot.DEFAULT);
+        WeatherSnapshotCodec.decode(Arrays.copyOf(bytes, bytes.length - 1));
+    }
+
+    @Test(expected = IOException.class)
+    public void decode_rejectsOtherData() throws IOException {
+        WeatherSnapshotCodec.decode(new byte[] { 1, 2, 3 });
+    }
+}
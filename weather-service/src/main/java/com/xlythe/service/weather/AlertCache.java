@@ -0,0 +1,141 @@
+package com.xlythe.service.weather;
+
+import android.content.Context;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.xlythe.service.weather.core.Alert;
+import com.xlythe.service.weather.core.AlertStore;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The weather alerts in effect for each kind of {@link Weather}, persisted so that they survive
+ * process restarts.
+ * <p>
+ * Each refresh is compared against what's already stored, and listeners only hear about alerts
+ * that were added, updated or expired. A refresh that reports the same alerts as last time
+ * doesn't touch the disk or call anyone.
+ */
+class AlertCache {
+    private static final String TAG = AlertCache.class.getSimpleName();
+    private static final boolean DEBUG = Weather.DEBUG;
+
+    private static final String DIRECTORY = "weather/alerts";
+    private static final String EXTENSION = ".alerts";
+
+    @Nullable private static AlertCache sInstance;
+
+    private final Context mContext;
+    private final Map<Class<? extends Weather>, AlertStore> mStores = new HashMap<>();
+    private final ConcurrentHashMap<Class<? extends Weather>, CopyOnWriteArrayList<WeatherProvider.OnAlertsChangedListener>> mListeners = new ConcurrentHashMap<>();
+    private final Handler mMainHandler = new Handler(Looper.getMainLooper());
+
+    static synchronized AlertCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new AlertCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private AlertCache(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * Returns the alerts that haven't expired yet. Alerts that have expired since the last refresh
+     * are dropped, and listeners are told about them.
+     */
+    @NonNull
+    List<Alert> getAlerts(Class<? extends Weather> weatherClass) {
+        AlertStore store = getStore(weatherClass);
+        long now = System.currentTimeMillis();
+        AlertStore.Diff diff = store.evictExpired(now);
+        if (!diff.isEmpty()) {
+            if (DEBUG) Log.d(TAG, "Alerts for " + weatherClass.getSimpleName() + " expired: " + diff);
+            // We may have been called on the main thread, so leave the disk to the background.
+            WeatherExecutors.getExecutor().execute(() -> write(weatherClass, store));
+            notifyChanged(weatherClass, diff);
+        }
+        return store.getAlerts(now);
+    }
+
+    /**
+     * Replaces the stored alerts with the ones reported by the latest refresh, and tells listeners
+     * what changed. Returns true if anything did.
+     */
+    boolean update(Class<? extends Weather> weatherClass, List<Alert> alerts) {
+        AlertStore store = getStore(weatherClass);
+        AlertStore.Diff diff = store.update(alerts, System.currentTimeMillis());
+        if (diff.isEmpty()) {
+            if (DEBUG) Log.d(TAG, "Alerts for " + weatherClass.getSimpleName() + " are unchanged");
+            return false;
+        }
+
+        if (DEBUG) Log.d(TAG, "Alerts for " + weatherClass.getSimpleName() + " changed: " + diff);
+        write(weatherClass, store);
+        notifyChanged(weatherClass, diff);
+        return true;
+    }
+
+    void addListener(@NonNull Class<? extends Weather> weatherClass, @NonNull WeatherProvider.OnAlertsChangedListener listener) {
+        CopyOnWriteArrayList<WeatherProvider.OnAlertsChangedListener> listeners = mListeners.get(weatherClass);
+        if (listeners == null) {
+            listeners = new CopyOnWriteArrayList<>();
+            CopyOnWriteArrayList<WeatherProvider.OnAlertsChangedListener> existing = mListeners.putIfAbsent(weatherClass, listeners);
+            if (existing != null) {
+                listeners = existing;
+            }
+        }
+        listeners.addIfAbsent(listener);
+    }
+
+    void removeListener(@NonNull Class<? extends Weather> weatherClass, @NonNull WeatherProvider.OnAlertsChangedListener listener) {
+        CopyOnWriteArrayList<WeatherProvider.OnAlertsChangedListener> listeners = mListeners.get(weatherClass);
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+
+    private void notifyChanged(Class<? extends Weather> weatherClass, AlertStore.Diff diff) {
+        CopyOnWriteArrayList<WeatherProvider.OnAlertsChangedListener> listeners = mListeners.get(weatherClass);
+        if (listeners == null || listeners.isEmpty()) {
+            return;
+        }
+
+        mMainHandler.post(() -> {
+            for (WeatherProvider.OnAlertsChangedListener listener : listeners) {
+                if (listeners.contains(listener)) {
+                    listener.onAlertsChanged(diff);
+                }
+            }
+        });
+    }
+
+    private synchronized AlertStore getStore(Class<? extends Weather> weatherClass) {
+        AlertStore store = mStores.get(weatherClass);
+        if (store == null) {
+            store = FileUtils.restore(getFile(weatherClass), new AlertStore());
+            mStores.put(weatherClass, store);
+        }
+        return store;
+    }
+
+    private synchronized void write(Class<? extends Weather> weatherClass, AlertStore store) {
+        FileUtils.save(getFile(weatherClass), store);
+    }
+
+    private File getFile(Class<? extends Weather> weatherClass) {
+        File directory = new File(mContext.getFilesDir(), DIRECTORY);
+        return new File(directory, weatherClass.getSimpleName() + EXTENSION);
+    }
+}
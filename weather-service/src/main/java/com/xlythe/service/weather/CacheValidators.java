@@ -0,0 +1,145 @@
+package com.xlythe.service.weather;
+
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The HTTP caching headers (ETag, Last-Modified and Cache-Control: max-age) of the last response
+ * we received from an endpoint. These let us skip requests while the last response is still fresh,
+ * and send conditional requests once it isn't.
+ */
+class CacheValidators {
+    private static final String BUNDLE_URL = "url";
+    private static final String BUNDLE_ETAG = "etag";
+    private static final String BUNDLE_LAST_MODIFIED = "last_modified";
+    private static final String BUNDLE_EXPIRES_AT = "expires_at";
+
+    private static final CacheValidators EMPTY = new CacheValidators(null, null, null, 0);
+
+    @Nullable private final String url;
+    @Nullable private final String etag;
+    @Nullable private final String lastModified;
+    private final long expiresAt;
+
+    private CacheValidators(@Nullable String url, @Nullable String etag, @Nullable String lastModified, long expiresAt) {
+        this.url = url;
+        this.etag = etag;
+        this.lastModified = lastModified;
+        this.expiresAt = expiresAt;
+    }
+
+    /**
+     * Reads the validators from a successful response.
+     */
+    @NonNull
+    static CacheValidators from(@NonNull String url, @NonNull HttpTransport.Response response) {
+        return new CacheValidators(
+                url,
+                response.getHeader("ETag"),
+                response.getHeader("Last-Modified"),
+                getExpiresAt(response));
+    }
+
+    /**
+     * Returns a copy of these validators, updated with the headers of a 304 Not Modified response.
+     * Servers are allowed to omit validators that haven't changed, so we keep our own in that case.
+     */
+    @NonNull
+    CacheValidators refresh(@NonNull HttpTransport.Response response) {
+        String etag = response.getHeader("ETag");
+        String lastModified = response.getHeader("Last-Modified");
+        return new CacheValidators(
+                url,
+                etag != null ? etag : this.etag,
+                lastModified != null ? lastModified : this.lastModified,
+                getExpiresAt(response));
+    }
+
+    /**
+     * Returns true if the last response for this url can be used without asking the server again.
+     */
+    boolean isFresh(@NonNull String url) {
+        return url.equals(this.url) && System.currentTimeMillis() < expiresAt;
+    }
+
+    /**
+     * Turns the request into a conditional request, if we have validators for its url.
+     */
+    void apply(@NonNull HttpTransport.Request request) {
+        if (!request.getUrl().equals(url)) {
+            return;
+        }
+
+        if (etag != null) {
+            request.header("If-None-Match", etag);
+        }
+        if (lastModified != null) {
+            request.header("If-Modified-Since", lastModified);
+        }
+    }
+
+    @NonNull
+    static CacheValidators restore(@NonNull SharedPreferences sharedPreferences, @NonNull String prefix) {
+        String url = sharedPreferences.getString(prefix + BUNDLE_URL, null);
+        if (url == null) {
+            return EMPTY;
+        }
+
+        return new CacheValidators(
+                url,
+                sharedPreferences.getString(prefix + BUNDLE_ETAG, null),
+                sharedPreferences.getString(prefix + BUNDLE_LAST_MODIFIED, null),
+                sharedPreferences.getLong(prefix + BUNDLE_EXPIRES_AT, 0));
+    }
+
+    void save(@NonNull SharedPreferences sharedPreferences, @NonNull String prefix) {
+        sharedPreferences.edit()
+                .putString(prefix + BUNDLE_URL, url)
+                .putString(prefix + BUNDLE_ETAG, etag)
+                .putString(prefix + BUNDLE_LAST_MODIFIED, lastModified)
+                .putLong(prefix + BUNDLE_EXPIRES_AT, expiresAt)
+                .apply();
+    }
+
+    private static long getExpiresAt(HttpTransport.Response response) {
+        String cacheControl = response.getHeader("Cache-Control");
+        if (cacheControl == null) {
+            return 0;
+        }
+
+        long maxAgeInSeconds = 0;
+        for (String directive : cacheControl.toLowerCase(Locale.US).split(",")) {
+            directive = directive.trim();
+            if (directive.equals("no-cache") || directive.equals("no-store")) {
+                return 0;
+            }
+            if (directive.startsWith("max-age=")) {
+                maxAgeInSeconds = parseSeconds(directive.substring("max-age=".length()));
+            }
+        }
+
+        // The Age header tells us how long the response already sat in an intermediate cache.
+        String age = response.getHeader("Age");
+        if (age != null) {
+            maxAgeInSeconds -= parseSeconds(age);
+        }
+
+        if (maxAgeInSeconds <= 0) {
+            return 0;
+        }
+        return System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(maxAgeInSeconds);
+    }
+
+    private static long parseSeconds(String value) {
+        try {
+            return Long.parseLong(value.trim().replace("\"", ""));
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
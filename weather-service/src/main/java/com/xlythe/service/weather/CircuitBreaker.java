@@ -0,0 +1,220 @@
+package com.xlythe.service.weather;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import androidx.annotation.NonNull;
+
+import java.io.IOException;
+import java.net.SocketException;
+import java.net.SocketTimeoutException;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Stops us from calling a provider that keeps failing.
+ * <p>
+ * While CLOSED, the outcome of the last 8 requests is remembered. Once half or more of them have
+ * failed, or the server tells us to back off (429 or Retry-After) or that our requests can never
+ * succeed (like a bad api key), the breaker OPENs. While open, requests are
+ * skipped entirely. Once the backoff has passed, the breaker is HALF_OPEN and lets a single
+ * request through. If it succeeds, the breaker closes again. If it fails, the breaker reopens
+ * with twice the backoff.
+ * <p>
+ * Only failures that say something about the provider count: 5xx responses, timeouts and reset
+ * connections. Being offline, or failing to resolve the host, is our problem and not theirs.
+ * <p>
+ * There's one breaker per service for the whole process, so that concurrent requests all see
+ * the same state. It's persisted, so that it survives the process being killed between scheduled
+ * runs.
+ */
+class CircuitBreaker {
+    enum State {
+        CLOSED, OPEN, HALF_OPEN;
+    }
+
+    private static final int WINDOW_SIZE = 8;
+    private static final int MIN_REQUESTS = 4;
+    private static final float FAILURE_RATE_THRESHOLD = 0.5f;
+
+    private static final long BASE_BACKOFF_IN_MILLIS = TimeUnit.MINUTES.toMillis(15);
+    private static final long MAX_BACKOFF_IN_MILLIS = TimeUnit.HOURS.toMillis(24);
+    private static final float JITTER = 0.2f;
+
+    private static final String BUNDLE_PREFIX = "circuit_breaker:";
+    private static final String BUNDLE_OUTCOMES = BUNDLE_PREFIX + "outcomes";
+    private static final String BUNDLE_REQUESTS = BUNDLE_PREFIX + "requests";
+    private static final String BUNDLE_OPEN_UNTIL = BUNDLE_PREFIX + "open_until";
+    private static final String BUNDLE_TRIPS = BUNDLE_PREFIX + "trips";
+
+    private static final Random sRandom = new Random();
+
+    private static final Map<Class<?>, CircuitBreaker> sBreakers = new HashMap<>();
+
+    private final SharedPreferences mSharedPreferences;
+
+    // A bit per request, most recent in the lowest bit. 1 means the request failed.
+    private int mOutcomes;
+    private int mRequests;
+    private long mOpenUntil;
+    private int mTrips;
+
+    // True while the one request allowed through a HALF_OPEN breaker is still running.
+    private boolean mProbing;
+
+    /**
+     * Returns the breaker for the given service, restoring it from disk the first time it's used.
+     */
+    @NonNull
+    static synchronized CircuitBreaker getInstance(@NonNull Context context, @NonNull Class<?> clazz) {
+        CircuitBreaker breaker = sBreakers.get(clazz);
+        if (breaker == null) {
+            breaker = new CircuitBreaker(context.getApplicationContext().getSharedPreferences(clazz.getSimpleName(), Context.MODE_PRIVATE));
+            sBreakers.put(clazz, breaker);
+        }
+        return breaker;
+    }
+
+    private CircuitBreaker(SharedPreferences sharedPreferences) {
+        mSharedPreferences = sharedPreferences;
+        mOutcomes = sharedPreferences.getInt(BUNDLE_OUTCOMES, 0);
+        mRequests = sharedPreferences.getInt(BUNDLE_REQUESTS, 0);
+        mOpenUntil = sharedPreferences.getLong(BUNDLE_OPEN_UNTIL, 0);
+        mTrips = sharedPreferences.getInt(BUNDLE_TRIPS, 0);
+    }
+
+    @NonNull
+    synchronized State getState() {
+        if (mTrips == 0) {
+            return State.CLOSED;
+        }
+        return System.currentTimeMillis() < mOpenUntil ? State.OPEN : State.HALF_OPEN;
+    }
+
+    /**
+     * Returns true if a request would be allowed right now. Unlike {@link #tryAcquire()}, this
+     * doesn't claim anything, so it's only good for skipping work early.
+     */
+    synchronized boolean allowRequest() {
+        switch (getState()) {
+            case OPEN:
+                return false;
+            case HALF_OPEN:
+                return !mProbing;
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Returns true if a request may be made right now. If the breaker is HALF_OPEN, the caller
+     * becomes its one trial request, and everyone else is turned away until it reports back
+     * through {@link #onSuccess()} or {@link #onFailure(IOException)}.
+     */
+    synchronized boolean tryAcquire() {
+        if (!allowRequest()) {
+            return false;
+        }
+        if (getState() == State.HALF_OPEN) {
+            mProbing = true;
+        }
+        return true;
+    }
+
+    /**
+     * Returns how long until the breaker lets requests through again.
+     */
+    synchronized long getRemainingBackoffInMillis() {
+        return Math.max(0, mOpenUntil - System.currentTimeMillis());
+    }
+
+    synchronized void onSuccess() {
+        if (mProbing || getState() == State.HALF_OPEN) {
+            mProbing = false;
+            mOutcomes = 0;
+            mRequests = 0;
+            mOpenUntil = 0;
+            mTrips = 0;
+        } else {
+            record(false);
+        }
+        save();
+    }
+
+    synchronized void onFailure(@NonNull IOException e) {
+        boolean probe = mProbing;
+        mProbing = false;
+
+        long retryAfter = 0;
+        boolean forceOpen = false;
+        if (e instanceof HttpException) {
+            HttpException httpException = (HttpException) e;
+            retryAfter = httpException.getRetryAfterInMillis();
+            forceOpen = httpException.isThrottled() || httpException.isPermanent();
+        }
+
+        if (!forceOpen && !isProviderFailure(e)) {
+            // Nothing we learned here is the provider's fault. If this was the trial request,
+            // the next request gets to try instead.
+            return;
+        }
+
+        record(true);
+        if (probe || forceOpen || (mRequests >= MIN_REQUESTS && getFailureRate() >= FAILURE_RATE_THRESHOLD)) {
+            trip(retryAfter);
+        }
+        save();
+    }
+
+    /**
+     * Returns true if the failure means the provider is struggling, as opposed to us being
+     * offline.
+     */
+    private static boolean isProviderFailure(IOException e) {
+        if (e instanceof HttpException) {
+            return ((HttpException) e).getStatus() >= 500;
+        }
+        if (e instanceof SocketTimeoutException) {
+            return true;
+        }
+        String message = e.getMessage();
+        return e instanceof SocketException
+                && message != null
+                && message.toLowerCase(Locale.US).contains("reset");
+    }
+
+    private void record(boolean failed) {
+        mOutcomes = (mOutcomes << 1) | (failed ? 1 : 0);
+        mOutcomes &= (1 << WINDOW_SIZE) - 1;
+        mRequests = Math.min(WINDOW_SIZE, mRequests + 1);
+    }
+
+    private float getFailureRate() {
+        return mRequests == 0 ? 0 : (float) Integer.bitCount(mOutcomes) / mRequests;
+    }
+
+    private void trip(long retryAfterInMillis) {
+        long backoff = Math.min(MAX_BACKOFF_IN_MILLIS, BASE_BACKOFF_IN_MILLIS << Math.min(mTrips, 16));
+        // Spread out retries, so that every device doesn't come back at the same moment.
+        backoff += (long) (backoff * JITTER * sRandom.nextFloat());
+        // If the server told us how long to wait, that always wins.
+        if (retryAfterInMillis > 0) {
+            backoff = retryAfterInMillis;
+        }
+
+        mTrips++;
+        mOpenUntil = System.currentTimeMillis() + backoff;
+    }
+
+    private void save() {
+        mSharedPreferences.edit()
+                .putInt(BUNDLE_OUTCOMES, mOutcomes)
+                .putInt(BUNDLE_REQUESTS, mRequests)
+                .putLong(BUNDLE_OPEN_UNTIL, mOpenUntil)
+                .putInt(BUNDLE_TRIPS, mTrips)
+                .apply();
+    }
+}
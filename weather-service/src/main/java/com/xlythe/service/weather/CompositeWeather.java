@@ -0,0 +1,48 @@
+package com.xlythe.service.weather;
+
+import android.content.Context;
+import android.os.Parcel;
+
+import com.xlythe.service.weather.core.WeatherSnapshot;
+
+import androidx.annotation.NonNull;
+
+/**
+ * The weather that {@link CompositeWeatherProvider} assembled from its providers. It isn't
+ * fetched directly, so {@link #fetch(Context, Object...)} always fails.
+ */
+public class CompositeWeather extends Weather {
+    public static final String TAG = CompositeWeather.class.getSimpleName();
+
+    public static final Creator<Weather> CREATOR = new Creator<Weather>() {
+        public Weather createFromParcel(Parcel in) {
+            return new CompositeWeather(in);
+        }
+
+        public Weather[] newArray(int size) {
+            return new Weather[size];
+        }
+    };
+
+    public CompositeWeather() {
+        super();
+    }
+
+    private CompositeWeather(Parcel in) {
+        super(in);
+    }
+
+    public CompositeWeather(Context context) {
+        super(context);
+    }
+
+    CompositeWeather(@NonNull WeatherSnapshot snapshot) {
+        super();
+        setSnapshot(snapshot);
+    }
+
+    @Override
+    protected boolean fetch(Context context, Object... args) {
+        return false;
+    }
+}
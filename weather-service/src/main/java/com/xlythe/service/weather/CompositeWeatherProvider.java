@@ -0,0 +1,392 @@
+package com.xlythe.service.weather;
+
+import android.Manifest;
+import android.annotation.SuppressLint;
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.IntentFilter;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresPermission;
+import androidx.core.content.ContextCompat;
+import androidx.work.impl.utils.futures.SettableFuture;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.xlythe.service.weather.core.WeatherField;
+import com.xlythe.service.weather.core.WeatherSnapshot;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Queries several providers at once, and combines their answers according to a {@link Policy}.
+ * <pre>
+ * WeatherProvider provider = new CompositeWeatherProvider.Builder(context)
+ *         .add(new OpenWeatherProvider(context, openWeatherKey))
+ *         .add(pirateWeatherProvider)
+ *         .policy(CompositeWeatherProvider.Policy.MERGE)
+ *         .prefer(WeatherField.SUN, pirateWeatherProvider)
+ *         .prefer(WeatherField.MOON_PHASE, pirateWeatherProvider)
+ *         .build();
+ * </pre>
+ * Only providers that say which service they run (see {@link WeatherProvider#getServiceClass()})
+ * are supported, which includes every provider that ships with this library. Scheduling a
+ * composite schedules each of its providers, but their background updates are only combined the
+ * next time the composite itself is run.
+ */
+public class CompositeWeatherProvider extends WeatherProvider {
+    private static final String TAG = CompositeWeatherProvider.class.getSimpleName();
+
+    public static final String ACTION_DATA_CHANGED = "com.xlythe.service.weather.COMPOSITE_WEATHER_DATA_CHANGED";
+
+    private static final long DEFAULT_DEADLINE_IN_MILLIS = TimeUnit.SECONDS.toMillis(5);
+
+    private static final Handler sHandler = new Handler(Looper.getMainLooper());
+
+    public enum Policy {
+        /** Uses whichever provider answers first. */
+        FIRST_SUCCESSFUL,
+        /**
+         * Uses the most preferred provider (in the order they were added) that answers within the
+         * deadline. After the deadline, uses whichever provider answers first.
+         */
+        FASTEST_WITHIN_DEADLINE,
+        /**
+         * Waits for every provider (or the deadline, whichever comes first), and then takes each
+         * field from its preferred provider. Fields without a preference come from the first
+         * provider, in the order they were added, that answered.
+         */
+        MERGE;
+    }
+
+    private final List<WeatherProvider> mProviders;
+    private final Policy mPolicy;
+    private final long mDeadlineInMillis;
+    private final Map<WeatherField, WeatherProvider> mPreferences;
+
+    private CompositeWeatherProvider(Builder builder) {
+        super(builder.context);
+        mProviders = Collections.unmodifiableList(new ArrayList<>(builder.providers));
+        mPolicy = builder.policy;
+        mDeadlineInMillis = builder.deadlineInMillis;
+        mPreferences = new EnumMap<>(builder.preferences);
+    }
+
+    @RequiresPermission(allOf = {
+            Manifest.permission.ACCESS_FINE_LOCATION,
+            Manifest.permission.ACCESS_COARSE_LOCATION,
+            Manifest.permission.INTERNET
+    })
+    @Override
+    public void runImmediately() {
+        refresh();
+    }
+
+    @RequiresPermission(allOf = {
+            Manifest.permission.ACCESS_FINE_LOCATION,
+            Manifest.permission.ACCESS_COARSE_LOCATION,
+            Manifest.permission.INTERNET,
+            Manifest.permission.RECEIVE_BOOT_COMPLETED
+    })
+    @Override
+    public void schedule() {
+        for (WeatherProvider provider : mProviders) {
+            provider.schedule();
+        }
+    }
+
+    @Override
+    public void cancel() {
+        for (WeatherProvider provider : mProviders) {
+            provider.cancel();
+        }
+    }
+
+    @Override
+    public boolean isScheduled() {
+        for (WeatherProvider provider : mProviders) {
+            if (!provider.isScheduled()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Weather getWeather() {
+        return new CompositeWeather(getContext());
+    }
+
+    @NonNull
+    @Override
+    @SuppressLint("RestrictedApi")
+    ListenableFuture<WeatherSnapshot> refresh() {
+        SettableFuture<WeatherSnapshot> future = SettableFuture.create();
+        new Aggregation(future, WeatherProvider::refresh, true).start();
+        return future;
+    }
+
+    /**
+     * Asks every provider for the weather at the given place, and combines their answers the same
+     * way a refresh does. Nothing is saved, so the weather at the user's own location is left
+     * untouched.
+     */
+    @NonNull
+    @RequiresPermission(Manifest.permission.INTERNET)
+    @Override
+    @SuppressLint("RestrictedApi")
+    public ListenableFuture<WeatherSnapshot> getWeatherAt(double latitude, double longitude) {
+        SettableFuture<WeatherSnapshot> future = SettableFuture.create();
+        new Aggregation(future, provider -> provider.getWeatherAt(latitude, longitude), false).start();
+        return future;
+    }
+
+    @Override
+    protected Class<? extends Weather> getWeatherClass() {
+        return CompositeWeather.class;
+    }
+
+    @Deprecated
+    @Override
+    public void registerReceiver(BroadcastReceiver broadcastReceiver) {
+        ContextCompat.registerReceiver(getContext(), broadcastReceiver, new IntentFilter(ACTION_DATA_CHANGED), ContextCompat.RECEIVER_NOT_EXPORTED);
+    }
+
+    /**
+     * What an {@link Aggregation} asks of each provider.
+     */
+    private interface Query {
+        ListenableFuture<WeatherSnapshot> run(WeatherProvider provider);
+    }
+
+    /**
+     * A single fan-out to every provider. Results arrive on whichever thread the provider finished
+     * on, and the deadline fires on the main thread, so all state is guarded by this object.
+     */
+    @SuppressLint("RestrictedApi")
+    private class Aggregation implements Runnable {
+        private final SettableFuture<WeatherSnapshot> mFuture;
+        private final Query mQuery;
+        private final boolean mSave;
+        private final boolean[] mDone = new boolean[mProviders.size()];
+        private final WeatherSnapshot[] mResults = new WeatherSnapshot[mProviders.size()];
+        private int mRemaining = mProviders.size();
+        private boolean mDeadlinePassed;
+        private boolean mFinished;
+
+        /**
+         * @param save True if the combined answer is the weather at the user's location, and
+         *             should be saved.
+         */
+        Aggregation(SettableFuture<WeatherSnapshot> future, Query query, boolean save) {
+            mFuture = future;
+            mQuery = query;
+            mSave = save;
+        }
+
+        void start() {
+            if (mProviders.isEmpty()) {
+                mFuture.setException(new IOException("No providers to query"));
+                return;
+            }
+
+            if (mPolicy != Policy.FIRST_SUCCESSFUL) {
+                sHandler.postDelayed(this, mDeadlineInMillis);
+            }
+
+            for (int i = 0; i < mProviders.size(); i++) {
+                final int index = i;
+                ListenableFuture<WeatherSnapshot> result;
+                try {
+                    result = mQuery.run(mProviders.get(i));
+                } catch (RuntimeException e) {
+                    Log.e(TAG, "Failed to query " + mProviders.get(i).getClass().getSimpleName(), e);
+                    onResult(index, null);
+                    continue;
+                }
+                result.addListener(() -> onResult(index, FutureUtils.getDone(result)), FutureUtils.DIRECT_EXECUTOR);
+            }
+        }
+
+        /**
+         * Called on the main thread when the deadline passes. The answer is worked out (and maybe
+         * saved) in the background.
+         */
+        @Override
+        public void run() {
+            try {
+                WeatherExecutors.getExecutor().execute(this::onDeadline);
+            } catch (RejectedExecutionException e) {
+                // Picking an answer is cheap. Saving it is left to finish(), which copes on its own.
+                Log.w(TAG, "Failed to post the deadline", e);
+                onDeadline();
+            }
+        }
+
+        private synchronized void onDeadline() {
+            if (Weather.DEBUG) Log.d(TAG, "Deadline passed with " + mRemaining + " providers outstanding");
+            mDeadlinePassed = true;
+            evaluate(-1);
+        }
+
+        synchronized void onResult(int index, @Nullable WeatherSnapshot snapshot) {
+            if (Weather.DEBUG) Log.d(TAG, mProviders.get(index).getClass().getSimpleName() + (snapshot == null ? " failed" : " answered"));
+            mDone[index] = true;
+            mResults[index] = snapshot;
+            mRemaining--;
+            evaluate(index);
+        }
+
+        private void evaluate(int latest) {
+            if (mFinished) {
+                return;
+            }
+
+            switch (mPolicy) {
+                case FIRST_SUCCESSFUL:
+                    if (latest >= 0 && mResults[latest] != null) {
+                        finish(mResults[latest]);
+                        return;
+                    }
+                    break;
+                case FASTEST_WITHIN_DEADLINE:
+                    for (int i = 0; i < mResults.length; i++) {
+                        if (mResults[i] != null) {
+                            finish(mResults[i]);
+                            return;
+                        }
+                        // Wait for a more preferred provider, unless we're out of time.
+                        if (!mDone[i] && !mDeadlinePassed) {
+                            break;
+                        }
+                    }
+                    break;
+                case MERGE:
+                    if (mRemaining == 0 || mDeadlinePassed) {
+                        WeatherSnapshot merged = merge();
+                        if (merged != null) {
+                            finish(merged);
+                            return;
+                        }
+                    }
+                    break;
+            }
+
+            if (mRemaining == 0) {
+                sHandler.removeCallbacks(this);
+                mFinished = true;
+                mFuture.setException(new IOException("All providers failed"));
+            }
+        }
+
+        @Nullable
+        private WeatherSnapshot merge() {
+            WeatherSnapshot base = null;
+            for (WeatherSnapshot result : mResults) {
+                if (result != null) {
+                    base = result;
+                    break;
+                }
+            }
+            if (base == null) {
+                return null;
+            }
+
+            WeatherSnapshot.Builder builder = base.toBuilder();
+            for (Map.Entry<WeatherField, WeatherProvider> preference : mPreferences.entrySet()) {
+                WeatherSnapshot result = mResults[mProviders.indexOf(preference.getValue())];
+                if (result != null) {
+                    preference.getKey().copy(result, builder);
+                }
+            }
+            return builder.build();
+        }
+
+        private void finish(WeatherSnapshot snapshot) {
+            sHandler.removeCallbacks(this);
+            mFinished = true;
+            if (!mSave) {
+                mFuture.set(snapshot);
+                return;
+            }
+            // Results can arrive on any thread, including the main one, so leave the disk to the
+            // background. That also keeps the lock free while we wait on it.
+            try {
+                WeatherExecutors.getExecutor().execute(() -> {
+                    Weather weather = new CompositeWeather(snapshot);
+                    if (weather.saveIfChanged(getContext())) {
+                        WeatherService.broadcast(getContext(), ACTION_DATA_CHANGED);
+                    }
+                    mFuture.set(weather.getSnapshot());
+                });
+            } catch (RejectedExecutionException e) {
+                mFuture.setException(e);
+            }
+        }
+    }
+
+    public static class Builder {
+        private final Context context;
+        private final List<WeatherProvider> providers = new ArrayList<>();
+        private final Map<WeatherField, WeatherProvider> preferences = new EnumMap<>(WeatherField.class);
+        private Policy policy = Policy.FIRST_SUCCESSFUL;
+        private long deadlineInMillis = DEFAULT_DEADLINE_IN_MILLIS;
+
+        public Builder(Context context) {
+            this.context = context;
+        }
+
+        /**
+         * Adds a provider to query. Providers added first are preferred.
+         */
+        public Builder add(WeatherProvider provider) {
+            if (provider instanceof CompositeWeatherProvider) {
+                throw new IllegalArgumentException("Composite providers cannot be nested");
+            }
+            if (provider.getServiceClass() == null) {
+                throw new IllegalArgumentException(provider.getClass().getSimpleName() + " cannot be refreshed on demand");
+            }
+            if (!providers.contains(provider)) {
+                providers.add(provider);
+            }
+            return this;
+        }
+
+        public Builder policy(Policy policy) {
+            this.policy = policy;
+            return this;
+        }
+
+        /**
+         * How long to wait for providers under {@link Policy#FASTEST_WITHIN_DEADLINE} and
+         * {@link Policy#MERGE}. Defaults to 5 seconds.
+         */
+        public Builder deadline(long duration, TimeUnit unit) {
+            this.deadlineInMillis = unit.toMillis(duration);
+            return this;
+        }
+
+        /**
+         * When merging, takes the given field from the given provider, if it answered.
+         */
+        public Builder prefer(WeatherField field, WeatherProvider provider) {
+            add(provider);
+            preferences.put(field, provider);
+            return this;
+        }
+
+        public CompositeWeatherProvider build() {
+            return new CompositeWeatherProvider(this);
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package com.xlythe.service.weather;
+
+import android.util.AtomicFile;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.WorkerThread;
+
+import com.xlythe.service.weather.core.Persistable;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * Reads and writes the files that weather state is persisted to. Writes are atomic, so a process
+ * killed halfway through leaves the previous contents intact. Callers are responsible for not
+ * writing the same file from two threads at once.
+ */
+class FileUtils {
+    private static final String TAG = FileUtils.class.getSimpleName();
+
+    private FileUtils() {}
+
+    /**
+     * Returns the contents of the file.
+     *
+     * @throws FileNotFoundException if nothing has been written to it yet.
+     */
+    @NonNull
+    @WorkerThread
+    static byte[] read(@NonNull File file) throws IOException {
+        return new AtomicFile(file).readFully();
+    }
+
+    /**
+     * Replaces the contents of the file. Returns false (and leaves the old contents) on failure.
+     */
+    @WorkerThread
+    static boolean write(@NonNull File file, @NonNull byte[] bytes) {
+        AtomicFile atomicFile = new AtomicFile(file);
+        FileOutputStream out = null;
+        try {
+            out = atomicFile.startWrite();
+            out.write(bytes);
+            atomicFile.finishWrite(out);
+            return true;
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to write " + file.getName(), e);
+            if (out != null) atomicFile.failWrite(out);
+            return false;
+        }
+    }
+
+    /**
+     * Decodes the file into the given object, and returns it. If the file doesn't exist or can't
+     * be decoded, the object is returned as it was.
+     */
+    @NonNull
+    @WorkerThread
+    static <T extends Persistable> T restore(@NonNull File file, @NonNull T persistable) {
+        try {
+            persistable.decode(read(file));
+        } catch (FileNotFoundException e) {
+            // Nothing has been saved yet.
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to restore " + file.getName(), e);
+        }
+        return persistable;
+    }
+
+    @WorkerThread
+    static boolean save(@NonNull File file, @NonNull Persistable persistable) {
+        return write(file, persistable.encode());
+    }
+
+    static void delete(@NonNull File file) {
+        new AtomicFile(file).delete();
+    }
+}
@@ -0,0 +1,74 @@
+package com.xlythe.service.weather;
+
+import android.annotation.SuppressLint;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.work.impl.utils.futures.SettableFuture;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+
+@SuppressLint("RestrictedApi")
+class FutureUtils {
+    /** Runs listeners on whichever thread completes the future. Only use for cheap listeners. */
+    static final Executor DIRECT_EXECUTOR = Runnable::run;
+
+    private FutureUtils() {}
+
+    /**
+     * Returns a future that has already completed with the given value.
+     */
+    @NonNull
+    static <V> ListenableFuture<V> immediateFuture(@Nullable V value) {
+        SettableFuture<V> future = SettableFuture.create();
+        future.set(value);
+        return future;
+    }
+
+    /**
+     * Returns a runnable that completes the given future with the result of the callable, or with
+     * the exception it threw.
+     */
+    @NonNull
+    static <V> Runnable complete(@NonNull SettableFuture<V> future, @NonNull Callable<V> callable) {
+        return () -> {
+            try {
+                future.set(callable.call());
+            } catch (Throwable t) {
+                future.setException(t);
+            }
+        };
+    }
+
+    /**
+     * Returns the value of a future that is known to be done, or null if it failed or was
+     * cancelled.
+     */
+    @Nullable
+    static <V> V getDone(@NonNull Future<V> future) {
+        if (!future.isDone()) {
+            throw new IllegalStateException("Future was expected to be done");
+        }
+        return await(future);
+    }
+
+    /**
+     * Blocks until the future completes. Returns null if it failed or was cancelled.
+     */
+    @Nullable
+    static <V> V await(@NonNull Future<V> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (ExecutionException | RuntimeException e) {
+            return null;
+        }
+    }
+}
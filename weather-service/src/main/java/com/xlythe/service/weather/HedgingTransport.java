@@ -0,0 +1,233 @@
+package com.xlythe.service.weather;
+
+import android.net.Uri;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.xlythe.service.weather.core.LatencyHistogram;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * An {@link HttpTransport} that tracks how long each host takes to respond, and sends a second
+ * copy of any request that's taking longer than that host usually does. Whichever copy responds
+ * first is used, and the other is cancelled. This trims the long tail of requests that stall on a
+ * bad connection, at the cost of occasionally making one extra request.
+ * <p>
+ * The first copy runs on the calling thread, and the second (if it's needed) on the shared
+ * {@link WeatherExecutors} pool. Until a host has a few samples to go on, there's no telling
+ * what's slow for it, so its requests aren't hedged at all. Attempts that time out are recorded
+ * too, so that a host that keeps stalling hedges sooner rather than later.
+ */
+public class HedgingTransport implements HttpTransport {
+    private static final String TAG = HedgingTransport.class.getSimpleName();
+
+    private static final double DEFAULT_PERCENTILE = 0.95;
+    private static final int MIN_SAMPLES = 8;
+    private static final long MIN_HEDGE_DELAY_IN_MILLIS = 100;
+
+    private final HttpTransport mDelegate;
+    private final double mPercentile;
+    private final ConcurrentHashMap<String, LatencyHistogram> mHistograms = new ConcurrentHashMap<>();
+    private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+    public HedgingTransport(@NonNull HttpTransport delegate) {
+        this(delegate, DEFAULT_PERCENTILE);
+    }
+
+    /**
+     * @param percentile How slow (between 0 and 1) a request must be, compared to the host's
+     *                   previous requests, before it's hedged. Defaults to the 95th percentile.
+     */
+    public HedgingTransport(@NonNull HttpTransport delegate, double percentile) {
+        mDelegate = delegate;
+        mPercentile = percentile;
+    }
+
+    /**
+     * Returns the latencies recorded for the given host, or null if no requests have been made.
+     */
+    @Nullable
+    public LatencyHistogram getLatency(@NonNull String host) {
+        return mHistograms.get(host);
+    }
+
+    @NonNull
+    @Override
+    public Response execute(@NonNull Request request) throws IOException {
+        LatencyHistogram histogram = getHistogram(request);
+        Race race = new Race(histogram);
+        race.add(request);
+        if (histogram.getCount() < MIN_SAMPLES) {
+            // Histograms start empty in every process. Guessing at a delay would send a duplicate
+            // of every slow request after a cold start, and each one costs api quota.
+            race.run(request);
+            return race.await();
+        }
+
+        long hedgeAfterInMillis = Math.max(MIN_HEDGE_DELAY_IN_MILLIS, histogram.getPercentile(mPercentile));
+        Runnable hedge = () -> {
+            if (Weather.DEBUG) Log.d(TAG, request + " is slower than " + hedgeAfterInMillis + "ms. Hedging.");
+            race.hedge(request.copy());
+        };
+        mHandler.postDelayed(hedge, hedgeAfterInMillis);
+        try {
+            race.run(request);
+        } finally {
+            mHandler.removeCallbacks(hedge);
+        }
+        return race.await();
+    }
+
+    private LatencyHistogram getHistogram(Request request) {
+        String host = Uri.parse(request.getUrl()).getHost();
+        if (host == null) {
+            host = "";
+        }
+        LatencyHistogram histogram = mHistograms.get(host);
+        if (histogram == null) {
+            histogram = new LatencyHistogram();
+            LatencyHistogram existing = mHistograms.putIfAbsent(host, histogram);
+            if (existing != null) {
+                histogram = existing;
+            }
+        }
+        return histogram;
+    }
+
+    /**
+     * One or more copies of the same request, racing to respond first.
+     */
+    private class Race {
+        private final LatencyHistogram mHistogram;
+        private final List<Request> mAttempts = new ArrayList<>();
+        private int mFailures;
+        private boolean mFinished;
+        @Nullable private Response mWinner;
+        @Nullable private IOException mFailure;
+
+        Race(LatencyHistogram histogram) {
+            mHistogram = histogram;
+        }
+
+        synchronized void add(Request request) {
+            mAttempts.add(request);
+        }
+
+        /**
+         * Starts another copy of the request on the shared pool, unless the race is already over
+         * or the pool won't take it. Called on the main thread.
+         */
+        synchronized void hedge(Request request) {
+            if (mWinner != null || mFinished) {
+                return;
+            }
+            try {
+                WeatherExecutors.getExecutor().execute(() -> {
+                    synchronized (this) {
+                        // The pool was busy, and by the time we got a thread, nobody needed us.
+                        if (mWinner != null || mFinished) {
+                            return;
+                        }
+                        mAttempts.add(request);
+                    }
+                    run(request);
+                });
+            } catch (RejectedExecutionException e) {
+                // The first attempt is still running, so going without a hedge is no loss.
+                if (Weather.DEBUG) Log.d(TAG, "Executor rejected the hedge. Skipping it.", e);
+            }
+        }
+
+        /**
+         * Makes one attempt, on the calling thread.
+         */
+        void run(Request request) {
+            long startTime = SystemClock.elapsedRealtime();
+            try {
+                Response response = mDelegate.execute(request);
+                mHistogram.record(SystemClock.elapsedRealtime() - startTime);
+                onResponse(request, response);
+            } catch (SocketTimeoutException e) {
+                // Only remembering the requests that made it would hide how slow the host can be.
+                mHistogram.record(SystemClock.elapsedRealtime() - startTime);
+                onFailure(request, e);
+            } catch (IOException | RuntimeException e) {
+                onFailure(request, e instanceof IOException ? (IOException) e : new IOException(e));
+            }
+        }
+
+        /**
+         * Waits for a winner, or for every attempt that has started to fail. A hedge that's still
+         * waiting for a thread isn't worth waiting for, and is dropped.
+         */
+        synchronized Response await() throws IOException {
+            try {
+                while (mWinner == null && mFailures < mAttempts.size()) {
+                    try {
+                        wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        cancelAll(null);
+                        throw new InterruptedIOException("Interrupted while waiting for a response");
+                    }
+                }
+            } finally {
+                mFinished = true;
+            }
+
+            if (mWinner != null) {
+                return mWinner;
+            }
+            throw mFailure != null ? mFailure : new InterruptedIOException("Cancelled");
+        }
+
+        private void onResponse(Request request, Response response) {
+            synchronized (this) {
+                if (mWinner == null && !mFinished) {
+                    mWinner = response;
+                    notifyAll();
+                    cancelAll(request);
+                    return;
+                }
+            }
+
+            // We lost the race (or nobody's waiting anymore), but still got a response. Release
+            // its connection.
+            try {
+                response.close();
+            } catch (IOException e) {
+                if (Weather.DEBUG) Log.d(TAG, "Failed to close the losing response", e);
+            }
+        }
+
+        private synchronized void onFailure(Request request, IOException e) {
+            if (mWinner == null && !request.isCancelled()) {
+                if (mFailure == null) {
+                    mFailure = e;
+                }
+            }
+            mFailures++;
+            notifyAll();
+        }
+
+        private void cancelAll(@Nullable Request except) {
+            for (Request attempt : mAttempts) {
+                if (attempt != except) {
+                    attempt.cancel();
+                }
+            }
+        }
+    }
+}
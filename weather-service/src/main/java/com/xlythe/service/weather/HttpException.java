@@ -0,0 +1,80 @@
+package com.xlythe.service.weather;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.IOException;
+import java.text.ParseException;
+import java.text.SimpleDateFormat;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Thrown when a server responds, but with an unsuccessful status code.
+ */
+public class HttpException extends IOException {
+    private static final String HTTP_DATE_FORMAT = "EEE, dd MMM yyyy HH:mm:ss zzz";
+
+    private final int status;
+    private final long retryAfterInMillis;
+
+    public HttpException(int status, long retryAfterInMillis) {
+        super("Call to server failed with status " + status);
+        this.status = status;
+        this.retryAfterInMillis = retryAfterInMillis;
+    }
+
+    static HttpException from(@NonNull HttpTransport.Response response) {
+        return new HttpException(response.getStatus(), parseRetryAfter(response.getHeader("Retry-After")));
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns how long the server asked us to wait before trying again, or 0 if it didn't say.
+     */
+    public long getRetryAfterInMillis() {
+        return retryAfterInMillis;
+    }
+
+    /**
+     * Returns true if the server is asking us to slow down, as opposed to being broken.
+     */
+    public boolean isThrottled() {
+        return status == 429 || (status == 503 && retryAfterInMillis > 0);
+    }
+
+    /**
+     * Returns true if retrying the same request can't succeed, like with an invalid api key.
+     */
+    public boolean isPermanent() {
+        return status >= 400 && status < 500 && status != 408 && status != 429;
+    }
+
+    /**
+     * Retry-After is either a number of seconds, or an HTTP date.
+     */
+    private static long parseRetryAfter(@Nullable String retryAfter) {
+        if (retryAfter == null) {
+            return 0;
+        }
+        retryAfter = retryAfter.trim();
+
+        try {
+            return Math.max(0, TimeUnit.SECONDS.toMillis(Long.parseLong(retryAfter)));
+        } catch (NumberFormatException e) {
+            // Fall through and try it as a date.
+        }
+
+        SimpleDateFormat format = new SimpleDateFormat(HTTP_DATE_FORMAT, Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            return Math.max(0, format.parse(retryAfter).getTime() - System.currentTimeMillis());
+        } catch (ParseException e) {
+            return 0;
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.xlythe.service.weather;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Sends the HTTP requests made by {@link LocationBasedService}. The default implementation is
+ * {@link UrlConnectionTransport}, hedged by {@link HedgingTransport}, but it can be replaced via
+ * {@link LocationBasedService#setTransport(HttpTransport)}.
+ */
+public interface HttpTransport {
+    /**
+     * Sends the request and returns the response. The caller must close the response once it's
+     * done reading the body, so that the underlying connection can be reused.
+     */
+    @NonNull
+    Response execute(@NonNull Request request) throws IOException;
+
+    class Request {
+        private final String url;
+        private final Map<String, String> headers = new LinkedHashMap<>();
+
+        @Nullable private Runnable onCancel;
+        private boolean cancelled;
+
+        public Request(@NonNull String url) {
+            this.url = url;
+        }
+
+        /**
+         * Returns a new request for the same url, with the same headers, that can be sent and
+         * cancelled independently of this one.
+         */
+        @NonNull
+        public Request copy() {
+            Request copy = new Request(url);
+            copy.headers.putAll(headers);
+            return copy;
+        }
+
+        @NonNull
+        public String getUrl() {
+            return url;
+        }
+
+        public Request header(@NonNull String key, @NonNull String value) {
+            headers.put(key, value);
+            return this;
+        }
+
+        @NonNull
+        public Map<String, String> getHeaders() {
+            return Collections.unmodifiableMap(headers);
+        }
+
+        /**
+         * Aborts the request. If it's in flight, {@link HttpTransport#execute(Request)} throws.
+         */
+        public void cancel() {
+            Runnable onCancel;
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                onCancel = this.onCancel;
+            }
+            if (onCancel != null) {
+                onCancel.run();
+            }
+        }
+
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        /**
+         * Called by transports once the request is in flight, with a way to abort it. If the
+         * request has already been cancelled, the callback is run right away.
+         */
+        public void setOnCancelListener(@Nullable Runnable onCancel) {
+            boolean cancelled;
+            synchronized (this) {
+                this.onCancel = onCancel;
+                cancelled = this.cancelled;
+            }
+            if (cancelled && onCancel != null) {
+                onCancel.run();
+            }
+        }
+
+        @NonNull
+        @Override
+        public String toString() {
+            return "GET " + url;
+        }
+    }
+
+    class Response implements Closeable {
+        private static final Charset UTF_8 = Charset.forName("UTF-8");
+        private static final int DEFAULT_BUFFER_SIZE = 8 * 1024;
+        private static final int MAX_PRESIZED_BUFFER_SIZE = 1024 * 1024;
+
+        private final int status;
+        private final Map<String, String> headers;
+        private final long contentLength;
+        private final InputStream body;
+        @Nullable private final Closeable onClose;
+
+        /**
+         * @param headers Response headers. Keys are expected to be lowercase.
+         * @param contentLength The decoded length of the body, or -1 if unknown.
+         * @param onClose Called after the body has been closed, to release any other resources.
+         */
+        public Response(int status, @NonNull Map<String, String> headers, long contentLength, @NonNull InputStream body, @Nullable Closeable onClose) {
+            this.status = status;
+            this.headers = headers;
+            this.contentLength = contentLength;
+            this.body = body;
+            this.onClose = onClose;
+        }
+
+        public int getStatus() {
+            return status;
+        }
+
+        public boolean isSuccessful() {
+            return status >= 200 && status < 300;
+        }
+
+        @Nullable
+        public String getHeader(@NonNull String key) {
+            return headers.get(key.toLowerCase(Locale.US));
+        }
+
+        /**
+         * Returns the length of the body, or -1 if unknown.
+         */
+        public long getContentLength() {
+            return contentLength;
+        }
+
+        /**
+         * Returns the body as a stream. The stream can only be read once.
+         */
+        @NonNull
+        public InputStream getBody() {
+            return body;
+        }
+
+        /**
+         * Reads the entire body into memory. When the length of the body is known ahead of time,
+         * it's read directly into an array of exactly that size.
+         */
+        @NonNull
+        public byte[] readBytes() throws IOException {
+            if (contentLength >= 0 && contentLength <= MAX_PRESIZED_BUFFER_SIZE) {
+                byte[] bytes = new byte[(int) contentLength];
+                int offset = 0;
+                while (offset < bytes.length) {
+                    int read = body.read(bytes, offset, bytes.length - offset);
+                    if (read == -1) {
+                        throw new EOFException("Expected " + contentLength + " bytes but only received " + offset);
+                    }
+                    offset += read;
+                }
+                return bytes;
+            }
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream(DEFAULT_BUFFER_SIZE);
+            byte[] buffer = new byte[DEFAULT_BUFFER_SIZE];
+            int read;
+            while ((read = body.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+
+        /**
+         * Reads the entire body into memory, decoding it as UTF-8.
+         */
+        @NonNull
+        public String readString() throws IOException {
+            return new String(readBytes(), UTF_8);
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                body.close();
+            } finally {
+                if (onClose != null) {
+                    onClose.close();
+                }
+            }
+        }
+    }
+}
@@ -1,12 +1,13 @@
 package com.xlythe.service.weather;
 
 import android.Manifest;
+import android.annotation.SuppressLint;
 import android.content.Context;
+import android.content.SharedPreferences;
 import android.location.Location;
-import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
 import android.os.Looper;
-import android.os.SystemClock;
 import android.util.Log;
 import android.util.Pair;
 
@@ -18,22 +19,26 @@ import com.google.android.gms.location.LocationServices;
 import com.google.android.gms.location.Priority;
 import com.google.android.gms.tasks.OnCompleteListener;
 import com.google.android.gms.tasks.Task;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.xlythe.service.weather.core.MoonPhase;
+import com.xlythe.service.weather.core.WeatherParser;
+import com.xlythe.service.weather.core.WeatherSnapshot;
 
 import org.json.JSONException;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
-import java.net.HttpURLConnection;
-import java.net.URL;
+import java.io.Reader;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
 import androidx.work.WorkerParameters;
+import androidx.work.impl.utils.futures.SettableFuture;
 
 /**
  * A service that first grabs the user's most recent location before querying a website.
@@ -42,8 +47,22 @@ public abstract class LocationBasedService extends WeatherService {
     private static final String TAG = LocationBasedService.class.getSimpleName();
 
     private static final long LOCATION_TIMEOUT_IN_SECONDS = 10;
-    private static final int NETWORK_TIMEOUT_IN_MILLIS = 10 * 1000;
-    private static final long MAX_LOCATION_STALENESS_IN_MINUTES = 30;
+    private static final int HTTP_NOT_MODIFIED = 304;
+    // Refreshes within about a kilometer (a hundredth of a degree) of each other are coalesced.
+    private static final double LOCATION_BUCKETS_PER_DEGREE = 100;
+
+    private static final String BUNDLE_VALIDATORS = "validators:";
+
+    private static volatile HttpTransport sTransport = new HedgingTransport(new UrlConnectionTransport());
+
+    private static final Object sLocationLock = new Object();
+    @Nullable private static ListenableFuture<Location> sPendingLocation;
+
+    // Refreshes that are currently running, keyed by provider and location bucket.
+    private static final SingleFlight<String, Result> sRefreshes = new SingleFlight<>();
+
+    // Requests for the weather at a place, keyed by provider and geohash.
+    private static final SingleFlight<String, WeatherSnapshot> sPlaceRequests = new SingleFlight<>();
 
     private Bundle mParams;
 
@@ -51,9 +70,183 @@ public abstract class LocationBasedService extends WeatherService {
         super(appContext, params);
     }
 
+    /**
+     * Replaces the transport that all location based services use to make their requests. By
+     * default, this is a {@link HedgingTransport} around a {@link UrlConnectionTransport}.
+     */
+    public static void setTransport(@NonNull HttpTransport transport) {
+        sTransport = transport;
+    }
+
+    @NonNull
     @Override
-    public Result onRunTask(Bundle params) {
-        Location location = getLocation();
+    @SuppressLint("RestrictedApi")
+    protected ListenableFuture<Result> onStartTask(@Nullable Bundle params) {
+        if (isCircuitOpen()) {
+            return FutureUtils.immediateFuture(Result.FAILURE);
+        }
+
+        SettableFuture<Result> future = SettableFuture.create();
+        ListenableFuture<Location> location = getLocation();
+        location.addListener(() -> {
+            Location found = FutureUtils.getDone(location);
+            if (found == null) {
+                postTask(future, () -> onLocationFound(params, null));
+                return;
+            }
+            // Copy the result over instead of chaining the futures, so that one caller giving up
+            // doesn't cancel the refresh for everyone else who joined it.
+            ListenableFuture<Result> refresh = sRefreshes.run(getRefreshKey(params, found), () -> {
+                SettableFuture<Result> task = SettableFuture.create();
+                postTask(task, () -> onLocationFound(params, found));
+                return task;
+            });
+            refresh.addListener(() -> future.set(FutureUtils.getDone(refresh)), FutureUtils.DIRECT_EXECUTOR);
+        }, FutureUtils.DIRECT_EXECUTOR);
+        return future;
+    }
+
+    @WorkerThread
+    @Override
+    public Result onRunTask(@Nullable Bundle params) {
+        if (isCircuitOpen()) {
+            return Result.FAILURE;
+        }
+        Location location = FutureUtils.await(getLocation());
+        if (location == null) {
+            return onLocationFound(params, null);
+        }
+        Result result = FutureUtils.await(sRefreshes.run(getRefreshKey(params, location),
+                () -> FutureUtils.immediateFuture(onLocationFound(params, location))));
+        return result == null ? Result.RESCHEDULE : result;
+    }
+
+    /**
+     * Identifies a refresh, so that a refresh that's requested while an identical one is already
+     * running (like a manual refresh that lands on top of a scheduled one) joins it instead of
+     * making the same request twice.
+     * <p>
+     * The key is the url we'd request for the center of the location's bucket, so refreshes that
+     * would ask for different things (like a manual refresh that also wants astronomy) are kept
+     * apart.
+     */
+    private String getRefreshKey(@Nullable Bundle params, Location location) {
+        mParams = params;
+        return getClass().getName() + ":" + createUrl(
+                Math.round(location.getLatitude() * LOCATION_BUCKETS_PER_DEGREE) / LOCATION_BUCKETS_PER_DEGREE,
+                Math.round(location.getLongitude() * LOCATION_BUCKETS_PER_DEGREE) / LOCATION_BUCKETS_PER_DEGREE);
+    }
+
+    /**
+     * Returns a future with the weather at the given place. If the {@link PlaceCache} has recent
+     * weather nearby, that's used. Otherwise the weather is fetched, without touching the weather
+     * saved for the user's own location, and cached for next time.
+     */
+    @NonNull
+    @SuppressLint("RestrictedApi")
+    static ListenableFuture<WeatherSnapshot> fetch(Context context, Class<? extends LocationBasedService> clazz, double latitude, double longitude) {
+        PlaceCache cache = PlaceCache.getInstance(context);
+        return sPlaceRequests.run(clazz.getName() + ":" + cache.getKey(latitude, longitude), () -> {
+            SettableFuture<WeatherSnapshot> future = SettableFuture.create();
+            // The cache may need to be read from disk, so even a hit is looked up in the
+            // background. Only a miss waits its turn behind the service's other work.
+            try {
+                post(() -> {
+                    try {
+                        WeatherSnapshot cached = cache.get(clazz, latitude, longitude);
+                        if (cached != null) {
+                            if (DEBUG) Log.d(TAG, "Using cached weather for " + latitude + "," + longitude);
+                            future.set(cached);
+                            return;
+                        }
+                        post(clazz, FutureUtils.complete(future, () -> {
+                            LocationBasedService service = create(context, clazz);
+                            WeatherSnapshot snapshot = service.fetchSnapshot(latitude, longitude);
+                            cache.put(clazz, latitude, longitude, snapshot);
+                            return snapshot;
+                        }));
+                    } catch (Throwable t) {
+                        future.setException(t);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                future.setException(e);
+            }
+            return future;
+        });
+    }
+
+    @WorkerThread
+    private WeatherSnapshot fetchSnapshot(double latitude, double longitude) throws IOException {
+        WeatherParser parser = getParser();
+        if (parser == null) {
+            throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot fetch the weather for other places");
+        }
+        if (isCircuitOpen()) {
+            throw new IOException(getClass().getSimpleName() + " is failing. Try again later.");
+        }
+
+        HttpTransport.Request request = new HttpTransport.Request(createUrl(latitude, longitude));
+        CircuitBreaker breaker = getCircuitBreaker();
+        if (!breaker.tryAcquire()) {
+            throw new IOException(getClass().getSimpleName() + " is failing. Try again later.");
+        }
+        HttpTransport.Response fetched;
+        try {
+            fetched = fetch(request);
+            breaker.onSuccess();
+        } catch (IOException e) {
+            breaker.onFailure(e);
+            throw e;
+        }
+
+        // There's no previous weather for this place to carry values over from. Moon phase is the
+        // same everywhere, so rather than leave it at its default, it's worked out for providers
+        // that don't report it.
+        long now = System.currentTimeMillis();
+        WeatherSnapshot base = WeatherSnapshot.DEFAULT.toBuilder()
+                .moonPhase(MoonPhase.at(now))
+                .build();
+        try (HttpTransport.Response response = fetched; Reader reader = new InputStreamReader(response.getBody(), "UTF-8")) {
+            return parser.parse(reader, base)
+                    .toBuilder()
+                    .lastUpdate(now)
+                    .build();
+        }
+    }
+
+    /**
+     * Marks the weather saved for the user's location as up to date, without rewriting it.
+     */
+    private void touchSavedWeather() {
+        Class<? extends Weather> weatherClass = getWeatherClass();
+        if (weatherClass == null) {
+            return;
+        }
+        try {
+            weatherClass.getConstructor().newInstance().touch(getContext());
+        } catch (ReflectiveOperationException e) {
+            if (DEBUG) Log.d(TAG, "Failed to create " + weatherClass.getSimpleName(), e);
+        }
+    }
+
+    /**
+     * Remembers the weather that was just saved for the user's location, so that asking for the
+     * weather at a place nearby doesn't need a request of its own.
+     */
+    private void cacheSavedWeather(Location location) {
+        Class<? extends Weather> weatherClass = getWeatherClass();
+        if (weatherClass == null) {
+            return;
+        }
+        WeatherSnapshot snapshot = SnapshotCache.get(weatherClass);
+        if (snapshot != null && snapshot.getLastUpdate() != 0) {
+            PlaceCache.getInstance(getContext()).put(getClass(), location.getLatitude(), location.getLongitude(), snapshot);
+        }
+    }
+
+    @WorkerThread
+    private Result onLocationFound(@Nullable Bundle params, @Nullable Location location) {
         if (location == null) {
             if (DEBUG) Log.d(TAG, "No location found");
             return Result.RESCHEDULE;
@@ -66,11 +259,51 @@ public abstract class LocationBasedService extends WeatherService {
             String requestUrl = createUrl(location);
             if (DEBUG) Log.d(TAG, requestUrl);
 
+            String validatorsKey = BUNDLE_VALIDATORS + getEndpoint() + ":";
+            CacheValidators validators = CacheValidators.restore(getSharedPreferences(), validatorsKey);
+            if (validators.isFresh(requestUrl)) {
+                if (DEBUG) Log.d(TAG, "Last response is still fresh. Skipping request.");
+                // The saved weather is as current as the server would give us, so say so. Otherwise
+                // it looks stale, and we're asked to refresh again right away.
+                touchSavedWeather();
+                return Result.SUCCESS;
+            }
+
             if (DEBUG) Log.d(TAG, "Fetching url");
-            String input = fetch(requestUrl);
-            if (DEBUG) Log.d(TAG, input);
+            HttpTransport.Request request = new HttpTransport.Request(requestUrl);
+            validators.apply(request);
+            CircuitBreaker breaker = getCircuitBreaker();
+            if (!breaker.tryAcquire()) {
+                if (DEBUG) Log.d(TAG, "Circuit breaker is already letting another request through. Skipping.");
+                return Result.FAILURE;
+            }
+            HttpTransport.Response fetched;
+            try {
+                fetched = fetch(request);
+                breaker.onSuccess();
+            } catch (IOException e) {
+                breaker.onFailure(e);
+                // Once the breaker has tripped, there's no point in WorkManager retrying early.
+                // We'll try again on the next scheduled run after the breaker lets us.
+                if (!breaker.allowRequest()) {
+                    if (DEBUG) Log.d(TAG, "Circuit breaker opened for " + breaker.getRemainingBackoffInMillis() + "ms", e);
+                    return Result.FAILURE;
+                }
+                throw e;
+            }
 
-            parse(input);
+            try (HttpTransport.Response response = fetched) {
+                if (response.getStatus() == HTTP_NOT_MODIFIED) {
+                    if (DEBUG) Log.d(TAG, "Data has not been modified since the last request");
+                    validators.refresh(response).save(getSharedPreferences(), validatorsKey);
+                    touchSavedWeather();
+                    return Result.SUCCESS;
+                }
+
+                parse(response);
+                CacheValidators.from(requestUrl, response).save(getSharedPreferences(), validatorsKey);
+                cacheSavedWeather(location);
+            }
         } catch (IOException e) {
             if (DEBUG) Log.e(TAG, "IO Exception", e);
             return Result.RESCHEDULE;
@@ -85,50 +318,44 @@ public abstract class LocationBasedService extends WeatherService {
         return mParams;
     }
 
-    @Nullable
-    @SuppressWarnings({"MissingPermission"})
-    private Location getLocation() {
+    /**
+     * Returns a future that completes with the user's most recent location, or null if one
+     * couldn't be found. A location from {@link LocationCache} is reused if it's still usable, and
+     * concurrent callers share the same request.
+     */
+    @NonNull
+    @SuppressLint("RestrictedApi")
+    private ListenableFuture<Location> getLocation() {
         if (!PermissionUtils.hasPermissions(getContext(), Manifest.permission.ACCESS_COARSE_LOCATION)) {
-            return null;
+            return FutureUtils.immediateFuture(null);
         }
 
-        FusedLocationProviderClient client = LocationServices.getFusedLocationProviderClient(getContext());
-
-        CountDownLatch latch = new CountDownLatch(1);
-        LastKnownLocationCallback callback = new LastKnownLocationCallback(latch);
-        client.getLastLocation().addOnCompleteListener(callback);
-        try {
-            if (!latch.await(LOCATION_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS)) {
-                Log.w(TAG, "Timed out waiting for a cached location after " + LOCATION_TIMEOUT_IN_SECONDS + " seconds");
-            }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            Log.e(TAG, "Interrupted while waiting for location.", e);
-        }
-
-        if (callback.location != null) {
-            if (DEBUG) Log.d(TAG, "Found cached location");
-            return callback.location;
+        LocationCache cache = LocationCache.getInstance(getContext());
+        Location cachedLocation = cache.get();
+        if (cachedLocation != null) {
+            if (DEBUG) Log.d(TAG, "Reusing cached location");
+            return FutureUtils.immediateFuture(cachedLocation);
         }
 
-        if (DEBUG) Log.d(TAG, "Querying for a new location");
-        latch = new CountDownLatch(1);
-        callback = new LastKnownLocationCallback(latch);
-        client.requestLocationUpdates(
-                new LocationRequest.Builder(Priority.PRIORITY_LOW_POWER, 0).build(),
-                callback,
-                Looper.getMainLooper());
-        try {
-            if (!latch.await(LOCATION_TIMEOUT_IN_SECONDS, TimeUnit.SECONDS)) {
-                Log.w(TAG, "Timed out waiting for a location after " + LOCATION_TIMEOUT_IN_SECONDS + " seconds");
+        SettableFuture<Location> future;
+        synchronized (sLocationLock) {
+            if (sPendingLocation != null) {
+                if (DEBUG) Log.d(TAG, "Joining an in-flight location request");
+                return sPendingLocation;
             }
-        } catch (InterruptedException e) {
-            Thread.currentThread().interrupt();
-            Log.e(TAG, "Interrupted while waiting for location.", e);
-        } finally {
-            client.removeLocationUpdates(callback);
+            future = SettableFuture.create();
+            sPendingLocation = future;
         }
-        return callback.location;
+        future.addListener(() -> {
+            synchronized (sLocationLock) {
+                if (sPendingLocation == future) {
+                    sPendingLocation = null;
+                }
+            }
+        }, FutureUtils.DIRECT_EXECUTOR);
+
+        new LocationRequester(LocationServices.getFusedLocationProviderClient(getContext()), cache, future).start();
+        return future;
     }
 
     protected String createUrl(Location location) {
@@ -139,86 +366,153 @@ public abstract class LocationBasedService extends WeatherService {
 
     protected abstract void parse(String json) throws JSONException;
 
-    private String fetch(String url) throws IOException {
-        HttpURLConnection c = null;
-        try {
-            URL u = new URL(url);
-            c = (HttpURLConnection) u.openConnection();
-            c.setRequestMethod("GET");
-            c.setRequestProperty("Content-length", "0");
-            c.setUseCaches(false);
-            c.setAllowUserInteraction(false);
-            c.setConnectTimeout(NETWORK_TIMEOUT_IN_MILLIS);
-            c.setReadTimeout(NETWORK_TIMEOUT_IN_MILLIS);
-            c.connect();
-            int status = c.getResponseCode();
-
-            switch (status) {
-                case 200:
-                case 201:
-                    BufferedReader br = new BufferedReader(new InputStreamReader(c.getInputStream()));
-                    StringBuilder sb = new StringBuilder();
-                    String line;
-                    while ((line = br.readLine()) != null) {
-                        sb.append(line);
-                        sb.append("\n");
-                    }
-                    br.close();
-                    return sb.toString();
-                default:
-                    throw new IOException("Call to server failed with status " + status);
-            }
-        } finally {
-            if (c != null) {
-                try {
-                    c.disconnect();
-                } catch (Exception e) {
-                    e.printStackTrace();
-                }
-            }
+    /**
+     * Parses the body of a successful response. By default, the body is decoded as a string and
+     * passed to {@link #parse(String)}. Subclasses that can parse the body as it streams in should
+     * override this instead.
+     */
+    @WorkerThread
+    protected void parse(HttpTransport.Response response) throws IOException, JSONException {
+        String input = response.readString();
+        if (DEBUG) Log.d(TAG, input);
+        parse(input);
+    }
+
+    /**
+     * Returns a parser for this service's responses, or null if it doesn't have one. Services
+     * without a parser can't fetch the weather for places other than the user's location.
+     */
+    @Nullable
+    protected WeatherParser getParser() {
+        return null;
+    }
+
+    /**
+     * Returns the kind of {@link Weather} this service saves, or null if it's unknown.
+     */
+    @Nullable
+    protected Class<? extends Weather> getWeatherClass() {
+        return null;
+    }
+
+    /**
+     * Identifies which endpoint is being queried, for services that query more than one. The
+     * caching headers of the last response are remembered separately for each endpoint.
+     */
+    protected String getEndpoint() {
+        return "";
+    }
+
+    private SharedPreferences getSharedPreferences() {
+        return getContext().getSharedPreferences(getClass().getSimpleName(), Context.MODE_PRIVATE);
+    }
+
+    private CircuitBreaker getCircuitBreaker() {
+        return CircuitBreaker.getInstance(getContext(), getClass());
+    }
+
+    private HttpTransport.Response fetch(HttpTransport.Request request) throws IOException {
+        HttpTransport.Response response = sTransport.execute(request);
+        if (!response.isSuccessful() && response.getStatus() != HTTP_NOT_MODIFIED) {
+            response.close();
+            throw HttpException.from(response);
         }
+        return response;
     }
 
-    private static class LastKnownLocationCallback extends LocationCallback implements OnCompleteListener<Location> {
-        private final CountDownLatch latch;
-        private Location location;
+    /**
+     * Returns true if this provider has been failing, and shouldn't be called right now. This is
+     * checked before we look up the user's location, so that nothing is wasted on a request we
+     * won't make.
+     */
+    private boolean isCircuitOpen() {
+        CircuitBreaker breaker = getCircuitBreaker();
+        if (breaker.allowRequest()) {
+            return false;
+        }
+        if (DEBUG) Log.d(TAG, "Circuit breaker is open for another " + breaker.getRemainingBackoffInMillis() + "ms. Skipping.");
+        return true;
+    }
 
-        LastKnownLocationCallback(CountDownLatch latch) {
-            this.latch = latch;
+    /**
+     * Completes a future with the user's location. The last known location is used if the
+     * {@link LocationCache} considers it usable, otherwise we ask for a fresh one. Nothing blocks
+     * while we wait; timeouts are posted to the main looper and callbacks are delivered on
+     * whichever thread Play Services uses.
+     */
+    @SuppressLint("RestrictedApi")
+    private static final class LocationRequester extends LocationCallback implements OnCompleteListener<Location> {
+        private final Handler handler = new Handler(Looper.getMainLooper());
+        private final FusedLocationProviderClient client;
+        private final LocationCache cache;
+        private final SettableFuture<Location> future;
+        private boolean requestingUpdates;
+
+        LocationRequester(FusedLocationProviderClient client, LocationCache cache, SettableFuture<Location> future) {
+            this.client = client;
+            this.cache = cache;
+            this.future = future;
         }
 
-        // Called by FusedLocationProviderClient#requestLocationUpdates
-        @Override
-        public void onLocationResult(LocationResult result) {
-            processLocation(result.getLastLocation());
+        @SuppressWarnings({"MissingPermission"})
+        void start() {
+            client.getLastLocation().addOnCompleteListener(FutureUtils.DIRECT_EXECUTOR, this);
+            handler.postDelayed(() -> {
+                Log.w(TAG, "Timed out waiting for a cached location after " + LOCATION_TIMEOUT_IN_SECONDS + " seconds");
+                requestUpdates();
+            }, TimeUnit.SECONDS.toMillis(LOCATION_TIMEOUT_IN_SECONDS));
         }
 
         // Called by FusedLocationProviderClient#getLastLocation
         @Override
         public void onComplete(@NonNull Task<Location> task) {
-            if (task.isSuccessful()) {
-                processLocation(task.getResult());
+            Location location = task.isSuccessful() ? task.getResult() : null;
+            if (cache.isUsable(location)) {
+                if (DEBUG) Log.d(TAG, "Found cached location");
+                finish(location);
+            } else {
+                requestUpdates();
             }
+        }
 
-            // Purposefully count down, even if we skipped the discovered location.
-            // We won't get any further updates.
-            latch.countDown();
+        // Called by FusedLocationProviderClient#requestLocationUpdates
+        @Override
+        public void onLocationResult(@NonNull LocationResult result) {
+            Location location = result.getLastLocation();
+            if (cache.isUsable(location)) {
+                finish(location);
+            }
         }
 
-        private void processLocation(@Nullable Location location) {
-            if (location == null) {
+        @SuppressWarnings({"MissingPermission"})
+        private synchronized void requestUpdates() {
+            if (requestingUpdates || future.isDone()) {
                 return;
             }
 
-            if (Build.VERSION.SDK_INT >= 17) {
-                long elapsedTimeMinutes = TimeUnit.NANOSECONDS.toMinutes(SystemClock.elapsedRealtimeNanos() - location.getElapsedRealtimeNanos());
-                if (elapsedTimeMinutes > MAX_LOCATION_STALENESS_IN_MINUTES) {
-                    return;
-                }
+            if (DEBUG) Log.d(TAG, "Querying for a new location");
+            requestingUpdates = true;
+            handler.removeCallbacksAndMessages(null);
+            client.requestLocationUpdates(
+                    new LocationRequest.Builder(Priority.PRIORITY_LOW_POWER, 0).build(),
+                    FutureUtils.DIRECT_EXECUTOR,
+                    this);
+            handler.postDelayed(() -> {
+                Log.w(TAG, "Timed out waiting for a location after " + LOCATION_TIMEOUT_IN_SECONDS + " seconds");
+                finish(null);
+            }, TimeUnit.SECONDS.toMillis(LOCATION_TIMEOUT_IN_SECONDS));
+        }
+
+        private synchronized void finish(@Nullable Location location) {
+            if (future.isDone()) {
+                return;
             }
 
-            this.location = location;
-            latch.countDown();
+            handler.removeCallbacksAndMessages(null);
+            if (requestingUpdates) {
+                client.removeLocationUpdates(this);
+            }
+            future.set(location == null ? null : cache.put(location));
         }
     }
 
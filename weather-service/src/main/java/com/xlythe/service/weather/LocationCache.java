@@ -0,0 +1,170 @@
+package com.xlythe.service.weather;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.location.Location;
+import android.os.SystemClock;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A process-wide cache of the user's last known location, shared by every
+ * {@link LocationBasedService}. The cache is persisted so that it survives process restarts.
+ * <p>
+ * A cached location is reused as long as it's younger than {@link #setMaxAge(long)} and more
+ * accurate than {@link #setAccuracyThreshold(float)}. When a new location arrives that's within
+ * {@link #setReuseDistance(float)} of the cached one, the cached coordinates are kept (and
+ * refreshed), so that the user's location doesn't jitter between requests.
+ */
+public class LocationCache {
+    private static final String TAG = LocationCache.class.getSimpleName();
+
+    private static final long DEFAULT_MAX_AGE_IN_MILLIS = TimeUnit.MINUTES.toMillis(30);
+    private static final float DEFAULT_ACCURACY_THRESHOLD_IN_METERS = 5000;
+    private static final float DEFAULT_REUSE_DISTANCE_IN_METERS = 500;
+
+    private static final String BUNDLE_PROVIDER = "provider";
+    private static final String BUNDLE_LATITUDE = "latitude";
+    private static final String BUNDLE_LONGITUDE = "longitude";
+    private static final String BUNDLE_ACCURACY = "accuracy";
+    private static final String BUNDLE_TIME = "time";
+
+    @Nullable private static LocationCache sInstance;
+
+    private final SharedPreferences mSharedPreferences;
+
+    private volatile long mMaxAgeInMillis = DEFAULT_MAX_AGE_IN_MILLIS;
+    private volatile float mAccuracyThresholdInMeters = DEFAULT_ACCURACY_THRESHOLD_IN_METERS;
+    private volatile float mReuseDistanceInMeters = DEFAULT_REUSE_DISTANCE_IN_METERS;
+
+    @Nullable private Location mLocation;
+    private boolean mRestored;
+
+    public static synchronized LocationCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new LocationCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private LocationCache(Context context) {
+        mSharedPreferences = context.getSharedPreferences(LocationCache.class.getSimpleName(), Context.MODE_PRIVATE);
+    }
+
+    /**
+     * Locations older than this are never reused. Defaults to 30 minutes.
+     */
+    public void setMaxAge(long maxAgeInMillis) {
+        mMaxAgeInMillis = maxAgeInMillis;
+    }
+
+    /**
+     * Locations with a worse accuracy than this are never reused. Defaults to 5km.
+     */
+    public void setAccuracyThreshold(float accuracyInMeters) {
+        mAccuracyThresholdInMeters = accuracyInMeters;
+    }
+
+    /**
+     * If a new location is within this distance of the cached one, the cached location is kept.
+     * Defaults to 500m.
+     */
+    public void setReuseDistance(float distanceInMeters) {
+        mReuseDistanceInMeters = distanceInMeters;
+    }
+
+    /**
+     * Returns the cached location, or null if there isn't one or it's no longer usable.
+     */
+    @Nullable
+    public synchronized Location get() {
+        restoreIfNeeded();
+        return isUsable(mLocation) ? mLocation : null;
+    }
+
+    /**
+     * Returns true if the given location is recent and accurate enough to be used.
+     */
+    public boolean isUsable(@Nullable Location location) {
+        if (location == null) {
+            return false;
+        }
+
+        if (getAgeInMillis(location) > mMaxAgeInMillis) {
+            return false;
+        }
+
+        return !location.hasAccuracy() || location.getAccuracy() <= mAccuracyThresholdInMeters;
+    }
+
+    /**
+     * Caches a newly discovered location, and returns the location that callers should use. This
+     * may be the previously cached location, if the user hasn't moved far enough from it.
+     */
+    @NonNull
+    public synchronized Location put(@NonNull Location location) {
+        restoreIfNeeded();
+
+        if (isUsable(mLocation) && mLocation.distanceTo(location) < mReuseDistanceInMeters) {
+            if (Weather.DEBUG) Log.d(TAG, "Location is within " + mReuseDistanceInMeters + "m of the cached location. Reusing it.");
+            Location reused = new Location(mLocation);
+            reused.setTime(location.getTime());
+            reused.setElapsedRealtimeNanos(location.getElapsedRealtimeNanos());
+            location = reused;
+        }
+
+        mLocation = location;
+        mSharedPreferences.edit()
+                .putString(BUNDLE_PROVIDER, location.getProvider())
+                .putLong(BUNDLE_LATITUDE, Double.doubleToRawLongBits(location.getLatitude()))
+                .putLong(BUNDLE_LONGITUDE, Double.doubleToRawLongBits(location.getLongitude()))
+                .putFloat(BUNDLE_ACCURACY, location.hasAccuracy() ? location.getAccuracy() : 0)
+                .putLong(BUNDLE_TIME, location.getTime())
+                .apply();
+        return location;
+    }
+
+    /**
+     * Forgets the cached location.
+     */
+    public synchronized void clear() {
+        mLocation = null;
+        mRestored = true;
+        mSharedPreferences.edit().clear().apply();
+    }
+
+    private void restoreIfNeeded() {
+        if (mRestored) {
+            return;
+        }
+        mRestored = true;
+
+        if (!mSharedPreferences.contains(BUNDLE_TIME)) {
+            return;
+        }
+
+        // Note that we purposefully don't restore the elapsed realtime. It's meaningless across
+        // reboots, so the age of a restored location is based on its wall clock time instead.
+        Location location = new Location(mSharedPreferences.getString(BUNDLE_PROVIDER, null));
+        location.setLatitude(Double.longBitsToDouble(mSharedPreferences.getLong(BUNDLE_LATITUDE, 0)));
+        location.setLongitude(Double.longBitsToDouble(mSharedPreferences.getLong(BUNDLE_LONGITUDE, 0)));
+        float accuracy = mSharedPreferences.getFloat(BUNDLE_ACCURACY, 0);
+        if (accuracy > 0) {
+            location.setAccuracy(accuracy);
+        }
+        location.setTime(mSharedPreferences.getLong(BUNDLE_TIME, 0));
+        mLocation = location;
+    }
+
+    private static long getAgeInMillis(Location location) {
+        long elapsedRealtimeNanos = location.getElapsedRealtimeNanos();
+        if (elapsedRealtimeNanos > 0 && elapsedRealtimeNanos <= SystemClock.elapsedRealtimeNanos()) {
+            return TimeUnit.NANOSECONDS.toMillis(SystemClock.elapsedRealtimeNanos() - elapsedRealtimeNanos);
+        }
+        return System.currentTimeMillis() - location.getTime();
+    }
+}
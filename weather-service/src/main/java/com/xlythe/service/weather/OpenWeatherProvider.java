@@ -5,9 +5,13 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.IntentFilter;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.RequiresPermission;
 import androidx.core.content.ContextCompat;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.xlythe.service.weather.core.WeatherSnapshot;
+
 public class OpenWeatherProvider extends WeatherProvider {
     private final String mApiKey;
 
@@ -53,6 +57,24 @@ public class OpenWeatherProvider extends WeatherProvider {
         return new OpenWeather(getContext());
     }
 
+    @Override
+    protected Class<? extends WeatherService> getServiceClass() {
+        return OpenWeatherService.class;
+    }
+
+    @NonNull
+    @RequiresPermission(Manifest.permission.INTERNET)
+    @Override
+    public ListenableFuture<WeatherSnapshot> getWeatherAt(double latitude, double longitude) {
+        return LocationBasedService.fetch(getContext(), OpenWeatherService.class, latitude, longitude);
+    }
+
+    @Override
+    protected Class<? extends Weather> getWeatherClass() {
+        return OpenWeather.class;
+    }
+
+    @Deprecated
     @Override
     public void registerReceiver(BroadcastReceiver broadcastReceiver) {
         ContextCompat.registerReceiver(getContext(), broadcastReceiver, new IntentFilter(OpenWeatherService.ACTION_DATA_CHANGED), ContextCompat.RECEIVER_NOT_EXPORTED);
@@ -6,18 +6,21 @@ import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.util.Log;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.xlythe.service.weather.core.OpenWeatherParser;
+import com.xlythe.service.weather.core.WeatherParser;
+
 import org.json.JSONException;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresPermission;
-import androidx.work.Constraints;
-import androidx.work.ExistingPeriodicWorkPolicy;
-import androidx.work.NetworkType;
-import androidx.work.PeriodicWorkRequest;
-import androidx.work.WorkManager;
 import androidx.work.WorkerParameters;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -64,17 +67,7 @@ public class OpenWeatherService extends LocationBasedService {
         if (DEBUG) Log.d(TAG, "Scheduling OpenWeather api");
         getSharedPreferences(context).edit().putString(BUNDLE_API_KEY, apiKey).apply();
 
-        Constraints constraints = new Constraints.Builder()
-                .setRequiredNetworkType(NetworkType.CONNECTED)
-                .build();
-
-        PeriodicWorkRequest request =
-                new PeriodicWorkRequest.Builder(OpenWeatherService.class, getFrequency(context), TimeUnit.SECONDS)
-                        .setConstraints(constraints)
-                        .addTag(TAG)
-                        .build();
-
-        WorkManager.getInstance(context).enqueueUniquePeriodicWork(TAG, ExistingPeriodicWorkPolicy.UPDATE, request);
+        WeatherScheduler.register(context, OpenWeatherService.class, OpenWeather.class, TimeUnit.SECONDS.toMillis(getFrequency(context)), TimeUnit.SECONDS.toMillis(FLEX));
 
         getSharedPreferences(context).edit()
                 .putBoolean(BUNDLE_SCHEDULED, true)
@@ -83,7 +76,7 @@ public class OpenWeatherService extends LocationBasedService {
     }
 
     public static void cancel(Context context) {
-        WorkManager.getInstance(context).cancelUniqueWork(TAG);
+        WeatherScheduler.unregister(context, OpenWeatherService.class);
         getSharedPreferences(context).edit().putBoolean(BUNDLE_SCHEDULED, false).apply();
     }
 
@@ -113,7 +106,8 @@ public class OpenWeatherService extends LocationBasedService {
     private static boolean hasRunRecently(Context context) {
         Weather weather = new OpenWeather();
         weather.restore(context);
-        return weather.getLastUpdate() > System.currentTimeMillis() - getFrequency(context) + FLEX;
+        long interval = WeatherScheduler.getInterval(context, OpenWeatherService.class, TimeUnit.SECONDS.toMillis(getFrequency(context)));
+        return weather.getLastUpdate() > System.currentTimeMillis() - interval + TimeUnit.SECONDS.toMillis(FLEX);
     }
 
     private static SharedPreferences getSharedPreferences(Context context) {
@@ -146,14 +140,17 @@ public class OpenWeatherService extends LocationBasedService {
         cancel(getContext());
     }
 
+    @NonNull
     @Override
-    public Result onRunTask(@Nullable Bundle extras) {
-        // Extras are null when run manually.
-        if (extras != null && hasRunRecently(getContext())) {
-            return Result.SUCCESS;
+    protected ListenableFuture<Result> onStartTask(@Nullable Bundle extras) {
+        // Extras are null when run manually. The scheduler has already decided we're due.
+        if (extras != null
+                && !extras.getBoolean(WeatherScheduler.BUNDLE_SCHEDULED_RUN)
+                && hasRunRecently(getContext())) {
+            return FutureUtils.immediateFuture(Result.SUCCESS);
         }
 
-        return super.onRunTask(extras);
+        return super.onStartTask(extras);
     }
 
     @Override
@@ -166,14 +163,34 @@ public class OpenWeatherService extends LocationBasedService {
                 .build();
     }
 
+    @Override
+    protected WeatherParser getParser() {
+        return new OpenWeatherParser();
+    }
+
+    @Override
+    protected Class<? extends Weather> getWeatherClass() {
+        return OpenWeather.class;
+    }
+
+    @Override
+    protected void parse(HttpTransport.Response response) throws IOException, JSONException {
+        parse(new InputStreamReader(response.getBody(), "UTF-8"));
+    }
+
     @Override
     protected void parse(String json) throws JSONException {
+        parse(new StringReader(json));
+    }
+
+    private void parse(Reader json) throws JSONException {
         OpenWeather weather = new OpenWeather();
         weather.restore(getContext());
         if (!weather.fetch(getContext(), json)) {
             throw new JSONException("Failed to parse data");
         }
-        weather.save(getContext());
-        broadcast(ACTION_DATA_CHANGED);
+        if (weather.saveIfChanged(getContext())) {
+            broadcast(ACTION_DATA_CHANGED);
+        }
     }
 }
@@ -0,0 +1,197 @@
+package com.xlythe.service.weather;
+
+import android.Manifest;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.location.Location;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresPermission;
+import androidx.work.WorkerParameters;
+
+import com.xlythe.service.weather.core.Geohash;
+import com.xlythe.service.weather.core.Nowcast;
+import com.xlythe.service.weather.core.NowcastBuffer;
+import com.xlythe.service.weather.core.PirateNowcastParser;
+
+import org.json.JSONException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Query Pirate Weather for minute by minute precipitation over the next hour.
+ * <p>
+ * This only asks for the minutely block, so it's far lighter than a full refresh and can run
+ * much more often. It uses the api key given to {@link PirateWeatherService}.
+ */
+public class PirateNowcastService extends LocationBasedService {
+    private static final String TAG = PirateNowcastService.class.getSimpleName();
+
+    public static final String ACTION_DATA_CHANGED = "com.xlythe.service.weather.PIRATE_NOWCAST_DATA_CHANGED";
+
+    private static final long FREQUENCY_NOWCAST = TimeUnit.MINUTES.toMillis(15);
+    private static final long FLEX_NOWCAST = TimeUnit.MINUTES.toMillis(5);
+
+    private static final String BUNDLE_SCHEDULED = "scheduled";
+
+    private static final String URL_NOWCAST = "https://api.pirateweather.net/forecast/%s/%s %s?units=si&exclude=currently,hourly,daily,alerts,flags"; // apiKey, latitude, longitude
+
+    private static final String NOWCAST_DIRECTORY = "weather";
+    private static final String NOWCAST_EXTENSION = ".nowcast";
+
+    // The nowcast is only kept for one place at a time. Moving further than this (about 5km)
+    // starts it over.
+    private static final int NOWCAST_GEOHASH_PRECISION = 5;
+
+    @Nullable private static NowcastBuffer sBuffer;
+
+    // Where the nowcast being fetched is for.
+    @Nullable private Location mLocation;
+
+    public PirateNowcastService(@NonNull Context appContext, @NonNull WorkerParameters params) {
+        super(appContext, params);
+    }
+
+    @RequiresPermission(allOf = {
+            Manifest.permission.ACCESS_FINE_LOCATION,
+            Manifest.permission.ACCESS_COARSE_LOCATION,
+            Manifest.permission.INTERNET
+    })
+    public static void runImmediately(Context context) {
+        runImmediately(context, PirateNowcastService.class, null);
+    }
+
+    /**
+     * Refreshes the nowcast every 15 minutes, alongside any other scheduled providers. Requires an
+     * api key to have been given to {@link PirateWeatherService#schedule(Context, String)}.
+     */
+    @RequiresPermission(allOf = {
+            Manifest.permission.ACCESS_FINE_LOCATION,
+            Manifest.permission.ACCESS_COARSE_LOCATION,
+            Manifest.permission.INTERNET,
+            Manifest.permission.RECEIVE_BOOT_COMPLETED
+    })
+    public static void schedule(Context context) {
+        if (DEBUG) Log.d(TAG, "Scheduling PirateWeather nowcast");
+        WeatherScheduler.register(context, PirateNowcastService.class, null, FREQUENCY_NOWCAST, FLEX_NOWCAST);
+        getSharedPreferences(context).edit().putBoolean(BUNDLE_SCHEDULED, true).apply();
+    }
+
+    public static void cancel(Context context) {
+        WeatherScheduler.unregister(context, PirateNowcastService.class);
+        getSharedPreferences(context).edit().putBoolean(BUNDLE_SCHEDULED, false).apply();
+    }
+
+    public static boolean isScheduled(Context context) {
+        return getSharedPreferences(context).getBoolean(BUNDLE_SCHEDULED, false);
+    }
+
+    /**
+     * Returns the nowcast for the current minute, from the last data we fetched. This doesn't
+     * touch the network, and after the first call, doesn't touch the disk either.
+     */
+    @NonNull
+    public static Nowcast getNowcast(Context context) {
+        return getBuffer(context).getNowcast(System.currentTimeMillis());
+    }
+
+    private static synchronized NowcastBuffer getBuffer(Context context) {
+        if (sBuffer == null) {
+            sBuffer = FileUtils.restore(getFile(context), new NowcastBuffer());
+        }
+        return sBuffer;
+    }
+
+    private static synchronized void write(Context context, NowcastBuffer buffer) {
+        FileUtils.save(getFile(context), buffer);
+    }
+
+    private static File getFile(Context context) {
+        File directory = new File(context.getFilesDir(), NOWCAST_DIRECTORY);
+        return new File(directory, TAG + NOWCAST_EXTENSION);
+    }
+
+    private static SharedPreferences getSharedPreferences(Context context) {
+        return context.getSharedPreferences(PirateNowcastService.class.getSimpleName(), Context.MODE_PRIVATE);
+    }
+
+    @Override
+    protected String getApiKey() {
+        return PirateWeatherService.getApiKey(getContext());
+    }
+
+    @Override
+    protected boolean isScheduled() {
+        return isScheduled(getContext());
+    }
+
+    @RequiresPermission(allOf = {
+            Manifest.permission.ACCESS_FINE_LOCATION,
+            Manifest.permission.ACCESS_COARSE_LOCATION,
+            Manifest.permission.INTERNET,
+            Manifest.permission.RECEIVE_BOOT_COMPLETED
+    })
+    @Override
+    protected void schedule(String apiKey) {
+        schedule(getContext());
+    }
+
+    @Override
+    protected void cancel() {
+        cancel(getContext());
+    }
+
+    @Override
+    protected String createUrl(Location location) {
+        mLocation = location;
+        return super.createUrl(location);
+    }
+
+    @Override
+    protected String createUrl(double latitude, double longitude) {
+        return new Builder()
+                    .url(String.format(URL_NOWCAST, getApiKey(), latitude, longitude).replaceAll(" ", "%20"))
+                    .build();
+    }
+
+    @Override
+    protected void parse(HttpTransport.Response response) throws IOException, JSONException {
+        parse(new InputStreamReader(response.getBody(), "UTF-8"));
+    }
+
+    @Override
+    protected void parse(String json) throws JSONException {
+        parse(new StringReader(json));
+    }
+
+    private void parse(Reader json) throws JSONException {
+        NowcastBuffer buffer = getBuffer(getContext());
+        if (mLocation != null) {
+            // Minutes we have for somewhere else would be wrong here, so they're dropped.
+            buffer.setLocation(Geohash.encode(mLocation.getLatitude(), mLocation.getLongitude(), NOWCAST_GEOHASH_PRECISION));
+        }
+        Nowcast previous = buffer.getNowcast(System.currentTimeMillis());
+        try {
+            if (new PirateNowcastParser().parse(json, buffer) == 0) {
+                throw new JSONException("No minutely data found");
+            }
+        } catch (IOException e) {
+            if (DEBUG) Log.e(TAG, "Failed to parse data", e);
+            throw new JSONException("Failed to parse data");
+        }
+        write(getContext(), buffer);
+
+        // Only wake up receivers if something they'd show has changed.
+        Nowcast current = buffer.getNowcast(System.currentTimeMillis());
+        if (!current.equals(previous)) {
+            broadcast(ACTION_DATA_CHANGED);
+        }
+    }
+}
@@ -5,9 +5,14 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.IntentFilter;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.RequiresPermission;
 import androidx.core.content.ContextCompat;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.xlythe.service.weather.core.Nowcast;
+import com.xlythe.service.weather.core.WeatherSnapshot;
+
 public class PirateWeatherProvider extends WeatherProvider {
     private final String mApiKey;
 
@@ -52,6 +57,50 @@ public class PirateWeatherProvider extends WeatherProvider {
         return new PirateWeather(getContext());
     }
 
+    @Override
+    protected Class<? extends WeatherService> getServiceClass() {
+        return PirateWeatherService.class;
+    }
+
+    @NonNull
+    @RequiresPermission(Manifest.permission.INTERNET)
+    @Override
+    public ListenableFuture<WeatherSnapshot> getWeatherAt(double latitude, double longitude) {
+        return LocationBasedService.fetch(getContext(), PirateWeatherService.class, latitude, longitude);
+    }
+
+    /**
+     * Also refreshes minute by minute precipitation, every 15 minutes. See {@link PirateNowcastService}.
+     */
+    @RequiresPermission(allOf = {
+            Manifest.permission.ACCESS_FINE_LOCATION,
+            Manifest.permission.ACCESS_COARSE_LOCATION,
+            Manifest.permission.INTERNET,
+            Manifest.permission.RECEIVE_BOOT_COMPLETED
+    })
+    public void scheduleNowcast() {
+        PirateNowcastService.schedule(getContext());
+    }
+
+    public void cancelNowcast() {
+        PirateNowcastService.cancel(getContext());
+    }
+
+    /**
+     * Returns whether (and for how long) it'll rain over the next hour, from the last nowcast
+     * fetched. This is cheap enough to call whenever it's needed.
+     */
+    @NonNull
+    public Nowcast getNowcast() {
+        return PirateNowcastService.getNowcast(getContext());
+    }
+
+    @Override
+    protected Class<? extends Weather> getWeatherClass() {
+        return PirateWeather.class;
+    }
+
+    @Deprecated
     @Override
     public void registerReceiver(BroadcastReceiver broadcastReceiver) {
         ContextCompat.registerReceiver(getContext(), broadcastReceiver, new IntentFilter(PirateWeatherService.ACTION_DATA_CHANGED), ContextCompat.RECEIVER_NOT_EXPORTED);
@@ -9,17 +9,23 @@ import android.util.Log;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresPermission;
-import androidx.work.Constraints;
-import androidx.work.Data;
-import androidx.work.ExistingPeriodicWorkPolicy;
-import androidx.work.NetworkType;
-import androidx.work.PeriodicWorkRequest;
-import androidx.work.WorkManager;
 import androidx.work.WorkerParameters;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.xlythe.service.weather.core.Alert;
+import com.xlythe.service.weather.core.PirateWeatherParser;
+import com.xlythe.service.weather.core.WeatherParser;
+
 import org.json.JSONException;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.List;
+import java.util.TimeZone;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Query open weather map for current weather conditions
@@ -28,6 +34,7 @@ public class PirateWeatherService extends LocationBasedService {
     private static final String TAG = PirateWeatherService.class.getSimpleName();
 
     public static final String ACTION_DATA_CHANGED = "com.xlythe.service.weather.PIRATE_WEATHER_DATA_CHANGED";
+    public static final String ACTION_ALERTS_CHANGED = "com.xlythe.service.weather.PIRATE_WEATHER_ALERTS_CHANGED";
 
     private static final String TAG_WEATHER = PirateWeatherService.class.getSimpleName() + "_weather";
     private static final int FREQUENCY_WEATHER = 2 * 60 * 60; // 2hrs in seconds
@@ -39,7 +46,7 @@ public class PirateWeatherService extends LocationBasedService {
     private static final String BUNDLE_TAG = "tag";
     private static final String BUNDLE_FREQUENCY = "frequency";
 
-    private static final String URL_WEATHER = "https://api.pirateweather.net/forecast/%s/%s %s?units=si&exclude=minutely,hourly,alerts"; // apiKey, latitude, longitude
+    private static final String URL_WEATHER = "https://api.pirateweather.net/forecast/%s/%s %s?units=si&exclude=minutely"; // apiKey, latitude, longitude
 
     public PirateWeatherService(@NonNull Context appContext, @NonNull WorkerParameters params) {
         super(appContext, params);
@@ -64,21 +71,7 @@ public class PirateWeatherService extends LocationBasedService {
         if (DEBUG) Log.d(TAG, "Scheduling PirateWeather api");
         getSharedPreferences(context).edit().putString(BUNDLE_API_KEY, apiKey).apply();
 
-        Constraints constraints = new Constraints.Builder()
-                .setRequiredNetworkType(NetworkType.CONNECTED)
-                .build();
-
-        WorkManager.getInstance(context)
-                .enqueueUniquePeriodicWork(
-                        TAG_WEATHER,
-                        ExistingPeriodicWorkPolicy.UPDATE,
-                        new PeriodicWorkRequest.Builder(PirateWeatherService.class, getFrequency(context), TimeUnit.SECONDS)
-                                .setConstraints(constraints)
-                                .setInputData(new Data.Builder()
-                                        .putString(BUNDLE_TAG, TAG_WEATHER)
-                                        .build())
-                                .addTag(TAG_WEATHER)
-                                .build());
+        WeatherScheduler.register(context, PirateWeatherService.class, PirateWeather.class, TimeUnit.SECONDS.toMillis(getFrequency(context)), TimeUnit.SECONDS.toMillis(FLEX_WEATHER));
 
         getSharedPreferences(context).edit()
                 .putBoolean(BUNDLE_SCHEDULED, true)
@@ -87,7 +80,7 @@ public class PirateWeatherService extends LocationBasedService {
     }
 
     public static void cancel(Context context) {
-        WorkManager.getInstance(context).cancelUniqueWork(TAG_WEATHER);
+        WeatherScheduler.unregister(context, PirateWeatherService.class);
         getSharedPreferences(context).edit().putBoolean(BUNDLE_SCHEDULED, false).apply();
     }
 
@@ -113,7 +106,8 @@ public class PirateWeatherService extends LocationBasedService {
     private static boolean hasRunRecently(Context context) {
         Weather weather = new PirateWeather();
         weather.restore(context);
-        return weather.getLastUpdate() > System.currentTimeMillis() - getFrequency(context) + FLEX_WEATHER;
+        long interval = WeatherScheduler.getInterval(context, PirateWeatherService.class, TimeUnit.SECONDS.toMillis(getFrequency(context)));
+        return weather.getLastUpdate() > System.currentTimeMillis() - interval + TimeUnit.SECONDS.toMillis(FLEX_WEATHER);
     }
 
     private static SharedPreferences getSharedPreferences(Context context) {
@@ -146,19 +140,20 @@ public class PirateWeatherService extends LocationBasedService {
         cancel(getContext());
     }
 
+    @NonNull
     @Override
-    public Result onRunTask(@Nullable Bundle extras) {
+    protected ListenableFuture<Result> onStartTask(@Nullable Bundle extras) {
         // Extras are null when running manually.
         if (extras == null) {
             Bundle weatherMetadata = new Bundle();
             weatherMetadata.putString(BUNDLE_TAG, TAG_WEATHER);
-            return super.onRunTask(weatherMetadata);
+            return super.onStartTask(weatherMetadata);
         } else if (TAG_WEATHER.equals(extras.getString(BUNDLE_TAG))
                 && hasRunRecently(getContext())) {
-            return Result.SUCCESS;
+            return FutureUtils.immediateFuture(Result.SUCCESS);
         }
 
-        return super.onRunTask(extras);
+        return super.onStartTask(extras);
     }
 
     @Override
@@ -168,14 +163,40 @@ public class PirateWeatherService extends LocationBasedService {
                     .build();
     }
 
+    @Override
+    protected WeatherParser getParser() {
+        return new PirateWeatherParser();
+    }
+
+    @Override
+    protected Class<? extends Weather> getWeatherClass() {
+        return PirateWeather.class;
+    }
+
+    @Override
+    protected void parse(HttpTransport.Response response) throws IOException, JSONException {
+        parse(new InputStreamReader(response.getBody(), "UTF-8"));
+    }
+
     @Override
     protected void parse(String json) throws JSONException {
+        parse(new StringReader(json));
+    }
+
+    private void parse(Reader json) throws JSONException {
         PirateWeather weather = new PirateWeather();
         weather.restore(getContext());
-        if (!weather.fetch(getContext(), json)) {
+        AtomicReference<List<Alert>> alerts = new AtomicReference<>();
+        PirateWeatherParser parser = new PirateWeatherParser(TimeZone.getDefault(), alerts::set);
+        if (!weather.parse(parser, json)) {
             throw new JSONException("Failed to parse data");
         }
-        weather.save(getContext());
-        broadcast(ACTION_DATA_CHANGED);
+        if (weather.saveIfChanged(getContext())) {
+            broadcast(ACTION_DATA_CHANGED);
+        }
+
+        if (alerts.get() != null && AlertCache.getInstance(getContext()).update(PirateWeather.class, alerts.get())) {
+            broadcast(ACTION_ALERTS_CHANGED);
+        }
     }
 }
@@ -0,0 +1,142 @@
+package com.xlythe.service.weather;
+
+import android.content.Context;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.xlythe.service.weather.core.Geohash;
+import com.xlythe.service.weather.core.GeohashCache;
+import com.xlythe.service.weather.core.WeatherSnapshot;
+
+import java.io.File;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A process-wide cache of the weather at places other than (and including) wherever the user
+ * happens to be. Each {@link LocationBasedService} has its own cache, persisted so that it
+ * survives process restarts.
+ * <p>
+ * Coordinates are rounded to a grid cell (see {@link #setPrecision(int)}), so places that are
+ * close together share a single entry, and a single request. Entries are reused until they're
+ * older than {@link #setMaxAge(long)}, and only the most recently used {@link #setMaxEntries(int)}
+ * cells are kept.
+ */
+public class PlaceCache {
+    private static final int DEFAULT_PRECISION = 5; // Roughly 5km
+    private static final long DEFAULT_MAX_AGE_IN_MILLIS = TimeUnit.HOURS.toMillis(2);
+    private static final int DEFAULT_MAX_ENTRIES = 16;
+
+    private static final String DIRECTORY = "weather/places";
+    private static final String EXTENSION = ".cache";
+
+    @Nullable private static PlaceCache sInstance;
+
+    private final Context mContext;
+    private final Map<Class<?>, GeohashCache> mCaches = new HashMap<>();
+
+    private int mPrecision = DEFAULT_PRECISION;
+    private long mMaxAgeInMillis = DEFAULT_MAX_AGE_IN_MILLIS;
+    private int mMaxEntries = DEFAULT_MAX_ENTRIES;
+
+    public static synchronized PlaceCache getInstance(Context context) {
+        if (sInstance == null) {
+            sInstance = new PlaceCache(context.getApplicationContext());
+        }
+        return sInstance;
+    }
+
+    private PlaceCache(Context context) {
+        mContext = context;
+    }
+
+    /**
+     * The number of geohash characters that coordinates are rounded to. Defaults to 5, which is a
+     * cell roughly 5km across. 6 is roughly 1km, and 4 is roughly 40km.
+     */
+    public synchronized void setPrecision(int precision) {
+        mPrecision = precision;
+        for (GeohashCache cache : mCaches.values()) {
+            cache.setPrecision(precision);
+        }
+    }
+
+    /**
+     * Weather older than this is never reused. Defaults to 2 hours.
+     */
+    public synchronized void setMaxAge(long maxAgeInMillis) {
+        mMaxAgeInMillis = maxAgeInMillis;
+        for (GeohashCache cache : mCaches.values()) {
+            cache.setMaxAge(maxAgeInMillis);
+        }
+    }
+
+    /**
+     * How many places each service remembers. Defaults to 16.
+     */
+    public synchronized void setMaxEntries(int maxEntries) {
+        mMaxEntries = maxEntries;
+        for (GeohashCache cache : mCaches.values()) {
+            cache.setMaxEntries(maxEntries);
+        }
+    }
+
+    /**
+     * Returns the cached weather near the given coordinates, or null if there isn't any or it's
+     * too old. The first lookup for a service reads its cache from disk.
+     */
+    @Nullable
+    @WorkerThread
+    public WeatherSnapshot get(Class<? extends LocationBasedService> clazz, double latitude, double longitude) {
+        return getCache(clazz).get(latitude, longitude);
+    }
+
+    @WorkerThread
+    public void put(Class<? extends LocationBasedService> clazz, double latitude, double longitude, @NonNull WeatherSnapshot snapshot) {
+        GeohashCache cache = getCache(clazz);
+        cache.put(latitude, longitude, snapshot);
+        synchronized (this) {
+            FileUtils.save(getFile(clazz), cache);
+        }
+    }
+
+    /**
+     * Forgets every cached place.
+     */
+    public synchronized void clear() {
+        for (GeohashCache cache : mCaches.values()) {
+            cache.clear();
+        }
+        File[] files = new File(mContext.getFilesDir(), DIRECTORY).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                FileUtils.delete(file);
+            }
+        }
+    }
+
+    /**
+     * Returns the geohash that the coordinates are rounded to. Unlike {@link #get}, this never
+     * touches the disk.
+     */
+    synchronized String getKey(double latitude, double longitude) {
+        return Geohash.encode(latitude, longitude, mPrecision);
+    }
+
+    private synchronized GeohashCache getCache(Class<?> clazz) {
+        GeohashCache cache = mCaches.get(clazz);
+        if (cache == null) {
+            cache = FileUtils.restore(getFile(clazz), new GeohashCache(mPrecision, mMaxAgeInMillis, mMaxEntries));
+            mCaches.put(clazz, cache);
+        }
+        return cache;
+    }
+
+    private File getFile(Class<?> clazz) {
+        File directory = new File(mContext.getFilesDir(), DIRECTORY);
+        return new File(directory, clazz.getSimpleName() + EXTENSION);
+    }
+}
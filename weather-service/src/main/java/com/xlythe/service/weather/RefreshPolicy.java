@@ -0,0 +1,130 @@
+package com.xlythe.service.weather;
+
+import android.app.ActivityManager;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.PowerManager;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.WorkerThread;
+
+import com.xlythe.service.weather.core.WeatherSnapshot;
+
+import java.util.Calendar;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decides how long to wait before refreshing a provider again.
+ * <p>
+ * The provider's frequency is the starting point. If the weather changed a lot since the last
+ * refresh, there are weather alerts in effect, or the app is in the foreground, we refresh sooner. If the weather has held steady for
+ * a few refreshes in a row, or it's night, or the battery is low, we refresh later.
+ */
+class RefreshPolicy {
+    // A change of this many degrees (or a change of condition) between refreshes means the
+    // weather is on the move.
+    private static final float VOLATILE_CELSIUS_DELTA = 2f;
+
+    // Each steady refresh in a row doubles the interval, up to this many times.
+    private static final int MAX_STABLE_DOUBLINGS = 2;
+
+    private static final float VOLATILE_FACTOR = 0.5f;
+    private static final float FOREGROUND_FACTOR = 0.25f;
+    private static final float NIGHT_FACTOR = 2f;
+    private static final float LOW_BATTERY_FACTOR = 2f;
+    private static final int LOW_BATTERY_PERCENT = 15;
+
+    private static final long MIN_INTERVAL_IN_MILLIS = TimeUnit.MINUTES.toMillis(15);
+    private static final long MAX_INTERVAL_IN_MILLIS = TimeUnit.HOURS.toMillis(24);
+
+    private RefreshPolicy() {}
+
+    /**
+     * Returns true if the weather changed enough between the two snapshots that it's likely to
+     * keep changing.
+     */
+    static boolean isVolatile(@Nullable WeatherSnapshot previous, @NonNull WeatherSnapshot current) {
+        if (previous == null || previous.getLastUpdate() == 0) {
+            // Nothing to compare against.
+            return false;
+        }
+        return Math.abs(current.getCelsius() - previous.getCelsius()) >= VOLATILE_CELSIUS_DELTA
+                || current.getCondition() != previous.getCondition();
+    }
+
+    /**
+     * Returns true if there are weather alerts in effect for the provider's weather. Weather bad
+     * enough to warn about tends to change quickly, so it's treated like volatile weather.
+     */
+    @WorkerThread
+    static boolean hasActiveAlerts(Context context, @Nullable Class<? extends Weather> weatherClass) {
+        return weatherClass != null && !AlertCache.getInstance(context).getAlerts(weatherClass).isEmpty();
+    }
+
+    /**
+     * Returns how long to wait before refreshing again.
+     *
+     * @param frequencyInMillis The provider's usual frequency.
+     * @param current The weather as of the latest refresh, if known.
+     * @param stableRuns How many refreshes in a row the weather has held steady, or -1 if it just
+     *                   changed.
+     */
+    static long getInterval(Context context, long frequencyInMillis, @Nullable WeatherSnapshot current, int stableRuns) {
+        float factor = 1f;
+
+        if (stableRuns < 0) {
+            factor *= VOLATILE_FACTOR;
+        } else {
+            factor *= 1 << Math.min(stableRuns, MAX_STABLE_DOUBLINGS);
+        }
+
+        if (current != null && current.getLastUpdate() != 0 && current.isNight(getMinuteOfDay())) {
+            factor *= NIGHT_FACTOR;
+        }
+
+        if (isBatteryLow(context)) {
+            factor *= LOW_BATTERY_FACTOR;
+        }
+
+        // Someone's looking at the app. Whatever else is going on, keep the data fresh.
+        if (isInForeground()) {
+            factor = Math.min(factor, 1f) * FOREGROUND_FACTOR;
+        }
+
+        long interval = (long) (frequencyInMillis * factor);
+        return Math.max(MIN_INTERVAL_IN_MILLIS, Math.min(MAX_INTERVAL_IN_MILLIS, interval));
+    }
+
+    private static int getMinuteOfDay() {
+        Calendar calendar = Calendar.getInstance();
+        return calendar.get(Calendar.HOUR_OF_DAY) * 60 + calendar.get(Calendar.MINUTE);
+    }
+
+    private static boolean isBatteryLow(Context context) {
+        PowerManager powerManager = (PowerManager) context.getSystemService(Context.POWER_SERVICE);
+        if (powerManager != null && powerManager.isPowerSaveMode()) {
+            return true;
+        }
+
+        // A sticky broadcast, so this returns right away without registering anything.
+        Intent battery = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        if (battery == null) {
+            return false;
+        }
+        if (battery.getIntExtra(BatteryManager.EXTRA_PLUGGED, 0) != 0) {
+            return false;
+        }
+        int level = battery.getIntExtra(BatteryManager.EXTRA_LEVEL, -1);
+        int scale = battery.getIntExtra(BatteryManager.EXTRA_SCALE, -1);
+        return level >= 0 && scale > 0 && level * 100 / scale <= LOW_BATTERY_PERCENT;
+    }
+
+    private static boolean isInForeground() {
+        ActivityManager.RunningAppProcessInfo info = new ActivityManager.RunningAppProcessInfo();
+        ActivityManager.getMyMemoryState(info);
+        return info.importance <= ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND;
+    }
+}
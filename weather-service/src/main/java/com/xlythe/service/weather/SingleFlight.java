@@ -0,0 +1,56 @@
+package com.xlythe.service.weather;
+
+import android.annotation.SuppressLint;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.work.impl.utils.futures.SettableFuture;
+
+import com.google.common.util.concurrent.ListenableFuture;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+
+/**
+ * Makes sure that only one call per key is in flight at a time. Anyone who asks for a key that's
+ * already running is handed the same future, and gets the same result, instead of starting a
+ * second call.
+ */
+@SuppressLint("RestrictedApi")
+class SingleFlight<K, V> {
+    private static final String TAG = SingleFlight.class.getSimpleName();
+
+    private final Map<K, ListenableFuture<V>> mInFlight = new HashMap<>();
+
+    /**
+     * Starts the call for the given key, or joins the one that's already running.
+     */
+    @NonNull
+    ListenableFuture<V> run(@NonNull K key, @NonNull Callable<ListenableFuture<V>> call) {
+        SettableFuture<V> future;
+        synchronized (mInFlight) {
+            ListenableFuture<V> inFlight = mInFlight.get(key);
+            if (inFlight != null) {
+                if (Weather.DEBUG) Log.d(TAG, "Joining the in-flight call for " + key);
+                return inFlight;
+            }
+            future = SettableFuture.create();
+            mInFlight.put(key, future);
+        }
+        future.addListener(() -> {
+            synchronized (mInFlight) {
+                if (mInFlight.get(key) == future) {
+                    mInFlight.remove(key);
+                }
+            }
+        }, FutureUtils.DIRECT_EXECUTOR);
+
+        try {
+            future.setFuture(call.call());
+        } catch (Throwable t) {
+            future.setException(t);
+        }
+        return future;
+    }
+}
@@ -0,0 +1,33 @@
+package com.xlythe.service.weather;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+
+import com.xlythe.service.weather.core.WeatherSnapshot;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A process-wide copy of the last snapshot saved (or restored) by each kind of {@link Weather}.
+ * Once a provider's snapshot has been loaded, every {@link Weather#restore} is a lock-free read
+ * from here instead of a trip to disk.
+ * <p>
+ * Entries are only written while holding the lock that guards that provider's snapshot file, so
+ * the cache never goes back in time. Note that this assumes the weather is only saved from one
+ * process.
+ */
+class SnapshotCache {
+    private static final Map<Class<? extends Weather>, WeatherSnapshot> sSnapshots = new ConcurrentHashMap<>();
+
+    private SnapshotCache() {}
+
+    @Nullable
+    static WeatherSnapshot get(@NonNull Class<? extends Weather> weatherClass) {
+        return sSnapshots.get(weatherClass);
+    }
+
+    static void put(@NonNull Class<? extends Weather> weatherClass, @NonNull WeatherSnapshot snapshot) {
+        sSnapshots.put(weatherClass, snapshot);
+    }
+}
@@ -17,17 +17,22 @@ public class UpdateReceiver extends BroadcastReceiver {
     @SuppressWarnings("MissingPermission")
     @Override
     public void onReceive(Context context, Intent intent) {
-        if (OpenWeatherService.isScheduled(context)) {
-            Log.v(TAG, "Rescheduling OpenWeatherService");
+        // Services scheduled by older versions each had their own job. Move them over to the
+        // shared one.
+        if (OpenWeatherService.isScheduled(context) && !WeatherScheduler.isRegistered(context, OpenWeatherService.class)) {
+            Log.v(TAG, "Migrating OpenWeatherService");
             OpenWeatherService.schedule(context, OpenWeatherService.getApiKey(context));
         }
-        if (WeatherUndergroundService.isScheduled(context)) {
-            Log.v(TAG, "Rescheduling WeatherUndergroundService");
+        if (WeatherUndergroundService.isScheduled(context) && !WeatherScheduler.isRegistered(context, WeatherUndergroundService.class)) {
+            Log.v(TAG, "Migrating WeatherUndergroundService");
             WeatherUndergroundService.schedule(context, WeatherUndergroundService.getApiKey(context));
         }
-        if (PirateWeatherService.isScheduled(context)) {
-            Log.v(TAG, "Rescheduling PirateWeatherService");
+        if (PirateWeatherService.isScheduled(context) && !WeatherScheduler.isRegistered(context, PirateWeatherService.class)) {
+            Log.v(TAG, "Migrating PirateWeatherService");
             PirateWeatherService.schedule(context, PirateWeatherService.getApiKey(context));
         }
+
+        Log.v(TAG, "Rescheduling WeatherScheduler");
+        WeatherScheduler.reschedule(context);
     }
 }
@@ -0,0 +1,100 @@
+package com.xlythe.service.weather;
+
+import androidx.annotation.NonNull;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * An {@link HttpTransport} backed by {@link HttpURLConnection}.
+ * <p>
+ * Connections are never explicitly disconnected. Instead, closing the response closes the body,
+ * which hands the connection back to the platform's keep-alive pool so that the next request to
+ * the same host can skip the TCP and TLS handshakes. Bodies are requested gzipped and are
+ * decompressed as they're streamed.
+ */
+public class UrlConnectionTransport implements HttpTransport {
+    private static final int DEFAULT_TIMEOUT_IN_MILLIS = 10 * 1000;
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private final int mConnectTimeoutInMillis;
+    private final int mReadTimeoutInMillis;
+
+    public UrlConnectionTransport() {
+        this(DEFAULT_TIMEOUT_IN_MILLIS, DEFAULT_TIMEOUT_IN_MILLIS);
+    }
+
+    public UrlConnectionTransport(int connectTimeoutInMillis, int readTimeoutInMillis) {
+        mConnectTimeoutInMillis = connectTimeoutInMillis;
+        mReadTimeoutInMillis = readTimeoutInMillis;
+    }
+
+    @NonNull
+    @Override
+    public Response execute(@NonNull Request request) throws IOException {
+        HttpURLConnection c = (HttpURLConnection) new URL(request.getUrl()).openConnection();
+        // Disconnecting from another thread aborts whatever blocking call we're stuck in.
+        request.setOnCancelListener(c::disconnect);
+        try {
+            c.setRequestMethod("GET");
+            c.setUseCaches(false);
+            c.setAllowUserInteraction(false);
+            c.setConnectTimeout(mConnectTimeoutInMillis);
+            c.setReadTimeout(mReadTimeoutInMillis);
+            // Setting Accept-Encoding ourselves means we're also responsible for decompression.
+            c.setRequestProperty("Accept-Encoding", "gzip");
+            c.setRequestProperty("Connection", "keep-alive");
+            for (Map.Entry<String, String> header : request.getHeaders().entrySet()) {
+                c.setRequestProperty(header.getKey(), header.getValue());
+            }
+
+            int status = c.getResponseCode();
+            if (request.isCancelled()) {
+                throw new InterruptedIOException("Cancelled " + request);
+            }
+            Map<String, String> headers = getHeaders(c);
+
+            InputStream body = status >= 400 ? c.getErrorStream() : c.getInputStream();
+            if (body == null) {
+                body = new ByteArrayInputStream(new byte[0]);
+            }
+
+            long contentLength = c.getContentLength();
+            if ("gzip".equalsIgnoreCase(headers.get("content-encoding"))) {
+                body = new GZIPInputStream(body, BUFFER_SIZE);
+                // Content-Length refers to the compressed size.
+                contentLength = -1;
+            } else {
+                body = new BufferedInputStream(body, BUFFER_SIZE);
+            }
+
+            return new Response(status, headers, contentLength, body, null);
+        } catch (IOException | RuntimeException e) {
+            // We never got as far as handing the body off, so the connection can't be reused.
+            c.disconnect();
+            throw e;
+        }
+    }
+
+    private static Map<String, String> getHeaders(HttpURLConnection c) {
+        Map<String, String> headers = new HashMap<>();
+        for (Map.Entry<String, List<String>> header : c.getHeaderFields().entrySet()) {
+            // The status line is returned with a null key.
+            if (header.getKey() == null || header.getValue().isEmpty()) {
+                continue;
+            }
+            headers.put(header.getKey().toLowerCase(Locale.US), header.getValue().get(0));
+        }
+        return headers;
+    }
+}
@@ -1,38 +1,58 @@
 package com.xlythe.service.weather;
 
-import android.content.BroadcastReceiver;
 import android.content.Context;
-import android.content.Intent;
-import android.content.IntentFilter;
 import android.content.SharedPreferences;
 import android.os.Parcel;
 import android.os.Parcelable;
-
-import java.lang.ref.WeakReference;
+import android.util.Log;
+
+import com.xlythe.service.weather.core.Forecast;
+import com.xlythe.service.weather.core.SunCycle;
+import com.xlythe.service.weather.core.WeatherField;
+import com.xlythe.service.weather.core.WeatherParser;
+import com.xlythe.service.weather.core.WeatherSnapshot;
+import com.xlythe.service.weather.core.WeatherSnapshotCodec;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.WorkerThread;
-import androidx.core.content.ContextCompat;
 
 public abstract class Weather implements ParcelableUtils.RestorableParcelable {
     static final boolean DEBUG = false;
 
+    // Where state was persisted before it moved to its own file. Only read when migrating.
     private static final String BUNDLE_STATE = "state:";
-
-    private static final Condition DEFAULT_CONDITION = Condition.SUNNY;
-    private static final MoonPhase DEFAULT_MOON_PHASE = MoonPhase.FULL_MOON;
-    private static final Time DEFAULT_SUNRISE = new Time(6, 0);
-    private static final Time DEFAULT_SUNSET = new Time(18, 0);
-    private static final int DEFAULT_TEMP_C = 20;
-    private static final int DEFAULT_WIND_KPH = 0;
-
-    @Nullable private static Calendar CALENDAR;
-
+    private static final String BUNDLE_LAST_UPDATE = "last_update";
+    private static final String SNAPSHOT_DIRECTORY = "weather";
+    private static final String SNAPSHOT_EXTENSION = ".snapshot";
+
+    // Starts every parcel written in the packed format. Older versions started with the
+    // temperature, and this is a NaN that no parse would ever produce.
+    private static final int PARCEL_MAGIC = 0x7FC05744;
+
+    // Daylight savings only ever starts or ends on a quarter hour, so the time zone's offset is
+    // looked up again at most once every 15 minutes (or if the user changes time zones, within 15
+    // minutes of them doing so).
+    private static final long ZONE_OFFSET_LIFETIME_IN_MILLIS = TimeUnit.MINUTES.toMillis(15);
+    private static final long MINUTE_IN_MILLIS = TimeUnit.MINUTES.toMillis(1);
+    private static int sZoneOffset;
+    private static long sZoneOffsetStart;
+    private static long sZoneOffsetEnd;
+
+    // These mirror the enums in the core module, and must be kept in the same order.
     public enum Condition {
         SNOW, RAIN, CLOUDY, SUNNY;
     }
@@ -42,6 +62,19 @@ public abstract class Weather implements ParcelableUtils.RestorableParcelable {
         FULL_MOON, WANING_GIBBOUS, THIRD_QUARTER, WANING_CRESCENT;
     }
 
+    private static final Condition[] CONDITIONS = Condition.values();
+    private static final MoonPhase[] MOON_PHASES = MoonPhase.values();
+    private static final com.xlythe.service.weather.core.Condition[] CORE_CONDITIONS = com.xlythe.service.weather.core.Condition.values();
+    private static final com.xlythe.service.weather.core.MoonPhase[] CORE_MOON_PHASES = com.xlythe.service.weather.core.MoonPhase.values();
+
+    // Guards each kind of Weather's snapshot file (and its entry in SnapshotCache). One lock per
+    // class, so that providers don't wait on each other's disk.
+    private static final ConcurrentHashMap<Class<? extends Weather>, Object> sLocks = new ConcurrentHashMap<>();
+
+    // Every time of day, created as they're first needed. Times are immutable, so it's harmless if
+    // two threads race to create the same one.
+    private static final Time[] TIMES = new Time[SunCycle.MINUTES_PER_DAY];
+
     public static class Time implements Parcelable {
         public static final Parcelable.Creator<Time> CREATOR = new Parcelable.Creator<Time>() {
             public Time createFromParcel(Parcel in) {
@@ -98,7 +131,7 @@ public abstract class Weather implements ParcelableUtils.RestorableParcelable {
 
         @Override
         public int hashCode() {
-            return hour + minute;
+            return hour * SunCycle.MINUTES_PER_HOUR + minute;
         }
 
         @Override
@@ -133,71 +166,185 @@ public abstract class Weather implements ParcelableUtils.RestorableParcelable {
         sFakeTime = timeInMillis;
     }
 
-    private float tempC = DEFAULT_TEMP_C;
-    private Condition condition = DEFAULT_CONDITION;
-    private MoonPhase moonPhase = DEFAULT_MOON_PHASE;
-    private Time sunrise = DEFAULT_SUNRISE;
-    private Time sunset = DEFAULT_SUNSET;
-    private int windKph = DEFAULT_WIND_KPH;
-    private long lastUpdate;
+    private volatile WeatherSnapshot snapshot = WeatherSnapshot.DEFAULT;
 
-    @Nullable
-    private WeatherReceiver weatherReceiver;
+    // True if this instance tracks whatever was last saved for its provider. Cleared the first
+    // time the instance is changed, so the change isn't replaced by the saved weather.
+    private volatile boolean live;
 
-    public Weather() {}
+    public Weather() {
+        live = false;
+    }
 
     protected Weather(Parcel in) {
+        live = false;
         readFromParcel(in);
     }
 
-    protected Weather(Context context, String action) {
-        weatherReceiver = new WeatherReceiver(context, action, this);
-        weatherReceiver.register();
+    /**
+     * Creates a Weather that always reflects the latest weather saved for this provider. Unlike
+     * the other constructors, it's kept up to date without needing to call {@link #restore}.
+     * <p>
+     * Changing it (with a setter, by parsing, or by reading a Parcel) stops it from following the
+     * saved weather, and it keeps its own copy from then on.
+     */
+    protected Weather(Context context) {
+        live = true;
         restore(context);
     }
 
-    @Override
-    protected void finalize() throws Throwable {
-        if (weatherReceiver != null) weatherReceiver.unregister();
-        super.finalize();
+    /**
+     * @deprecated Changes are no longer broadcast to Weather objects, so the action is ignored.
+     * Use {@link #Weather(Context)}.
+     */
+    @Deprecated
+    protected Weather(Context context, String action) {
+        this(context);
     }
 
     @Override
     public void readFromParcel(Parcel in) {
-        tempC = in.readFloat();
-        condition = (Condition) in.readSerializable();
-        moonPhase = (MoonPhase) in.readSerializable();
-        sunrise = in.readParcelable(Time.class.getClassLoader());
-        sunset = in.readParcelable(Time.class.getClassLoader());
-        windKph = in.readInt();
-        lastUpdate = in.readLong();
+        live = false;
+        int header = in.readInt();
+        if (header == PARCEL_MAGIC) {
+            readPackedParcel(in);
+        } else {
+            readLegacyParcel(in, Float.intBitsToFloat(header));
+        }
+    }
+
+    private void readPackedParcel(Parcel in) {
+        float tempC = in.readFloat();
+        int enums = in.readInt();
+        int sun = in.readInt();
+        int windKph = in.readInt();
+        long lastUpdate = in.readLong();
+
+        WeatherSnapshot.Builder builder = new WeatherSnapshot.Builder()
+                .celsius(tempC)
+                .sunrise((short) (sun >>> 16))
+                .sunset((short) sun)
+                .windKph(windKph)
+                .lastUpdate(lastUpdate);
+        // Values we don't know about were written by a newer version. Keep the defaults.
+        int condition = enums & 0xFF;
+        int moonPhase = (enums >>> 8) & 0xFF;
+        if (condition < CORE_CONDITIONS.length) builder.condition(CORE_CONDITIONS[condition]);
+        if (moonPhase < CORE_MOON_PHASES.length) builder.moonPhase(CORE_MOON_PHASES[moonPhase]);
+        readForecasts(in, builder);
+        snapshot = builder.build();
+    }
+
+    /**
+     * Reads weather parcelled by older versions, such as the state saved in SharedPreferences
+     * before it moved to its own file.
+     */
+    private void readLegacyParcel(Parcel in, float tempC) {
+        Condition condition = (Condition) in.readSerializable();
+        MoonPhase moonPhase = (MoonPhase) in.readSerializable();
+        Time sunrise = in.readParcelable(Time.class.getClassLoader());
+        Time sunset = in.readParcelable(Time.class.getClassLoader());
+        int windKph = in.readInt();
+        long lastUpdate = in.readLong();
+
+        WeatherSnapshot.Builder builder = new WeatherSnapshot.Builder()
+                .celsius(tempC)
+                .windKph(windKph)
+                .lastUpdate(lastUpdate);
+        if (condition != null) builder.condition(toCore(condition));
+        if (moonPhase != null) builder.moonPhase(toCore(moonPhase));
+        if (sunrise != null) builder.sunrise(sunrise.getHour(), sunrise.getMinute());
+        if (sunset != null) builder.sunset(sunset.getHour(), sunset.getMinute());
+        // Forecasts were added along with the packed format, so there's nothing more to read.
+        snapshot = builder.build();
+    }
+
+    private void readForecasts(Parcel in, WeatherSnapshot.Builder builder) {
+        // Checking for leftover data wouldn't work if we're nested in someone else's parcel, so
+        // whether forecasts follow is written out explicitly.
+        if (in.readInt() == 0) {
+            return;
+        }
+        byte[] forecasts = in.createByteArray();
+        if (forecasts != null) {
+            try {
+                WeatherSnapshot decoded = WeatherSnapshotCodec.decode(forecasts);
+                builder.hourly(decoded.getHourly()).daily(decoded.getDaily());
+            } catch (IOException e) {
+                Log.e(getClass().getSimpleName(), "Failed to read forecasts", e);
+            }
+        }
     }
 
     @Override
     public void writeToParcel(Parcel out, int flags) {
-        out.writeFloat(tempC);
-        out.writeSerializable(condition);
-        out.writeSerializable(moonPhase);
-        out.writeParcelable(sunrise, 0);
-        out.writeParcelable(sunset, 0);
-        out.writeInt(windKph);
-        out.writeLong(lastUpdate);
+        WeatherSnapshot snapshot = snapshot();
+        out.writeInt(PARCEL_MAGIC);
+        out.writeFloat(snapshot.getCelsius());
+        out.writeInt(snapshot.getCondition().ordinal() | snapshot.getMoonPhase().ordinal() << 8);
+        out.writeInt((snapshot.getSunrise() & 0xFFFF) << 16 | (snapshot.getSunset() & 0xFFFF));
+        out.writeInt(snapshot.getWindKph());
+        out.writeLong(snapshot.getLastUpdate());
+        boolean hasForecasts = !snapshot.getHourly().isEmpty() || !snapshot.getDaily().isEmpty();
+        out.writeInt(hasForecasts ? 1 : 0);
+        if (hasForecasts) {
+            out.writeByteArray(WeatherSnapshotCodec.encode(snapshot));
+        }
+    }
+
+    /**
+     * Returns an immutable copy of the current weather.
+     */
+    @NonNull
+    public WeatherSnapshot getSnapshot() {
+        return snapshot();
+    }
+
+    private WeatherSnapshot snapshot() {
+        if (live) {
+            WeatherSnapshot cached = SnapshotCache.get(getClass());
+            if (cached != null) {
+                snapshot = cached;
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Stops following the saved weather (see {@link #Weather(Context)}), and returns the weather
+     * as it is now, for the caller to change.
+     */
+    private WeatherSnapshot detach() {
+        WeatherSnapshot current = snapshot();
+        live = false;
+        return current;
+    }
+
+    /**
+     * Replaces the current weather. Like the other setters, this detaches a Weather created with
+     * {@link #Weather(Context)} from the saved weather, so later setters build on this one.
+     */
+    protected void setSnapshot(@NonNull WeatherSnapshot snapshot) {
+        live = false;
+        this.snapshot = snapshot;
     }
 
     protected void setCelsius(float celsius) {
-        tempC = celsius;
+        snapshot = detach().toBuilder().celsius(celsius).build();
     }
 
     public float getCelsius() {
-        return tempC;
+        return snapshot().getCelsius();
     }
 
     public float getFahrenheit() {
-        return (int) (9f / 5f * tempC + 32);
+        return snapshot().getFahrenheit();
     }
 
     protected void setCondition(Condition condition) {
-        this.condition = condition;
+        if (condition != null) {
+            snapshot = detach().toBuilder().condition(toCore(condition)).build();
+        }
     }
 
     @NonNull
@@ -205,26 +352,24 @@ public abstract class Weather implements ParcelableUtils.RestorableParcelable {
         if (sCondition != null) {
             return sCondition;
         }
-        if (condition == null) {
-            return DEFAULT_CONDITION;
-        }
-        return condition;
+        return fromCore(snapshot().getCondition());
     }
 
     protected void setMoonPhase(MoonPhase moonPhase) {
-        this.moonPhase = moonPhase;
+        if (moonPhase != null) {
+            snapshot = detach().toBuilder().moonPhase(toCore(moonPhase)).build();
+        }
     }
 
     @NonNull
     public MoonPhase getMoonPhase() {
-        if (moonPhase == null) {
-            return DEFAULT_MOON_PHASE;
-        }
-        return moonPhase;
+        return fromCore(snapshot().getMoonPhase());
     }
 
     protected void setSunrise(Time sunrise) {
-        this.sunrise = sunrise;
+        if (sunrise != null) {
+            snapshot = detach().toBuilder().sunrise(sunrise.getHour(), sunrise.getMinute()).build();
+        }
     }
 
     @NonNull
@@ -232,14 +377,13 @@ public abstract class Weather implements ParcelableUtils.RestorableParcelable {
         if (sSunrise != null) {
             return sSunrise;
         }
-        if (sunrise == null) {
-            return DEFAULT_SUNRISE;
-        }
-        return sunrise;
+        return toTime(snapshot().getSunrise());
     }
 
     protected void setSunset(Time sunset) {
-        this.sunset = sunset;
+        if (sunset != null) {
+            snapshot = detach().toBuilder().sunset(sunset.getHour(), sunset.getMinute()).build();
+        }
     }
 
     @NonNull
@@ -247,45 +391,195 @@ public abstract class Weather implements ParcelableUtils.RestorableParcelable {
         if (sSunset != null) {
             return sSunset;
         }
-        if (sunset == null) {
-            return DEFAULT_SUNSET;
-        }
-        return sunset;
+        return toTime(snapshot().getSunset());
     }
 
     protected void setWindKph(int windKph) {
-        this.windKph = windKph;
+        snapshot = detach().toBuilder().windKph(windKph).build();
     }
 
     public int getWindKph() {
-        return windKph;
+        return snapshot().getWindKph();
     }
 
     public int getWindMph() {
-        return (int) (windKph * 0.6214f);
+        return snapshot().getWindMph();
     }
 
     public long getLastUpdate() {
-        return lastUpdate;
+        return snapshot().getLastUpdate();
+    }
+
+    /**
+     * Returns the forecast for the coming hours. Empty if the provider doesn't have one.
+     */
+    @NonNull
+    public Forecast getHourly() {
+        return snapshot().getHourly();
+    }
+
+    /**
+     * Returns the forecast for the coming days. Empty if the provider doesn't have one.
+     */
+    @NonNull
+    public Forecast getDaily() {
+        return snapshot().getDaily();
     }
 
     private SharedPreferences getSharedPreferences(Context context) {
         return context.getSharedPreferences(getClass().getSimpleName(), Context.MODE_PRIVATE);
     }
 
+    private Object getLock() {
+        Object lock = sLocks.get(getClass());
+        if (lock == null) {
+            lock = new Object();
+            Object existing = sLocks.putIfAbsent(getClass(), lock);
+            if (existing != null) {
+                lock = existing;
+            }
+        }
+        return lock;
+    }
+
+    private File getSnapshotFile(Context context) {
+        File directory = new File(context.getFilesDir(), SNAPSHOT_DIRECTORY);
+        return new File(directory, getClass().getSimpleName() + SNAPSHOT_EXTENSION);
+    }
+
     /**
      * Saves current state to disk, to be restored later with {@link #restore(Context)}
      */
     public void save(Context context) {
-        lastUpdate = System.currentTimeMillis();
-        getSharedPreferences(context).edit().putString(BUNDLE_STATE, ParcelableUtils.toString(this)).apply();
+        saveIfChanged(context);
+    }
+
+    /**
+     * Saves current state to disk, like {@link #save(Context)}. If nothing but the time has changed
+     * since the last save, only the time is saved, and listeners aren't told.
+     *
+     * @return true if the weather changed.
+     */
+    public boolean saveIfChanged(Context context) {
+        long now = System.currentTimeMillis();
+        synchronized (getLock()) {
+            WeatherSnapshot saved = SnapshotCache.get(getClass());
+            if (saved == null) {
+                // Nothing's been restored in this process yet (eg. a snapshot built from scratch).
+                try {
+                    saved = read(context);
+                    SnapshotCache.put(getClass(), saved);
+                } catch (IOException e) {
+                    // Nothing to compare against, so it's all new.
+                }
+            }
+            snapshot = snapshot().toBuilder().lastUpdate(now).build();
+            if (saved != null && saved.getLastUpdate() != 0 && WeatherField.diff(saved, snapshot).isEmpty()) {
+                if (DEBUG) Log.d(getClass().getSimpleName(), "Weather is unchanged. Only updating the time.");
+                touch(context, now);
+                return false;
+            }
+            write(context, snapshot);
+        }
+        WeatherNotifier.notifyChanged(getClass(), snapshot);
+        return true;
+    }
+
+    /**
+     * Marks the saved weather as up to date, without changing it. Used when the provider confirms
+     * nothing has changed since the last refresh.
+     */
+    public void touch(Context context) {
+        restore(context);
+        synchronized (getLock()) {
+            touch(context, System.currentTimeMillis());
+        }
+    }
+
+    private void touch(Context context, long timeInMillis) {
+        WeatherSnapshot saved = SnapshotCache.get(getClass());
+        if (saved == null || saved.getLastUpdate() == 0) {
+            // There's nothing saved to vouch for.
+            return;
+        }
+        snapshot = saved.toBuilder().lastUpdate(timeInMillis).build();
+        SnapshotCache.put(getClass(), snapshot);
+        // A single long, instead of rewriting the whole snapshot.
+        getSharedPreferences(context).edit().putLong(BUNDLE_LAST_UPDATE, timeInMillis).apply();
     }
 
     /**
      * Restores states that was previously saved in {@link #save(Context)}
      */
     public void restore(Context context) {
-        ParcelableUtils.fromString(getSharedPreferences(context).getString(BUNDLE_STATE, null), this);
+        WeatherSnapshot cached = SnapshotCache.get(getClass());
+        if (cached != null) {
+            snapshot = cached;
+            return;
+        }
+
+        synchronized (getLock()) {
+            // Someone else may have loaded it while we waited for the lock.
+            cached = SnapshotCache.get(getClass());
+            if (cached != null) {
+                snapshot = cached;
+                return;
+            }
+
+            try {
+                snapshot = read(context);
+            } catch (FileNotFoundException e) {
+                migrate(context);
+            } catch (IOException e) {
+                Log.e(getClass().getSimpleName(), "Failed to restore weather", e);
+            }
+            SnapshotCache.put(getClass(), snapshot);
+        }
+    }
+
+    /**
+     * Reads the saved snapshot from disk.
+     *
+     * @throws FileNotFoundException if nothing has been saved yet.
+     */
+    private WeatherSnapshot read(Context context) throws IOException {
+        WeatherSnapshot snapshot = WeatherSnapshotCodec.decode(FileUtils.read(getSnapshotFile(context)));
+        // The snapshot is only rewritten when the weather changes. Since then, it may have been
+        // confirmed as up to date.
+        long lastUpdate = getSharedPreferences(context).getLong(BUNDLE_LAST_UPDATE, 0);
+        if (lastUpdate > snapshot.getLastUpdate()) {
+            snapshot = snapshot.toBuilder().lastUpdate(lastUpdate).build();
+        }
+        return snapshot;
+    }
+
+    private void write(Context context, WeatherSnapshot snapshot) {
+        byte[] bytes = WeatherSnapshotCodec.encode(snapshot);
+        File file = getSnapshotFile(context);
+        synchronized (getLock()) {
+            SnapshotCache.put(getClass(), snapshot);
+            FileUtils.write(file, bytes);
+        }
+    }
+
+    /**
+     * Moves state saved by older versions, as a Parcel in SharedPreferences, into its own file.
+     */
+    private void migrate(Context context) {
+        SharedPreferences sharedPreferences = getSharedPreferences(context);
+        String data = sharedPreferences.getString(BUNDLE_STATE, null);
+        if (data == null) {
+            return;
+        }
+
+        if (DEBUG) Log.d(getClass().getSimpleName(), "Migrating saved weather to " + getSnapshotFile(context));
+        try {
+            ParcelableUtils.fromString(data, this);
+        } catch (RuntimeException e) {
+            Log.e(getClass().getSimpleName(), "Failed to migrate weather", e);
+        }
+        write(context, snapshot);
+        sharedPreferences.edit().remove(BUNDLE_STATE).apply();
     }
 
     /**
@@ -294,26 +588,44 @@ public abstract class Weather implements ParcelableUtils.RestorableParcelable {
     @WorkerThread
     protected abstract boolean fetch(Context context, Object... args);
 
-    private static synchronized void invalidateCalendar() {
-        CALENDAR = null;
+    /**
+     * Parses the first argument given to {@link #fetch(Context, Object...)}, which may either be
+     * the raw json or a Reader that streams it, on top of the current weather. Returns false if
+     * the input couldn't be parsed.
+     */
+    @WorkerThread
+    protected boolean parse(WeatherParser parser, Object input) {
+        Reader reader = input instanceof Reader ? (Reader) input : new StringReader((String) input);
+        try {
+            snapshot = parser.parse(reader, detach());
+        } catch (IOException e) {
+            Log.e(getClass().getSimpleName(), "Failed to parse json", e);
+            return false;
+        }
+        if (DEBUG) Log.d(getClass().getSimpleName(), "Weather set to " + this);
+        return true;
     }
 
-    private static synchronized Calendar getCurrentCalendar() {
-        if (CALENDAR == null) {
-            CALENDAR = Calendar.getInstance();
-        }
-        if (sFakeTime >= 0) {
-            CALENDAR.setTimeInMillis(sFakeTime);
+    /**
+     * Returns the current local time, in minutes since midnight, without allocating.
+     */
+    private static synchronized int getCurrentMinuteOfDay() {
+        long now = sFakeTime >= 0 ? sFakeTime : System.currentTimeMillis();
+        if (now < sZoneOffsetStart || now >= sZoneOffsetEnd) {
+            sZoneOffset = TimeZone.getDefault().getOffset(now);
+            sZoneOffsetStart = now - now % ZONE_OFFSET_LIFETIME_IN_MILLIS;
+            sZoneOffsetEnd = sZoneOffsetStart + ZONE_OFFSET_LIFETIME_IN_MILLIS;
         }
-        return CALENDAR;
+        int minuteOfDay = (int) (((now + sZoneOffset) / MINUTE_IN_MILLIS) % SunCycle.MINUTES_PER_DAY);
+        return minuteOfDay < 0 ? minuteOfDay + SunCycle.MINUTES_PER_DAY : minuteOfDay;
     }
 
     private int getCurrentMinute() {
-        return getCurrentCalendar().get(Calendar.MINUTE);
+        return getCurrentMinuteOfDay() % SunCycle.MINUTES_PER_HOUR;
     }
 
     private int getCurrentHour() {
-        return getCurrentCalendar().get(Calendar.HOUR_OF_DAY);
+        return getCurrentMinuteOfDay() / SunCycle.MINUTES_PER_HOUR;
     }
 
     public boolean before(Time time) {
@@ -352,31 +664,24 @@ public abstract class Weather implements ParcelableUtils.RestorableParcelable {
         return h == hour && m == minute;
     }
 
+    private static int toMinuteOfDay(Time time) {
+        return SunCycle.toMinuteOfDay(time.getHour(), time.getMinute());
+    }
+
     public boolean isNight() {
-        return !isSunrise() && !isDay() && !isSunset();
+        return SunCycle.isNight(getCurrentMinuteOfDay(), toMinuteOfDay(getSunrise()), toMinuteOfDay(getSunset()));
     }
 
     public boolean isSunrise() {
-        invalidateCalendar();
-        boolean after = after(getSunrise().getHour() - 1, getSunrise().getMinute());
-        boolean before = before(getSunrise().getHour() + 1, getSunrise().getMinute());
-        return after && before;
+        return SunCycle.isSunrise(getCurrentMinuteOfDay(), toMinuteOfDay(getSunrise()));
     }
 
     public boolean isDay() {
-        invalidateCalendar();
-        boolean after = after(getSunrise().getHour() + 1, getSunrise().getMinute());
-        boolean before = before(getSunset().getHour() - 1, getSunset().getMinute());
-        return (after && before)
-                || equal(getSunset().getHour() - 1, getSunset().getMinute())
-                || equal(getSunrise().getHour() + 1, getSunrise().getMinute());
+        return SunCycle.isDay(getCurrentMinuteOfDay(), toMinuteOfDay(getSunrise()), toMinuteOfDay(getSunset()));
     }
 
     public boolean isSunset() {
-        invalidateCalendar();
-        boolean after = after(getSunset().getHour() - 1, getSunset().getMinute());
-        boolean before = before(getSunset().getHour() + 1, getSunset().getMinute());
-        return after && before;
+        return SunCycle.isSunset(getCurrentMinuteOfDay(), toMinuteOfDay(getSunset()));
     }
 
     @Override
@@ -388,66 +693,52 @@ public abstract class Weather implements ParcelableUtils.RestorableParcelable {
     public boolean equals(@Nullable Object o) {
         if (o instanceof Weather) {
             Weather a = (Weather) o;
-            return Objects.equals(tempC, a.tempC)
-                    && Objects.equals(condition, a.condition)
-                    && Objects.equals(moonPhase, a.moonPhase)
-                    && Objects.equals(sunrise, a.sunrise)
-                    && Objects.equals(sunset, a.sunset)
-                    && Objects.equals(windKph, a.windKph)
-                    && Objects.equals(lastUpdate, a.lastUpdate);
+            return snapshot().equals(a.snapshot());
         }
         return false;
     }
 
     @Override
     public int hashCode() {
-        return Objects.hashCode(tempC, condition, moonPhase, sunrise, sunset, windKph, lastUpdate);
+        return snapshot().hashCode();
     }
 
     @Override
     public String toString() {
+        WeatherSnapshot snapshot = snapshot();
         return String.format("Weather{tempC=%s, condition=%s, moonPhase=%s, sunrise=%s, sunset=%s, windKph=%s, lastUpdate=%s}",
-                tempC, condition, moonPhase, sunrise, sunset, windKph, SimpleDateFormat.getDateTimeInstance().format(new Date(lastUpdate)));
+                snapshot.getCelsius(), snapshot.getCondition(), snapshot.getMoonPhase(), toTime(snapshot.getSunrise()), toTime(snapshot.getSunset()),
+                snapshot.getWindKph(), SimpleDateFormat.getDateTimeInstance().format(new Date(snapshot.getLastUpdate())));
     }
 
-    /**
-     * A BroadcastReceiver that listens to weather updates and invalidates the Weather object
-     * whenever things change. We use a WeakReference and register to the Application context
-     * because we're not tied to any specific Activity/Service lifecycle. The Weather object we're
-     * tied to is expected to unregister us when they are destroyed.
-     * */
-    private static final class WeatherReceiver extends BroadcastReceiver {
-        private final Context context;
-        private final String action;
-        private final WeakReference<Weather> weakWeather;
-
-        WeatherReceiver(Context context, String action, Weather weather) {
-            this.context = context.getApplicationContext();
-            this.action = action;
-            this.weakWeather = new WeakReference<>(weather);
-        }
+    static Condition fromCore(com.xlythe.service.weather.core.Condition condition) {
+        return CONDITIONS[condition.ordinal()];
+    }
 
-        @Override
-        public void onReceive(Context context, Intent intent) {
-            Weather weather = weakWeather.get();
-            if (weather == null) {
-                unregister();
-                return;
-            }
+    static com.xlythe.service.weather.core.Condition toCore(Condition condition) {
+        return CORE_CONDITIONS[condition.ordinal()];
+    }
 
-            weather.restore(context);
-        }
+    static MoonPhase fromCore(com.xlythe.service.weather.core.MoonPhase moonPhase) {
+        return MOON_PHASES[moonPhase.ordinal()];
+    }
 
-        void register() {
-            ContextCompat.registerReceiver(context, this, new IntentFilter(action), ContextCompat.RECEIVER_NOT_EXPORTED);
-        }
+    static com.xlythe.service.weather.core.MoonPhase toCore(MoonPhase moonPhase) {
+        return CORE_MOON_PHASES[moonPhase.ordinal()];
+    }
 
-        void unregister() {
-            try {
-                context.unregisterReceiver(this);
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
+    /**
+     * Returns the shared instance of the given time of day.
+     */
+    private static Time toTime(int minuteOfDay) {
+        if (minuteOfDay < 0 || minuteOfDay >= TIMES.length) {
+            return new Time(minuteOfDay / SunCycle.MINUTES_PER_HOUR, minuteOfDay % SunCycle.MINUTES_PER_HOUR);
+        }
+        Time time = TIMES[minuteOfDay];
+        if (time == null) {
+            time = new Time(minuteOfDay / SunCycle.MINUTES_PER_HOUR, minuteOfDay % SunCycle.MINUTES_PER_HOUR);
+            TIMES[minuteOfDay] = time;
         }
+        return time;
     }
 }
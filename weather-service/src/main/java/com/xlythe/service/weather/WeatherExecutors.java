@@ -0,0 +1,186 @@
+package com.xlythe.service.weather;
+
+import android.os.Process;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The executors that {@link WeatherService} runs its work on.
+ * <p>
+ * By default, work is posted to a small bounded pool so that independent providers can refresh
+ * in parallel. On top of that pool, each provider is limited in how many of its own tasks may run
+ * at once (1, by default), so a provider that's stuck waiting on the network only ever delays
+ * itself.
+ */
+public class WeatherExecutors {
+    private static final String TAG = WeatherExecutors.class.getSimpleName();
+
+    private static final int POOL_SIZE = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+    private static final long KEEP_ALIVE_IN_SECONDS = 30;
+    private static final int DEFAULT_MAX_CONCURRENCY = 1;
+
+    private static final Map<Class<?>, LimitedExecutor> sLimitedExecutors = new HashMap<>();
+
+    @NonNull private static volatile Executor sExecutor = createDefaultExecutor();
+
+    private WeatherExecutors() {}
+
+    /**
+     * Replaces the executor that all weather work runs on. Work that's already been posted will
+     * finish on the previous executor.
+     */
+    public static void setExecutor(@NonNull Executor executor) {
+        sExecutor = executor;
+    }
+
+    /**
+     * Runs all weather work on virtual threads, if the runtime supports them. Returns false (and
+     * leaves the current executor untouched) if it does not.
+     */
+    public static boolean useVirtualThreads() {
+        try {
+            Method method = java.util.concurrent.Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            setExecutor((Executor) method.invoke(null));
+            return true;
+        } catch (Exception e) {
+            if (Weather.DEBUG) Log.d(TAG, "Virtual threads are not supported on this runtime", e);
+            return false;
+        }
+    }
+
+    /**
+     * Limits how many tasks for the given service may run at the same time. Additional tasks are
+     * queued until a slot frees up.
+     */
+    public static void setMaxConcurrency(@NonNull Class<? extends WeatherService> clazz, int maxConcurrency) {
+        if (maxConcurrency < 1) {
+            throw new IllegalArgumentException("maxConcurrency must be at least 1");
+        }
+        getExecutor(clazz).setMaxConcurrency(maxConcurrency);
+    }
+
+    @NonNull
+    static Executor getExecutor() {
+        return sExecutor;
+    }
+
+    @NonNull
+    static synchronized LimitedExecutor getExecutor(@NonNull Class<?> clazz) {
+        LimitedExecutor executor = sLimitedExecutors.get(clazz);
+        if (executor == null) {
+            executor = new LimitedExecutor(DEFAULT_MAX_CONCURRENCY);
+            sLimitedExecutors.put(clazz, executor);
+        }
+        return executor;
+    }
+
+    private static Executor createDefaultExecutor() {
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(
+                POOL_SIZE,
+                POOL_SIZE,
+                KEEP_ALIVE_IN_SECONDS,
+                TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(),
+                new BackgroundThreadFactory());
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
+    }
+
+    private static final class BackgroundThreadFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(@NonNull Runnable runnable) {
+            return new Thread(() -> {
+                Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                runnable.run();
+            }, "ServiceBackgroundThread-" + count.incrementAndGet());
+        }
+    }
+
+    /**
+     * An executor that forwards to the shared executor, but never lets more than a fixed number of
+     * its own tasks run at once.
+     */
+    static final class LimitedExecutor implements Executor {
+        private final Deque<Runnable> queue = new ArrayDeque<>();
+        private int maxConcurrency;
+        private int running;
+
+        LimitedExecutor(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        synchronized void setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+            drainQuietly();
+        }
+
+        /**
+         * @throws RejectedExecutionException if the shared executor won't take the task. It isn't
+         * kept around to try again later.
+         */
+        @Override
+        public synchronized void execute(@NonNull Runnable runnable) {
+            queue.add(runnable);
+            try {
+                drain();
+            } catch (RejectedExecutionException e) {
+                // Let the caller know, rather than leave the task waiting for a slot that may
+                // never come.
+                queue.removeLastOccurrence(runnable);
+                throw e;
+            }
+        }
+
+        private synchronized void onTaskFinished() {
+            running--;
+            drainQuietly();
+        }
+
+        private void drain() {
+            while (running < maxConcurrency && !queue.isEmpty()) {
+                Runnable next = queue.poll();
+                running++;
+                try {
+                    getExecutor().execute(() -> {
+                        try {
+                            next.run();
+                        } finally {
+                            onTaskFinished();
+                        }
+                    });
+                } catch (RejectedExecutionException e) {
+                    // The slot was never used. Give it back, and keep the task at the front of
+                    // the queue so it's the first to go once the shared executor takes work again.
+                    running--;
+                    queue.addFirst(next);
+                    throw e;
+                }
+            }
+        }
+
+        private void drainQuietly() {
+            try {
+                drain();
+            } catch (RejectedExecutionException e) {
+                // The queued tasks are tried again the next time a task is queued or finishes.
+                Log.w(TAG, "Shared executor rejected a task. " + queue.size() + " task(s) left queued.", e);
+            }
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package com.xlythe.service.weather;
+
+import androidx.annotation.NonNull;
+import androidx.lifecycle.LiveData;
+
+import com.xlythe.service.weather.core.WeatherSnapshot;
+
+/**
+ * A stream of the weather saved by a {@link WeatherProvider}.
+ * <p>
+ * While observed, it listens to {@link WeatherNotifier} and emits each new snapshot as-is. A
+ * snapshot that's equal to the current value, or older than it, is dropped. Like any LiveData,
+ * observers that can't keep up only ever see the latest value.
+ */
+class WeatherLiveData extends LiveData<WeatherSnapshot> implements WeatherProvider.OnWeatherChangedListener {
+    private final WeatherProvider mProvider;
+
+    WeatherLiveData(@NonNull WeatherProvider provider) {
+        mProvider = provider;
+    }
+
+    @Override
+    protected void onActive() {
+        WeatherNotifier.addListener(mProvider.getWeatherClass(), this);
+
+        WeatherSnapshot cached = SnapshotCache.get(mProvider.getWeatherClass());
+        if (cached != null) {
+            setValue(cached);
+        } else {
+            // The first read of a provider goes to disk, so keep it off the main thread.
+            WeatherExecutors.getExecutor().execute(() -> postValue(mProvider.getWeather().getSnapshot()));
+        }
+    }
+
+    @Override
+    protected void onInactive() {
+        WeatherNotifier.removeListener(mProvider.getWeatherClass(), this);
+    }
+
+    @Override
+    public void onWeatherChanged(@NonNull WeatherSnapshot snapshot) {
+        setValue(snapshot);
+    }
+
+    @Override
+    protected void setValue(WeatherSnapshot snapshot) {
+        WeatherSnapshot current = getValue();
+        if (current != null
+                && (current.equals(snapshot) || current.getLastUpdate() > snapshot.getLastUpdate())) {
+            return;
+        }
+        super.setValue(snapshot);
+    }
+}
@@ -0,0 +1,61 @@
+package com.xlythe.service.weather;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import androidx.annotation.NonNull;
+
+import com.xlythe.service.weather.core.WeatherSnapshot;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * The in-process registry of {@link WeatherProvider.OnWeatherChangedListener}s, keyed by the kind
+ * of {@link Weather} they're interested in. When a snapshot is saved, it's handed directly to the
+ * listeners on the main thread, so there's no broadcast to route and nothing to re-read from disk.
+ */
+class WeatherNotifier {
+    private static final ConcurrentHashMap<Class<? extends Weather>, CopyOnWriteArrayList<WeatherProvider.OnWeatherChangedListener>> sListeners = new ConcurrentHashMap<>();
+    private static final Handler sMainHandler = new Handler(Looper.getMainLooper());
+
+    private WeatherNotifier() {}
+
+    static void addListener(@NonNull Class<? extends Weather> weatherClass, @NonNull WeatherProvider.OnWeatherChangedListener listener) {
+        CopyOnWriteArrayList<WeatherProvider.OnWeatherChangedListener> listeners = sListeners.get(weatherClass);
+        if (listeners == null) {
+            listeners = new CopyOnWriteArrayList<>();
+            CopyOnWriteArrayList<WeatherProvider.OnWeatherChangedListener> existing = sListeners.putIfAbsent(weatherClass, listeners);
+            if (existing != null) {
+                listeners = existing;
+            }
+        }
+        listeners.addIfAbsent(listener);
+    }
+
+    static void removeListener(@NonNull Class<? extends Weather> weatherClass, @NonNull WeatherProvider.OnWeatherChangedListener listener) {
+        CopyOnWriteArrayList<WeatherProvider.OnWeatherChangedListener> listeners = sListeners.get(weatherClass);
+        if (listeners != null) {
+            listeners.remove(listener);
+        }
+    }
+
+    /**
+     * Hands the snapshot to everyone listening for this kind of weather. Listeners are called on
+     * the main thread, and only if they're still registered by the time it's their turn.
+     */
+    static void notifyChanged(@NonNull Class<? extends Weather> weatherClass, @NonNull WeatherSnapshot snapshot) {
+        CopyOnWriteArrayList<WeatherProvider.OnWeatherChangedListener> listeners = sListeners.get(weatherClass);
+        if (listeners == null || listeners.isEmpty()) {
+            return;
+        }
+
+        sMainHandler.post(() -> {
+            for (WeatherProvider.OnWeatherChangedListener listener : listeners) {
+                if (listeners.contains(listener)) {
+                    listener.onWeatherChanged(snapshot);
+                }
+            }
+        });
+    }
+}
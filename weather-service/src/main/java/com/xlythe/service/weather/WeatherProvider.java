@@ -1,11 +1,29 @@
 package com.xlythe.service.weather;
 
+import android.Manifest;
+import android.annotation.SuppressLint;
 import android.content.BroadcastReceiver;
 import android.content.Context;
 
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.RequiresPermission;
+import androidx.lifecycle.LiveData;
+import androidx.work.impl.utils.futures.SettableFuture;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.xlythe.service.weather.core.Alert;
+import com.xlythe.service.weather.core.AlertStore;
+import com.xlythe.service.weather.core.WeatherSnapshot;
+
+import java.io.IOException;
+import java.util.List;
+
 public abstract class WeatherProvider {
     private final Context context;
 
+    @Nullable private LiveData<WeatherSnapshot> liveData;
+
     protected WeatherProvider(Context context) {
         this.context = context;
     }
@@ -24,5 +42,137 @@ public abstract class WeatherProvider {
 
     public abstract Weather getWeather();
 
+    /**
+     * Fetches the weather right away, like {@link #runImmediately()}, and returns a future with the
+     * snapshot that was saved. The future fails if the provider couldn't fetch the weather, or
+     * doesn't say which service it runs (see {@link #getServiceClass()}).
+     * Used by {@link CompositeWeatherProvider}.
+     */
+    @NonNull
+    @SuppressLint("RestrictedApi")
+    ListenableFuture<WeatherSnapshot> refresh() {
+        Class<? extends WeatherService> serviceClass = getServiceClass();
+        if (serviceClass == null) {
+            SettableFuture<WeatherSnapshot> future = SettableFuture.create();
+            future.setException(new UnsupportedOperationException(getClass().getSimpleName() + " cannot be refreshed on demand"));
+            return future;
+        }
+        return refresh(serviceClass);
+    }
+
+    @NonNull
+    @SuppressLint("RestrictedApi")
+    ListenableFuture<WeatherSnapshot> refresh(Class<? extends WeatherService> serviceClass) {
+        SettableFuture<WeatherSnapshot> future = SettableFuture.create();
+        ListenableFuture<WeatherService.Result> task = WeatherService.start(getContext(), serviceClass, null);
+        task.addListener(() -> {
+            WeatherService.Result result = FutureUtils.getDone(task);
+            WeatherSnapshot snapshot = getWeather().getSnapshot();
+            // A provider that's never saved anything has nothing worth reporting, even if it
+            // claims to have succeeded.
+            if (result != WeatherService.Result.SUCCESS || snapshot.getLastUpdate() == 0) {
+                future.setException(new IOException(serviceClass.getSimpleName() + " finished with " + result));
+                return;
+            }
+            future.set(snapshot);
+        }, FutureUtils.DIRECT_EXECUTOR);
+        return future;
+    }
+
+    /**
+     * Returns a future with the weather at the given place, like a saved home or work address. The
+     * weather saved for the user's own location is left untouched. Places that are close together
+     * share a single request, and recent results are reused. See {@link PlaceCache}.
+     * <p>
+     * Values the provider doesn't report are left at their defaults, except for moon phase, which
+     * is the same everywhere and is worked out locally instead. The future fails if the provider
+     * can't fetch the weather for other places.
+     */
+    @NonNull
+    @RequiresPermission(Manifest.permission.INTERNET)
+    @SuppressLint("RestrictedApi")
+    public ListenableFuture<WeatherSnapshot> getWeatherAt(double latitude, double longitude) {
+        SettableFuture<WeatherSnapshot> future = SettableFuture.create();
+        future.setException(new UnsupportedOperationException(getClass().getSimpleName() + " cannot fetch the weather for other places"));
+        return future;
+    }
+
+    /**
+     * Returns the kind of {@link Weather} this provider saves.
+     */
+    protected abstract Class<? extends Weather> getWeatherClass();
+
+    /**
+     * Returns the service that fetches this provider's weather, or null if it's unknown. Providers
+     * that return null can't be refreshed on demand, or be part of a
+     * {@link CompositeWeatherProvider}.
+     */
+    @Nullable
+    protected Class<? extends WeatherService> getServiceClass() {
+        return null;
+    }
+
+    /**
+     * Registers a listener that's called on the main thread with the new weather whenever this
+     * provider saves an update. Listeners are held strongly, so they must be removed with
+     * {@link #removeListener(OnWeatherChangedListener)} once they're no longer needed.
+     */
+    public void addListener(@NonNull OnWeatherChangedListener listener) {
+        WeatherNotifier.addListener(getWeatherClass(), listener);
+    }
+
+    public void removeListener(@NonNull OnWeatherChangedListener listener) {
+        WeatherNotifier.removeListener(getWeatherClass(), listener);
+    }
+
+    /**
+     * Returns the weather alerts in effect at the user's location, as of the last refresh. Alerts
+     * that have since expired are left out. Providers that don't support alerts return nothing.
+     */
+    @NonNull
+    public List<Alert> getAlerts() {
+        return AlertCache.getInstance(getContext()).getAlerts(getWeatherClass());
+    }
+
+    /**
+     * Registers a listener that's called on the main thread whenever alerts are added, updated or
+     * expire. Refreshes that report the same alerts as before don't call it. Listeners must be
+     * removed with {@link #removeOnAlertsChangedListener(OnAlertsChangedListener)} once they're no
+     * longer needed.
+     */
+    public void addOnAlertsChangedListener(@NonNull OnAlertsChangedListener listener) {
+        AlertCache.getInstance(getContext()).addListener(getWeatherClass(), listener);
+    }
+
+    public void removeOnAlertsChangedListener(@NonNull OnAlertsChangedListener listener) {
+        AlertCache.getInstance(getContext()).removeListener(getWeatherClass(), listener);
+    }
+
+    /**
+     * Returns the weather saved by this provider as a stream of immutable snapshots. The current
+     * weather is emitted as soon as it's observed, followed by each update that's different from
+     * the last. Observers are called on the main thread.
+     */
+    @NonNull
+    public synchronized LiveData<WeatherSnapshot> getWeatherLiveData() {
+        if (liveData == null) {
+            liveData = new WeatherLiveData(this);
+        }
+        return liveData;
+    }
+
+    /**
+     * @deprecated Use {@link #addListener(OnWeatherChangedListener)}, which delivers the new
+     * weather directly instead of through a system broadcast.
+     */
+    @Deprecated
     public abstract void registerReceiver(BroadcastReceiver broadcastReceiver);
+
+    public interface OnWeatherChangedListener {
+        void onWeatherChanged(@NonNull WeatherSnapshot snapshot);
+    }
+
+    public interface OnAlertsChangedListener {
+        void onAlertsChanged(@NonNull AlertStore.Diff diff);
+    }
 }
@@ -0,0 +1,382 @@
+package com.xlythe.service.weather;
+
+import android.annotation.SuppressLint;
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Bundle;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.annotation.UiThread;
+import androidx.annotation.WorkerThread;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.ListenableWorker;
+import androidx.work.NetworkType;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.WorkerParameters;
+import androidx.work.impl.utils.futures.SettableFuture;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.xlythe.service.weather.core.WeatherSnapshot;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Refreshes every scheduled provider from a single periodic job, instead of each provider waking
+ * the device up on its own.
+ * <p>
+ * The job runs as often as the most frequent provider asks for. Every time it wakes up, each
+ * provider that's within its flex window is refreshed, along with any provider that would be
+ * overdue by the time the job runs again. Everything that's refreshed is refreshed together, so
+ * the radio only has to turn on once.
+ * <p>
+ * After each refresh, {@link RefreshPolicy} stretches or shrinks that provider's interval based on
+ * how much the weather changed and the state of the device.
+ */
+public class WeatherScheduler extends ListenableWorker {
+    private static final String TAG = WeatherScheduler.class.getSimpleName();
+    private static final boolean DEBUG = Weather.DEBUG;
+
+    private static final String TAG_REFRESH = WeatherScheduler.class.getSimpleName() + "_refresh";
+
+    // WorkManager won't run periodic work any more often than this.
+    private static final long MIN_FREQUENCY_IN_MILLIS = PeriodicWorkRequest.MIN_PERIODIC_INTERVAL_MILLIS;
+    private static final long MIN_FLEX_IN_MILLIS = PeriodicWorkRequest.MIN_PERIODIC_FLEX_MILLIS;
+
+    private static final String BUNDLE_FREQUENCY = "frequency:";
+    private static final String BUNDLE_FLEX = "flex:";
+    private static final String BUNDLE_LAST_RUN = "last_run:";
+    private static final String BUNDLE_WEATHER = "weather:";
+    private static final String BUNDLE_INTERVAL = "interval:";
+    private static final String BUNDLE_STABLE_RUNS = "stable_runs:";
+
+    static final String BUNDLE_SCHEDULED_RUN = "scheduled_run";
+
+    public WeatherScheduler(@NonNull Context appContext, @NonNull WorkerParameters params) {
+        super(appContext, params);
+    }
+
+    /**
+     * Adds the service to the shared job. It'll be refreshed roughly every frequency, give or take
+     * the flex, whenever the job next wakes up. Services that don't save a {@link Weather} can pass
+     * null, and they'll be refreshed at their frequency without adapting to the weather.
+     */
+    static void register(
+            Context context,
+            Class<? extends WeatherService> clazz,
+            @Nullable Class<? extends Weather> weatherClass,
+            long frequencyInMillis,
+            long flexInMillis) {
+        if (DEBUG) Log.d(TAG, "Registering " + clazz.getSimpleName());
+        SharedPreferences sharedPreferences = getSharedPreferences(context);
+        long frequency = Math.max(MIN_FREQUENCY_IN_MILLIS, frequencyInMillis);
+        SharedPreferences.Editor editor = sharedPreferences.edit();
+        if (weatherClass != null) {
+            editor.putString(BUNDLE_WEATHER + clazz.getName(), weatherClass.getName());
+        } else {
+            editor.remove(BUNDLE_WEATHER + clazz.getName());
+        }
+        editor.putLong(BUNDLE_FREQUENCY + clazz.getName(), frequency)
+                .putLong(BUNDLE_FLEX + clazz.getName(), Math.max(MIN_FLEX_IN_MILLIS, flexInMillis));
+        if (sharedPreferences.getLong(BUNDLE_FREQUENCY + clazz.getName(), frequency) != frequency) {
+            // The interval we adapted was based on the old frequency.
+            editor.remove(BUNDLE_INTERVAL + clazz.getName());
+        }
+        editor.apply();
+
+        // Older versions scheduled each service as its own periodic work. WorkManager tags all work
+        // with the name of its worker, so that's enough to find and cancel it.
+        WorkManager.getInstance(context).cancelAllWorkByTag(clazz.getName());
+        reschedule(context);
+    }
+
+    static void unregister(Context context, Class<? extends WeatherService> clazz) {
+        if (DEBUG) Log.d(TAG, "Unregistering " + clazz.getSimpleName());
+        getSharedPreferences(context).edit()
+                .remove(BUNDLE_FREQUENCY + clazz.getName())
+                .remove(BUNDLE_FLEX + clazz.getName())
+                .remove(BUNDLE_LAST_RUN + clazz.getName())
+                .remove(BUNDLE_WEATHER + clazz.getName())
+                .remove(BUNDLE_INTERVAL + clazz.getName())
+                .remove(BUNDLE_STABLE_RUNS + clazz.getName())
+                .apply();
+
+        WorkManager.getInstance(context).cancelAllWorkByTag(clazz.getName());
+        reschedule(context);
+    }
+
+    static boolean isRegistered(Context context, Class<? extends WeatherService> clazz) {
+        return getSharedPreferences(context).contains(BUNDLE_FREQUENCY + clazz.getName());
+    }
+
+    /**
+     * Returns how long the service should wait between refreshes right now, or the given default
+     * if it isn't registered.
+     */
+    static long getInterval(Context context, Class<? extends WeatherService> clazz, long defaultIntervalInMillis) {
+        SharedPreferences sharedPreferences = getSharedPreferences(context);
+        return sharedPreferences.getLong(BUNDLE_INTERVAL + clazz.getName(),
+                sharedPreferences.getLong(BUNDLE_FREQUENCY + clazz.getName(), defaultIntervalInMillis));
+    }
+
+    /**
+     * Enqueues the shared job so that it matches the services that are registered, or cancels it
+     * if there are none left.
+     */
+    static void reschedule(Context context) {
+        List<Entry> entries = getEntries(context);
+        if (entries.isEmpty()) {
+            if (DEBUG) Log.d(TAG, "Nothing left to refresh. Cancelling the shared job.");
+            WorkManager.getInstance(context).cancelUniqueWork(TAG_REFRESH);
+            return;
+        }
+
+        long frequency = Long.MAX_VALUE;
+        long flex = Long.MAX_VALUE;
+        for (Entry entry : entries) {
+            frequency = Math.min(frequency, entry.interval);
+            flex = Math.min(flex, entry.flex);
+        }
+        frequency = Math.max(MIN_FREQUENCY_IN_MILLIS, frequency);
+        flex = Math.max(MIN_FLEX_IN_MILLIS, Math.min(flex, frequency));
+
+        if (DEBUG) Log.d(TAG, "Refreshing " + entries.size() + " service(s) every " + frequency + "ms, with a flex of " + flex + "ms");
+
+        Constraints constraints = new Constraints.Builder()
+                .setRequiredNetworkType(NetworkType.CONNECTED)
+                .build();
+
+        PeriodicWorkRequest request =
+                new PeriodicWorkRequest.Builder(WeatherScheduler.class, frequency, TimeUnit.MILLISECONDS, flex, TimeUnit.MILLISECONDS)
+                        .setConstraints(constraints)
+                        .addTag(TAG_REFRESH)
+                        .build();
+
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(TAG_REFRESH, ExistingPeriodicWorkPolicy.UPDATE, request);
+    }
+
+    @NonNull
+    @UiThread
+    @Override
+    @SuppressLint("RestrictedApi")
+    public ListenableFuture<Result> startWork() {
+        SettableFuture<Result> future = SettableFuture.create();
+        // Working out who's due means reading preferences and saved weather. Keep that off the
+        // main thread, which is where WorkManager calls us.
+        try {
+            WeatherExecutors.getExecutor().execute(() -> {
+                try {
+                    refreshDueServices(future);
+                } catch (Throwable t) {
+                    future.setException(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            Log.w(TAG, "Executor rejected the scheduled refresh. Retrying later.", e);
+            future.set(Result.retry());
+        }
+        return future;
+    }
+
+    @WorkerThread
+    @SuppressLint("RestrictedApi")
+    private void refreshDueServices(SettableFuture<Result> future) {
+        List<Entry> entries = getEntries(getApplicationContext());
+        long period = Long.MAX_VALUE;
+        for (Entry entry : entries) {
+            period = Math.min(period, entry.interval);
+        }
+
+        long now = System.currentTimeMillis();
+        List<Entry> due = new ArrayList<>();
+        for (Entry entry : entries) {
+            if (entry.isDue(now, period)) {
+                due.add(entry);
+            }
+        }
+
+        if (due.isEmpty()) {
+            if (DEBUG) Log.d(TAG, "No services are due");
+            future.set(Result.success());
+            return;
+        }
+
+        Bundle extras = new Bundle();
+        extras.putBoolean(BUNDLE_SCHEDULED_RUN, true);
+
+        AtomicInteger remaining = new AtomicInteger(due.size());
+        AtomicInteger reschedules = new AtomicInteger();
+        AtomicBoolean intervalsChanged = new AtomicBoolean();
+        for (Entry entry : due) {
+            if (DEBUG) Log.d(TAG, "Refreshing " + entry.clazz.getSimpleName());
+            WeatherSnapshot previous = entry.getSnapshot(getApplicationContext());
+            ListenableFuture<WeatherService.Result> task = WeatherService.start(getApplicationContext(), entry.clazz, extras);
+            task.addListener(() -> {
+                WeatherService.Result result = FutureUtils.getDone(task);
+                if (result == WeatherService.Result.SUCCESS) {
+                    if (onRefreshed(getApplicationContext(), entry, previous)) {
+                        intervalsChanged.set(true);
+                    }
+                } else if (result == WeatherService.Result.RESCHEDULE) {
+                    reschedules.incrementAndGet();
+                }
+
+                if (remaining.decrementAndGet() == 0) {
+                    if (intervalsChanged.get()) {
+                        reschedule(getApplicationContext());
+                    }
+                    // Services that succeeded won't be due again yet, so a retry only repeats the
+                    // ones that need it.
+                    future.set(reschedules.get() > 0 ? Result.retry() : Result.success());
+                }
+            }, WeatherExecutors.getExecutor());
+        }
+    }
+
+    /**
+     * Records a successful refresh, and works out how long to wait until the next one. Returns
+     * true if the interval changed.
+     */
+    private static boolean onRefreshed(Context context, Entry entry, @Nullable WeatherSnapshot previous) {
+        WeatherSnapshot current = entry.getSnapshot(context);
+        int stableRuns;
+        if (RefreshPolicy.hasActiveAlerts(context, entry.weatherClass)) {
+            // Whatever the last few refreshes said, keep a close eye on things until the alerts end.
+            stableRuns = -1;
+        } else if (current == null) {
+            // Without the weather to compare, we can't tell whether it's been stable.
+            stableRuns = 0;
+        } else if (RefreshPolicy.isVolatile(previous, current)) {
+            stableRuns = -1;
+        } else {
+            stableRuns = Math.max(0, entry.stableRuns + 1);
+        }
+        long interval = RefreshPolicy.getInterval(context, entry.frequency, current, stableRuns);
+        if (DEBUG) Log.d(TAG, "Refreshing " + entry.clazz.getSimpleName() + " again in " + interval + "ms");
+
+        getSharedPreferences(context).edit()
+                .putLong(BUNDLE_LAST_RUN + entry.clazz.getName(), System.currentTimeMillis())
+                .putLong(BUNDLE_INTERVAL + entry.clazz.getName(), interval)
+                .putInt(BUNDLE_STABLE_RUNS + entry.clazz.getName(), stableRuns)
+                .apply();
+        return interval != entry.interval;
+    }
+
+    private static List<Entry> getEntries(Context context) {
+        SharedPreferences sharedPreferences = getSharedPreferences(context);
+        List<Entry> entries = new ArrayList<>();
+        for (Map.Entry<String, ?> pref : sharedPreferences.getAll().entrySet()) {
+            if (!pref.getKey().startsWith(BUNDLE_FREQUENCY)) {
+                continue;
+            }
+
+            String className = pref.getKey().substring(BUNDLE_FREQUENCY.length());
+            Class<? extends WeatherService> clazz;
+            try {
+                clazz = Class.forName(className).asSubclass(WeatherService.class);
+            } catch (ClassNotFoundException | ClassCastException e) {
+                if (DEBUG) Log.d(TAG, "Dropping " + className + ", which no longer exists", e);
+                sharedPreferences.edit().remove(pref.getKey()).apply();
+                continue;
+            }
+
+            long frequency = sharedPreferences.getLong(BUNDLE_FREQUENCY + className, MIN_FREQUENCY_IN_MILLIS);
+            entries.add(new Entry(
+                    clazz,
+                    getWeatherClass(sharedPreferences.getString(BUNDLE_WEATHER + className, null)),
+                    frequency,
+                    sharedPreferences.getLong(BUNDLE_FLEX + className, MIN_FLEX_IN_MILLIS),
+                    sharedPreferences.getLong(BUNDLE_INTERVAL + className, frequency),
+                    sharedPreferences.getInt(BUNDLE_STABLE_RUNS + className, 0),
+                    sharedPreferences.getLong(BUNDLE_LAST_RUN + className, 0)));
+        }
+        return entries;
+    }
+
+    @Nullable
+    private static Class<? extends Weather> getWeatherClass(@Nullable String className) {
+        if (className == null) {
+            return null;
+        }
+        try {
+            return Class.forName(className).asSubclass(Weather.class);
+        } catch (ClassNotFoundException | ClassCastException e) {
+            if (DEBUG) Log.d(TAG, "Failed to find " + className, e);
+            return null;
+        }
+    }
+
+    private static SharedPreferences getSharedPreferences(Context context) {
+        return context.getSharedPreferences(WeatherScheduler.class.getSimpleName(), Context.MODE_PRIVATE);
+    }
+
+    private static class Entry {
+        final Class<? extends WeatherService> clazz;
+        @Nullable final Class<? extends Weather> weatherClass;
+        final long frequency;
+        final long flex;
+        final long interval;
+        final int stableRuns;
+        final long lastRun;
+
+        Entry(
+                Class<? extends WeatherService> clazz,
+                @Nullable Class<? extends Weather> weatherClass,
+                long frequency,
+                long flex,
+                long interval,
+                int stableRuns,
+                long lastRun) {
+            this.clazz = clazz;
+            this.weatherClass = weatherClass;
+            this.frequency = frequency;
+            // The flex can't be longer than the (possibly shortened) interval itself.
+            this.flex = Math.min(flex, interval / 2);
+            this.interval = interval;
+            this.stableRuns = stableRuns;
+            this.lastRun = lastRun;
+        }
+
+        /**
+         * Returns the weather this service last saved, or null if we don't know which weather it
+         * saves to.
+         */
+        @Nullable
+        WeatherSnapshot getSnapshot(Context context) {
+            if (weatherClass == null) {
+                return null;
+            }
+            try {
+                Weather weather = weatherClass.getConstructor().newInstance();
+                weather.restore(context);
+                return weather.getSnapshot();
+            } catch (ReflectiveOperationException e) {
+                if (DEBUG) Log.d(TAG, "Failed to restore " + weatherClass.getSimpleName(), e);
+                return null;
+            }
+        }
+
+        /**
+         * Returns true if the service should be refreshed now, given that the job won't wake up
+         * again for another period.
+         */
+        boolean isDue(long now, long period) {
+            long dueTime = lastRun + interval;
+            // Close enough to on time that it may as well ride along with this wakeup.
+            if (now >= dueTime - flex) {
+                return true;
+            }
+            // Waiting for the next wakeup would leave it later than its flex allows.
+            return now + period > dueTime + flex;
+        }
+    }
+}
@@ -4,8 +4,6 @@ import android.annotation.SuppressLint;
 import android.content.Context;
 import android.content.Intent;
 import android.os.Bundle;
-import android.os.Handler;
-import android.os.HandlerThread;
 import android.util.Log;
 
 import androidx.annotation.NonNull;
@@ -23,20 +21,16 @@ import com.google.common.util.concurrent.ListenableFuture;
 import java.lang.reflect.Constructor;
 import java.util.HashSet;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.RejectedExecutionException;
 
 public abstract class WeatherService extends ListenableWorker {
     static final boolean DEBUG = Weather.DEBUG;
 
-    private static final HandlerThread sBackgroundThread = new HandlerThread("ServiceBackgroundThread");
-
     protected enum Result {
         SUCCESS, RESCHEDULE, FAILURE;
     }
 
-    static {
-        sBackgroundThread.start();
-    }
-
     public WeatherService(@NonNull Context appContext, @NonNull WorkerParameters params) {
         super(appContext, params);
     }
@@ -51,8 +45,14 @@ public abstract class WeatherService extends ListenableWorker {
     @SuppressLint("RestrictedApi")
     public ListenableFuture<ListenableWorker.Result> startWork() {
         SettableFuture<ListenableWorker.Result> future = SettableFuture.create();
-        post(() -> {
-            switch (onRunTask(toBundle(getInputData()))) {
+        ListenableFuture<Result> task = startTask(toBundle(getInputData()));
+        task.addListener(() -> {
+            Result result = FutureUtils.getDone(task);
+            if (result == null) {
+                future.set(ListenableWorker.Result.failure());
+                return;
+            }
+            switch (result) {
                 case SUCCESS:
                     future.set(ListenableWorker.Result.success());
                     break;
@@ -63,10 +63,67 @@ public abstract class WeatherService extends ListenableWorker {
                     future.set(ListenableWorker.Result.retry());
                     break;
             }
-        });
+        }, FutureUtils.DIRECT_EXECUTOR);
+        return future;
+    }
+
+    /**
+     * Calls {@link #onStartTask(Bundle)} in the background. WorkManager (and anyone calling
+     * {@link #runImmediately}) starts us on the main thread, and most services check something on
+     * disk before deciding whether there's any work to do.
+     */
+    @NonNull
+    @SuppressLint("RestrictedApi")
+    private ListenableFuture<Result> startTask(@Nullable Bundle extras) {
+        SettableFuture<Result> future = SettableFuture.create();
+        try {
+            post(() -> {
+                try {
+                    future.setFuture(onStartTask(extras));
+                } catch (Throwable t) {
+                    future.setException(t);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The executor is shut down or full. That's not our caller's problem to catch, and
+            // it may well take work again by the time we're retried.
+            Log.w(getClass().getSimpleName(), "Executor rejected the task. Rescheduling.", e);
+            future.set(Result.RESCHEDULE);
+        }
+        return future;
+    }
+
+    /**
+     * Starts the task and returns a future that completes once it's finished. This is called on a
+     * background thread, but shouldn't block on the network. By default, this runs
+     * {@link #onRunTask(Bundle)} on this service's executor. Subclasses that can wait without
+     * holding onto a thread should override this instead.
+     */
+    @NonNull
+    @WorkerThread
+    @SuppressLint("RestrictedApi")
+    protected ListenableFuture<Result> onStartTask(@Nullable Bundle extras) {
+        SettableFuture<Result> future = SettableFuture.create();
+        postTask(future, () -> onRunTask(extras));
         return future;
     }
 
+    /**
+     * Runs the task on this service's executor (see {@link #post(Class, Runnable)}), and completes
+     * the future with its result. If the executor won't take the task, the future is completed
+     * with {@link Result#RESCHEDULE} instead of throwing at the caller, which may be the main
+     * thread.
+     */
+    @SuppressLint("RestrictedApi")
+    void postTask(@NonNull SettableFuture<Result> future, @NonNull Callable<Result> task) {
+        try {
+            post(getClass(), FutureUtils.complete(future, task));
+        } catch (RejectedExecutionException e) {
+            Log.w(getClass().getSimpleName(), "Executor rejected the task. Rescheduling.", e);
+            future.set(Result.RESCHEDULE);
+        }
+    }
+
     protected static Bundle toBundle(Data data) {
         Bundle bundle = new Bundle();
         for (String key : data.getKeyValueMap().keySet()) {
@@ -112,41 +169,69 @@ public abstract class WeatherService extends ListenableWorker {
     }
 
     protected static void runImmediately(Context context, Class<? extends WeatherService> clazz, @Nullable Bundle extras) {
+        start(context, clazz, extras);
+    }
+
+    /**
+     * Runs the service right away, outside of WorkManager, and returns a future that completes
+     * once it's finished.
+     */
+    @NonNull
+    static ListenableFuture<Result> start(Context context, Class<? extends WeatherService> clazz, @Nullable Bundle extras) {
         if (DEBUG) {
             Log.d(clazz.getSimpleName(), "Running " + clazz.getSimpleName() + " immediately");
         }
 
-        post(() -> {
-            try {
-                Constructor<? extends WeatherService> constructor = clazz.getConstructor(Context.class, WorkerParameters.class);
-                @SuppressLint("RestrictedApi") WeatherService service = constructor.newInstance(context, new WorkerParameters(
-                        UUID.randomUUID(),
-                        Data.EMPTY,
-                        new HashSet<>(),
-                        null,
-                        0,
-                        0,
-                        ContextCompat.getMainExecutor(context),
-                        null,
-                        null,
-                        null,
-                        null,
-                        null));
-
-                if (DEBUG) {
-                    Log.d(clazz.getSimpleName(), "Now executing " + clazz.getSimpleName() + ".startWork");
-                }
-                service.onRunTask(extras);
-            } catch (Exception e) {
-                if (DEBUG) {
-                    Log.d(clazz.getSimpleName(), "Failed to run immediately", e);
-                }
+        try {
+            WeatherService service = create(context, clazz);
+
+            if (DEBUG) {
+                Log.d(clazz.getSimpleName(), "Now executing " + clazz.getSimpleName() + ".onStartTask");
+            }
+            return service.startTask(extras);
+        } catch (Exception e) {
+            if (DEBUG) {
+                Log.d(clazz.getSimpleName(), "Failed to run immediately", e);
             }
-        });
+            return FutureUtils.immediateFuture(Result.FAILURE);
+        }
+    }
+
+    /**
+     * Creates an instance of the service, outside of WorkManager.
+     */
+    @NonNull
+    static <T extends WeatherService> T create(Context context, Class<T> clazz) throws ReflectiveOperationException {
+        Constructor<T> constructor = clazz.getConstructor(Context.class, WorkerParameters.class);
+        @SuppressLint("RestrictedApi") T service = constructor.newInstance(context, new WorkerParameters(
+                UUID.randomUUID(),
+                Data.EMPTY,
+                new HashSet<>(),
+                null,
+                0,
+                0,
+                ContextCompat.getMainExecutor(context),
+                null,
+                null,
+                null,
+                null,
+                null));
+        return service;
     }
 
+    /**
+     * Runs the given runnable on the shared background executor. See {@link WeatherExecutors}.
+     */
     protected static void post(Runnable runnable) {
-        new Handler(sBackgroundThread.getLooper()).post(runnable);
+        WeatherExecutors.getExecutor().execute(runnable);
+    }
+
+    /**
+     * Runs the given runnable in the background, but never concurrently with more than the
+     * allowed number of tasks for the given service. See {@link WeatherExecutors#setMaxConcurrency}.
+     */
+    protected static void post(Class<? extends WeatherService> clazz, Runnable runnable) {
+        WeatherExecutors.getExecutor(clazz).execute(runnable);
     }
 
     protected static void broadcast(Context context, String action) {
@@ -5,9 +5,13 @@ import android.content.BroadcastReceiver;
 import android.content.Context;
 import android.content.IntentFilter;
 
+import androidx.annotation.NonNull;
 import androidx.annotation.RequiresPermission;
 import androidx.core.content.ContextCompat;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.xlythe.service.weather.core.WeatherSnapshot;
+
 public class WeatherUndergroundProvider extends WeatherProvider {
     private final String mApiKey;
 
@@ -52,6 +56,24 @@ public class WeatherUndergroundProvider extends WeatherProvider {
         return new WeatherUnderground(getContext());
     }
 
+    @Override
+    protected Class<? extends WeatherService> getServiceClass() {
+        return WeatherUndergroundService.class;
+    }
+
+    @NonNull
+    @RequiresPermission(Manifest.permission.INTERNET)
+    @Override
+    public ListenableFuture<WeatherSnapshot> getWeatherAt(double latitude, double longitude) {
+        return LocationBasedService.fetch(getContext(), WeatherUndergroundService.class, latitude, longitude);
+    }
+
+    @Override
+    protected Class<? extends Weather> getWeatherClass() {
+        return WeatherUnderground.class;
+    }
+
+    @Deprecated
     @Override
     public void registerReceiver(BroadcastReceiver broadcastReceiver) {
         ContextCompat.registerReceiver(getContext(), broadcastReceiver, new IntentFilter(WeatherUndergroundService.ACTION_DATA_CHANGED), ContextCompat.RECEIVER_NOT_EXPORTED);
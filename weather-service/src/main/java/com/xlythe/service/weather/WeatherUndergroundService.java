@@ -6,19 +6,22 @@ import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.util.Log;
 
+import com.google.common.util.concurrent.ListenableFuture;
+import com.xlythe.service.weather.core.WeatherUndergroundParser;
+import com.xlythe.service.weather.core.WeatherParser;
+
 import org.json.JSONException;
 
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresPermission;
-import androidx.work.Constraints;
-import androidx.work.Data;
-import androidx.work.ExistingPeriodicWorkPolicy;
-import androidx.work.NetworkType;
-import androidx.work.PeriodicWorkRequest;
 import androidx.work.WorkManager;
 import androidx.work.WorkerParameters;
 
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.concurrent.TimeUnit;
 
 /**
@@ -29,10 +32,11 @@ public class WeatherUndergroundService extends LocationBasedService {
 
     public static final String ACTION_DATA_CHANGED = "com.xlythe.service.weather.WUNDERGROUND_WEATHER_DATA_CHANGED";
 
-    private static final String TAG_WEATHER = WeatherUndergroundService.class.getSimpleName() + "_weather";
     private static final int FREQUENCY_WEATHER = 2 * 60 * 60; // 2hrs in seconds
     private static final int FLEX_WEATHER = 30 * 60; // 30min in seconds
 
+    // Astronomy used to be scheduled separately. Now it's folded into the weather query whenever
+    // it's due, but we still need the tag to clean up work scheduled by older versions.
     private static final String TAG_ASTRONOMY = WeatherUndergroundService.class.getSimpleName() + "_astronomy";
     private static final int FREQUENCY_ASTRONOMY = 23 * 60 * 60; // 23hrs in seconds
 
@@ -41,9 +45,13 @@ public class WeatherUndergroundService extends LocationBasedService {
     private static final String BUNDLE_API_KEY = "api_key";
     private static final String BUNDLE_TAG = "tag";
     private static final String BUNDLE_FREQUENCY = "frequency";
+    private static final String BUNDLE_ASTRONOMY_TIME = "astronomy_time";
 
     private static final String URL_WEATHER = "https://api.wunderground.com/api/%s/geolookup/conditions/q/%s,%s.json"; // apiKey, latitude, longitude
-    private static final String URL_ASTRONOMY = "https://api.wunderground.com/api/%s/astronomy/q/%s,%s.json"; // apiKey, latitude, longitude
+    private static final String URL_WEATHER_AND_ASTRONOMY = "https://api.wunderground.com/api/%s/geolookup/conditions/astronomy/q/%s,%s.json"; // apiKey, latitude, longitude
+
+    // True if the request we're making also asks for astronomy.
+    private boolean mIncludesAstronomy;
 
     public WeatherUndergroundService(@NonNull Context appContext, @NonNull WorkerParameters params) {
         super(appContext, params);
@@ -68,33 +76,7 @@ public class WeatherUndergroundService extends LocationBasedService {
         if (DEBUG) Log.d(TAG, "Scheduling WeatherUnderground api");
         getSharedPreferences(context).edit().putString(BUNDLE_API_KEY, apiKey).apply();
 
-        Constraints constraints = new Constraints.Builder()
-                .setRequiredNetworkType(NetworkType.CONNECTED)
-                .build();
-
-        WorkManager.getInstance(context)
-                .enqueueUniquePeriodicWork(
-                        TAG_WEATHER,
-                        ExistingPeriodicWorkPolicy.UPDATE,
-                        new PeriodicWorkRequest.Builder(WeatherUndergroundService.class, getFrequency(context), TimeUnit.SECONDS)
-                                .setConstraints(constraints)
-                                .setInputData(new Data.Builder()
-                                        .putString(BUNDLE_TAG, TAG_WEATHER)
-                                        .build())
-                                .addTag(TAG_WEATHER)
-                                .build());
-
-        WorkManager.getInstance(context)
-                .enqueueUniquePeriodicWork(
-                        TAG_ASTRONOMY,
-                        ExistingPeriodicWorkPolicy.UPDATE,
-                        new PeriodicWorkRequest.Builder(WeatherUndergroundService.class, FREQUENCY_ASTRONOMY, TimeUnit.SECONDS)
-                                .setConstraints(constraints)
-                                .setInputData(new Data.Builder()
-                                        .putString(BUNDLE_TAG, TAG_ASTRONOMY)
-                                        .build())
-                                .addTag(TAG_ASTRONOMY)
-                                .build());
+        WeatherScheduler.register(context, WeatherUndergroundService.class, WeatherUnderground.class, TimeUnit.SECONDS.toMillis(getFrequency(context)), TimeUnit.SECONDS.toMillis(FLEX_WEATHER));
 
         getSharedPreferences(context).edit()
                 .putBoolean(BUNDLE_SCHEDULED, true)
@@ -103,8 +85,7 @@ public class WeatherUndergroundService extends LocationBasedService {
     }
 
     public static void cancel(Context context) {
-        WorkManager.getInstance(context).cancelUniqueWork(TAG_WEATHER);
-        WorkManager.getInstance(context).cancelUniqueWork(TAG_ASTRONOMY);
+        WeatherScheduler.unregister(context, WeatherUndergroundService.class);
         getSharedPreferences(context).edit().putBoolean(BUNDLE_SCHEDULED, false).apply();
     }
 
@@ -127,10 +108,16 @@ public class WeatherUndergroundService extends LocationBasedService {
         return (int) (getSharedPreferences(context).getLong(BUNDLE_FREQUENCY, FREQUENCY_WEATHER * 1000) / 1000);
     }
 
+    private static boolean isAstronomyDue(Context context) {
+        long lastAstronomy = getSharedPreferences(context).getLong(BUNDLE_ASTRONOMY_TIME, 0);
+        return lastAstronomy < System.currentTimeMillis() - FREQUENCY_ASTRONOMY * 1000L;
+    }
+
     private static boolean hasRunRecently(Context context) {
         Weather weather = new WeatherUnderground();
         weather.restore(context);
-        return weather.getLastUpdate() > System.currentTimeMillis() - getFrequency(context) + FLEX_WEATHER;
+        long interval = WeatherScheduler.getInterval(context, WeatherUndergroundService.class, TimeUnit.SECONDS.toMillis(getFrequency(context)));
+        return weather.getLastUpdate() > System.currentTimeMillis() - interval + TimeUnit.SECONDS.toMillis(FLEX_WEATHER);
     }
 
     private static SharedPreferences getSharedPreferences(Context context) {
@@ -163,50 +150,69 @@ public class WeatherUndergroundService extends LocationBasedService {
         cancel(getContext());
     }
 
+    @NonNull
     @Override
-    public Result onRunTask(@Nullable Bundle extras) {
-        // Extras are null when running manually. In this special case, we'd like to run both
-        // weather and astronomy queries.
-        if (extras == null) {
-            Bundle weatherMetadata = new Bundle();
-            weatherMetadata.putString(BUNDLE_TAG, TAG_WEATHER);
-            Result result = super.onRunTask(weatherMetadata);
-            if (result != Result.SUCCESS) {
-                return result;
+    protected ListenableFuture<Result> onStartTask(@Nullable Bundle extras) {
+        // Extras are null when running manually. In this special case, we always ask for astronomy
+        // along with the weather.
+        if (extras != null) {
+            if (TAG_ASTRONOMY.equals(extras.getString(BUNDLE_TAG))) {
+                if (DEBUG) Log.d(TAG, "Cancelling astronomy work left over from an older version");
+                WorkManager.getInstance(getContext()).cancelUniqueWork(TAG_ASTRONOMY);
+                return FutureUtils.immediateFuture(Result.SUCCESS);
             }
 
-            Bundle astronomyMetadata = new Bundle();
-            astronomyMetadata.putString(BUNDLE_TAG, TAG_ASTRONOMY);
-            return super.onRunTask(astronomyMetadata);
-        } else if (TAG_WEATHER.equals(extras.getString(BUNDLE_TAG))
-                && hasRunRecently(getContext())) {
-            return Result.SUCCESS;
+            // The scheduler has already decided whether we're due.
+            if (!extras.getBoolean(WeatherScheduler.BUNDLE_SCHEDULED_RUN) && hasRunRecently(getContext())) {
+                return FutureUtils.immediateFuture(Result.SUCCESS);
+            }
         }
 
-        return super.onRunTask(extras);
+        return super.onStartTask(extras);
     }
 
     @Override
     protected String createUrl(double latitude, double longitude) {
-        if (TAG_ASTRONOMY.equals(getTaskParams().getString(BUNDLE_TAG))) {
-            return new Builder()
-                    .url(String.format(URL_ASTRONOMY, getApiKey(), latitude, longitude))
-                    .build();
-        } else {
-            return new Builder()
-                    .url(String.format(URL_WEATHER, getApiKey(), latitude, longitude))
-                    .build();
-        }
+        // Astronomy barely changes over a day, so it rides along with a weather query once it's
+        // due instead of waking the device up on its own.
+        mIncludesAstronomy = getTaskParams() == null || isAstronomyDue(getContext());
+        return new Builder()
+                .url(String.format(mIncludesAstronomy ? URL_WEATHER_AND_ASTRONOMY : URL_WEATHER, getApiKey(), latitude, longitude))
+                .build();
+    }
+
+    @Override
+    protected WeatherParser getParser() {
+        return new WeatherUndergroundParser();
+    }
+
+    @Override
+    protected Class<? extends Weather> getWeatherClass() {
+        return WeatherUnderground.class;
+    }
+
+    @Override
+    protected void parse(HttpTransport.Response response) throws IOException, JSONException {
+        parse(new InputStreamReader(response.getBody(), "UTF-8"));
     }
 
     @Override
     protected void parse(String json) throws JSONException {
+        parse(new StringReader(json));
+    }
+
+    private void parse(Reader json) throws JSONException {
         WeatherUnderground weather = new WeatherUnderground();
         weather.restore(getContext());
         if (!weather.fetch(getContext(), json)) {
             throw new JSONException("Failed to parse data");
         }
-        weather.save(getContext());
-        broadcast(ACTION_DATA_CHANGED);
+        boolean changed = weather.saveIfChanged(getContext());
+        if (mIncludesAstronomy) {
+            getSharedPreferences(getContext()).edit().putLong(BUNDLE_ASTRONOMY_TIME, System.currentTimeMillis()).apply();
+        }
+        if (changed) {
+            broadcast(ACTION_DATA_CHANGED);
+        }
     }
 }